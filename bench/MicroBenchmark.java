@@ -0,0 +1,319 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark runner in the spirit of JMH, for code in the default package
+ * (which JMH's generated harness cannot reference).
+ *
+ * Each benchmark runs in its own forked JVM: a number of timed warmup iterations
+ * that are thrown away, then timed measurement iterations. Every result of the
+ * benchmarked operation is passed to a sink the JIT cannot see through, so the work
+ * isn't optimised away. Alongside throughput it reports the bytes allocated per
+ * operation and the allocation rate, summed over all threads (the same counters as
+ * JMH's gc profiler), so work the operation hands to background threads is included.
+ *
+ * Options:
+ *   --filter=REGEX     run only benchmarks whose name matches (default: all)
+ *   --warmup=N         warmup iterations (default 5)
+ *   --iterations=N     measurement iterations (default 5)
+ *   --time-ms=N        length of each iteration (default 1000)
+ *   --forks=N          forked JVMs per benchmark; 0 runs in this JVM (default 1)
+ *   --jvm-args=ARGS    extra arguments for the forked JVMs, space separated
+ *   --list             list the benchmarks and exit
+ */
+public final class MicroBenchmark {
+
+    /**
+     * One benchmark's state. Created in the JVM that runs it; run() is the measured
+     * operation and close() releases whatever setup opened. close() throws nothing;
+     * an implementation that waits should restore the interrupt flag if interrupted.
+     */
+    public interface Fixture extends AutoCloseable {
+        Object run() throws Exception;
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private static final String RESULT_PREFIX = "RESULT|";
+
+    private final Class<?> mainClass;
+    private final Map<String, Callable<Fixture>> benchmarks = new LinkedHashMap<>();
+
+    private int warmupIterations = 5;
+    private int iterations = 5;
+    private long iterationNanos = 1_000_000_000L;
+    private int forks = 1;
+    private String jvmArgs = "";
+    private Pattern filter;
+
+    // Read and compared on every operation so results stay live
+    private static volatile Object sinkTarget = new Object();
+    private static volatile int sinkHits;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param mainClass the class whose main() builds this runner, started again for each fork
+     */
+    public MicroBenchmark(Class<?> mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * Registers a benchmark. setup is called once per fork, before the warmup.
+     */
+    public void add(String name, Callable<Fixture> setup) {
+        benchmarks.put(name, setup);
+    }
+
+    private static void consume(Object result) {
+        if (result == sinkTarget) {
+            sinkHits++;
+        }
+    }
+
+    // ==================== Running ====================
+
+    /**
+     * Parses the options and runs the selected benchmarks, printing a summary table.
+     */
+    public void run(String[] args) throws Exception {
+        boolean list = false;
+        String only = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq == -1 ? arg : arg.substring(0, eq);
+            String value = eq == -1 ? "" : arg.substring(eq + 1);
+            switch (name) {
+                case "--filter" -> filter = Pattern.compile(value);
+                case "--warmup" -> warmupIterations = Integer.parseInt(value);
+                case "--iterations" -> iterations = Integer.parseInt(value);
+                case "--time-ms" -> iterationNanos = Long.parseLong(value) * 1_000_000L;
+                case "--forks" -> forks = Integer.parseInt(value);
+                case "--jvm-args" -> jvmArgs = value;
+                case "--list" -> list = true;
+                case "--only" -> only = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if (only != null) {
+            // Forked child: run one benchmark and print its result for the parent
+            Result result = runInThisJvm(only);
+            System.out.println(RESULT_PREFIX + result.encode());
+            return;
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (String name : benchmarks.keySet()) {
+            if (filter == null || filter.matcher(name).find()) {
+                selected.add(name);
+            }
+        }
+        if (list) {
+            selected.forEach(System.out::println);
+            return;
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (String name : selected) {
+            System.out.println("# " + name);
+            if (forks == 0) {
+                results.add(runInThisJvm(name));
+            } else {
+                for (int fork = 0; fork < forks; fork++) {
+                    results.add(runInFork(name));
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-40s %14s %12s %12s %12s%n", "Benchmark", "ops/s", "stdev", "alloc B/op", "alloc MB/s");
+        for (Result result : results) {
+            System.out.printf("%-40s %14.1f %12.1f %12.1f %12.1f%n", result.name, result.opsPerSecond,
+                    result.opsStdev, result.bytesPerOp, result.allocMbPerSecond);
+        }
+    }
+
+    private Result runInFork(String name) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        for (String arg : jvmArgs.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        command.add("--only=" + name);
+        command.add("--warmup=" + warmupIterations);
+        command.add("--iterations=" + iterations);
+        command.add("--time-ms=" + iterationNanos / 1_000_000L);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Result result = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = Result.decode(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (result == null) {
+            throw new IOException("Benchmark " + name + " failed (exit code " + exit + ")");
+        }
+        return result;
+    }
+
+    private Result runInThisJvm(String name) throws Exception {
+        Callable<Fixture> setup = benchmarks.get(name);
+        if (setup == null) {
+            throw new IllegalArgumentException("No benchmark named " + name);
+        }
+
+        PrintStream out = System.out;
+        try (Fixture fixture = setup.call()) {
+            // The code under test logs freely; keep that off the report but still pay for formatting it
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long batch = 1;
+            for (int i = 0; i < warmupIterations; i++) {
+                Iteration warmup = iterate(fixture, batch);
+                // Check the clock about once a millisecond
+                batch = Math.max(1, warmup.ops * 1_000_000L / Math.max(warmup.nanos, 1));
+                out.printf("Warmup %d: %.1f ops/s%n", i + 1, warmup.opsPerSecond());
+            }
+
+            double[] opsPerSecond = new double[iterations];
+            long totalOps = 0;
+            long totalNanos = 0;
+            long totalBytes = 0;
+            for (int i = 0; i < iterations; i++) {
+                Iteration measured = iterate(fixture, batch);
+                opsPerSecond[i] = measured.opsPerSecond();
+                totalOps += measured.ops;
+                totalNanos += measured.nanos;
+                totalBytes += measured.bytes;
+                out.printf("Iteration %d: %.1f ops/s, %.1f B/op%n", i + 1, measured.opsPerSecond(),
+                        (double) measured.bytes / measured.ops);
+            }
+
+            return new Result(name, mean(opsPerSecond), standardDeviation(opsPerSecond),
+                    (double) totalBytes / totalOps, totalBytes / (totalNanos / 1e9) / (1024 * 1024));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private Iteration iterate(Fixture fixture, long batch) throws Exception {
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + iterationNanos;
+        long ops = 0;
+        long now;
+        do {
+            for (long i = 0; i < batch; i++) {
+                consume(fixture.run());
+            }
+            ops += batch;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return new Iteration(ops, now - start, allocatedBytes() - bytesBefore);
+    }
+
+    /**
+     * Bytes allocated so far by all live threads.
+     */
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    // ==================== Results ====================
+
+    private static final class Iteration {
+        final long ops;
+        final long nanos;
+        final long bytes;
+
+        Iteration(long ops, long nanos, long bytes) {
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        double opsPerSecond() {
+            return ops / (nanos / 1e9);
+        }
+    }
+
+    private static final class Result {
+        final String name;
+        final double opsPerSecond;
+        final double opsStdev;
+        final double bytesPerOp;
+        final double allocMbPerSecond;
+
+        Result(String name, double opsPerSecond, double opsStdev, double bytesPerOp, double allocMbPerSecond) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.opsStdev = opsStdev;
+            this.bytesPerOp = bytesPerOp;
+            this.allocMbPerSecond = allocMbPerSecond;
+        }
+
+        String encode() {
+            return name + "|" + opsPerSecond + "|" + opsStdev + "|" + bytesPerOp + "|" + allocMbPerSecond;
+        }
+
+        static Result decode(String line) {
+            String[] fields = line.split("\\|");
+            return new Result(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                    Double.parseDouble(fields[3]), Double.parseDouble(fields[4]));
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double standardDeviation(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(squares / (values.length - 1));
+    }
+}
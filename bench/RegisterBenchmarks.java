@@ -0,0 +1,239 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Microbenchmarks for the register's hot paths: pricebook parsing, product lookup,
+ * scanning a basket end to end, discount JSON, journal logging and persisting a basket.
+ * Basket-shaped benchmarks run at 1, 10 and 100 lines.
+ *
+ * Run from the project root, which is where the pricebook is found and where the
+ * scratch database and journals go (bench-data/):
+ *
+ *   javac -encoding UTF-8 -d out -cp lib/h2-2.4.240.jar src/*.java bench/*.java
+ *   java -cp out:lib/h2-2.4.240.jar RegisterBenchmarks [--filter=REGEX] [--list]
+ *
+ * See MicroBenchmark for the remaining options.
+ */
+public class RegisterBenchmarks {
+
+    private static final String PRICEBOOK = "src/pricebook__1_.tsv";
+    private static final Path DATA_DIR = Paths.get("bench-data");
+    private static final int[] BASKET_SIZES = {1, 10, 100};
+    // A sale that takes this long has failed; the run stops instead of hanging
+    private static final long COMPLETION_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        MicroBenchmark runner = new MicroBenchmark(RegisterBenchmarks.class);
+
+        runner.add("pricebook.parseTSV", () -> () -> PricebookParser.parseTSV(PRICEBOOK));
+        runner.add("db.getProductByUPC", RegisterBenchmarks::productLookup);
+        for (int lines : BASKET_SIZES) {
+            runner.add("controller.basket[lines=" + lines + "]", () -> controllerBasket(lines));
+        }
+        for (int lines : BASKET_SIZES) {
+            runner.add("discount.toJson[lines=" + lines + "]", () -> discountToJson(lines));
+        }
+        runner.add("discount.parseResponse", RegisterBenchmarks::discountParseResponse);
+        runner.add("journal.logItem", RegisterBenchmarks::journalLogItem);
+        for (int lines : BASKET_SIZES) {
+            runner.add("db.applyTransactionChanges[lines=" + lines + "]", () -> persistBasket(lines));
+        }
+
+        runner.run(args);
+    }
+
+    // ==================== Fixtures ====================
+
+    private static MicroBenchmark.Fixture productLookup() throws Exception {
+        DatabaseManager dbManager = openDatabase();
+        String[] upcs = products().stream().map(Product::getUpc).toArray(String[]::new);
+
+        return new MicroBenchmark.Fixture() {
+            int next;
+
+            @Override
+            public Object run() throws Exception {
+                next = next + 1 < upcs.length ? next + 1 : 0;
+                return dbManager.getProductByUPC(upcs[next]);
+            }
+
+            @Override
+            public void close() {
+                dbManager.close();
+            }
+        };
+    }
+
+    /**
+     * Scans a basket and tenders it, waiting for the sale to complete. This covers the
+     * scan batch, discount, totals, journal and write-behind paths with the UI stubbed out.
+     */
+    private static MicroBenchmark.Fixture controllerBasket(int lines) throws Exception {
+        DatabaseManager dbManager = openDatabase();
+        VirtualJournal journal = openJournal();
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.load(products());
+
+        List<Product> basket = products().subList(0, lines);
+        long subtotalCents = 0;
+        for (Product product : basket) {
+            subtotalCents += product.getPriceCents();
+        }
+        // Discounts only lower the total, so twice the subtotal always covers tax
+        long tenderedCents = subtotalCents * 2 + 100;
+
+        RegisterController controller = new RegisterController(dbManager, journal, catalog);
+        controller.setListener(new RegisterListener() {
+            @Override
+            public void onView(RegisterView view) {
+            }
+
+            @Override
+            public void onError(String message) {
+                System.err.println(message);
+            }
+        });
+
+        Semaphore completed = new Semaphore(0);
+        return new MicroBenchmark.Fixture() {
+            @Override
+            public Object run() throws Exception {
+                for (Product product : basket) {
+                    controller.addItem(product.getUpc(), 1);
+                }
+                controller.completeTransaction("CASH", tenderedCents, sale -> completed.release());
+                if (!completed.tryAcquire(COMPLETION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new TimeoutException("Sale did not complete within " + COMPLETION_TIMEOUT_SECONDS + " s");
+                }
+                return controller.getView();
+            }
+
+            @Override
+            public void close() {
+                controller.close();
+                journal.close();
+                dbManager.close();
+            }
+        };
+    }
+
+    private static MicroBenchmark.Fixture discountToJson(int lines) {
+        DiscountApiClient client = new DiscountApiClient(new ApiConfig());
+        DiscountRequest request = DiscountRequest.fromTransactionItems(transactionItems(lines));
+        return () -> client.toJson(request);
+    }
+
+    private static MicroBenchmark.Fixture discountParseResponse() {
+        DiscountApiClient client = new DiscountApiClient(new ApiConfig());
+        String json = "{\"originalTotal\":42.17,\"discountAmount\":3.50,\"finalTotal\":38.67," +
+                "\"appliedDiscounts\":[\"Polar Pop 2 for $1.50\",\"$2 off 3 Monster Energy\"]}";
+        return () -> client.parseResponse(json);
+    }
+
+    private static MicroBenchmark.Fixture journalLogItem() throws Exception {
+        VirtualJournal journal = openJournal();
+        Product product = products().get(0);
+
+        return new MicroBenchmark.Fixture() {
+            int line;
+
+            @Override
+            public Object run() {
+                line++;
+                journal.logItem(1, line, product.getUpc(), product.getName(), product.getPriceCents(), 1);
+                return null;
+            }
+
+            @Override
+            public void close() {
+                journal.close();
+            }
+        };
+    }
+
+    /**
+     * Saves a transaction row and writes all of its lines and totals in one batch,
+     * as TransactionWriter does when a basket is flushed.
+     */
+    private static MicroBenchmark.Fixture persistBasket(int lines) throws Exception {
+        DatabaseManager dbManager = openDatabase();
+        List<TransactionItem> items = transactionItems(lines);
+        long subtotalCents = 0;
+        for (TransactionItem item : items) {
+            subtotalCents += item.getTotalCents();
+        }
+        Totals totals = Totals.of(subtotalCents, 0, 700);
+
+        return new MicroBenchmark.Fixture() {
+            @Override
+            public Object run() throws Exception {
+                int transactionId = dbManager.saveTransaction(totals.getSubtotalCents(), totals.getTaxCents(),
+                        totals.getTotalCents());
+                List<TransactionChange> changes = new ArrayList<>(items.size() + 1);
+                for (TransactionItem item : items) {
+                    changes.add(TransactionChange.addLine(transactionId, item));
+                }
+                changes.add(TransactionChange.totals(transactionId, totals));
+                dbManager.applyTransactionChanges(changes);
+                return changes;
+            }
+
+            @Override
+            public void close() {
+                dbManager.close();
+            }
+        };
+    }
+
+    // ==================== Helpers ====================
+
+    private static List<Product> products;
+
+    private static List<Product> products() {
+        if (products == null) {
+            Map<String, Product> pricebook = PricebookParser.parseTSV(PRICEBOOK);
+            if (pricebook.size() < 100) {
+                throw new IllegalStateException("Benchmarks need at least 100 products in " + PRICEBOOK);
+            }
+            products = new ArrayList<>(pricebook.values());
+        }
+        return products;
+    }
+
+    private static List<TransactionItem> transactionItems(int lines) {
+        List<TransactionItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new TransactionItem(i + 1, products().get(i), 1 + i % 3));
+        }
+        return items;
+    }
+
+    private static DatabaseManager openDatabase() throws Exception {
+        Files.createDirectories(DATA_DIR);
+        DatabaseManager dbManager = new DatabaseManager(DATA_DIR.resolve("registerdb").toAbsolutePath().toString());
+        Map<String, Product> pricebook = new LinkedHashMap<>();
+        for (Product product : products()) {
+            pricebook.put(product.getUpc(), product);
+        }
+        dbManager.loadPriceBook(pricebook);
+        return dbManager;
+    }
+
+    private static VirtualJournal openJournal() {
+        SocketClientConfig config = new SocketClientConfig();
+        config.setRegisterId("BENCH");
+        config.setJournalDir(DATA_DIR.resolve("journal").toString());
+        config.setSpoolDir(DATA_DIR.resolve("spool").toString());
+        config.setJournalConsole(false);
+        config.setEnabled(false);
+        return new VirtualJournal(config, true);
+    }
+}
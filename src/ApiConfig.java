@@ -12,11 +12,23 @@ public class ApiConfig {
     private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
     private static final int DEFAULT_READ_TIMEOUT = 10000;
 
+    // Result Cache Configuration
+    private static final long DEFAULT_CACHE_TTL = 60000;
+    private static final long DEFAULT_NEGATIVE_CACHE_TTL = 5000;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 256;
+
+    // Local rules file evaluated in-process when present
+    private static final String DEFAULT_RULES_FILE = "discount-rules.tsv";
+
     // Instance fields (allow runtime configuration)
     private String baseUrl;
     private int connectTimeout;
     private int readTimeout;
     private boolean enabled;
+    private long cacheTtl;
+    private long negativeCacheTtl;
+    private int cacheMaxEntries;
+    private String rulesFile;
 
     /**
      * Creates configuration with default settings.
@@ -26,6 +38,10 @@ public class ApiConfig {
         this.connectTimeout = DEFAULT_CONNECT_TIMEOUT;
         this.readTimeout = DEFAULT_READ_TIMEOUT;
         this.enabled = true;
+        this.cacheTtl = DEFAULT_CACHE_TTL;
+        this.negativeCacheTtl = DEFAULT_NEGATIVE_CACHE_TTL;
+        this.cacheMaxEntries = DEFAULT_CACHE_MAX_ENTRIES;
+        this.rulesFile = DEFAULT_RULES_FILE;
     }
 
     /**
@@ -51,6 +67,47 @@ public class ApiConfig {
         return !enabled;
     }
 
+    /**
+     * How long a successful discount result stays cached, in milliseconds.
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    /**
+     * How long an API failure is cached (and further calls suppressed), in milliseconds.
+     */
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    public void setNegativeCacheTtl(long negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    /**
+     * Path of the locally synced promotion rules file.
+     */
+    public String getRulesFile() {
+        return rulesFile;
+    }
+
+    public void setRulesFile(String rulesFile) {
+        this.rulesFile = rulesFile;
+    }
+
 
     @Override
     public String toString() {
@@ -60,6 +117,10 @@ public class ApiConfig {
                 ", connectTimeout=" + connectTimeout +
                 ", readTimeout=" + readTimeout +
                 ", enabled=" + enabled +
+                ", cacheTtl=" + cacheTtl +
+                ", negativeCacheTtl=" + negativeCacheTtl +
+                ", cacheMaxEntries=" + cacheMaxEntries +
+                ", rulesFile='" + rulesFile + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The lines of the open transaction, in the order they were rung up.
+ * Besides the list itself it keeps an index from UPC to the first line with that UPC,
+ * so merging a repeat scan into its line is a few array probes instead of a walk over
+ * the basket. Numeric UPCs are packed into a long the same way ProductCatalog packs
+ * them and kept in an open-addressing table; other codes go to a plain map.
+ * Lines are also indexed by line number, which the register hands out counting up
+ * from 1, so an array indexed by line number finds the line to void or re-quantify.
+ * Not thread-safe: only the controller's thread touches it.
+ */
+public class Basket extends AbstractList<TransactionItem> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<TransactionItem> lines = new ArrayList<>();
+
+    private long[] keys;
+    private TransactionItem[] values;
+    private int mask;
+    private int packedSize;
+    private final Map<String, TransactionItem> fallback = new HashMap<>();
+
+    // Line number -> line; grown as line numbers go up
+    private TransactionItem[] byLine = new TransactionItem[INITIAL_CAPACITY];
+
+    public Basket() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the first line with the given UPC, or null if it isn't in the basket.
+     */
+    public TransactionItem findByUpc(String upc) {
+        long key = ProductCatalog.pack(upc);
+        if (key == 0) {
+            return fallback.get(upc);
+        }
+
+        long[] k = keys;
+        int m = mask;
+        int slot = ProductCatalog.mix(key) & m;
+        while (k[slot] != 0) {
+            if (k[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & m;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the line with the given line number, or null if it isn't in the basket.
+     */
+    public TransactionItem findByLine(int lineNumber) {
+        return lineNumber >= 0 && lineNumber < byLine.length ? byLine[lineNumber] : null;
+    }
+
+    /**
+     * Removes the line with the given line number.
+     *
+     * @return the removed line, or null if it isn't in the basket
+     */
+    public TransactionItem removeLine(int lineNumber) {
+        TransactionItem item = findByLine(lineNumber);
+        if (item == null) {
+            return null;
+        }
+        return remove(positionOf(item));
+    }
+
+    /**
+     * Display position of a line. Lines are appended in line-number order, so this is
+     * a binary search; a basket built out of order falls back to a scan.
+     */
+    private int positionOf(TransactionItem item) {
+        int low = 0;
+        int high = lines.size() - 1;
+        int lineNumber = item.getLineNumber();
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            TransactionItem line = lines.get(mid);
+            if (line == item) {
+                return mid;
+            }
+            if (line.getLineNumber() < lineNumber) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return lines.indexOf(item);
+    }
+
+    // ==================== List ====================
+
+    @Override
+    public TransactionItem get(int index) {
+        return lines.get(index);
+    }
+
+    @Override
+    public int size() {
+        return lines.size();
+    }
+
+    @Override
+    public void add(int index, TransactionItem item) {
+        lines.add(index, item);
+        indexLine(item);
+        if (index == lines.size() - 1) {
+            // Appended: it only becomes the indexed line if it's the first with its UPC
+            if (findByUpc(upcOf(item)) == null) {
+                index(upcOf(item), item);
+            }
+        } else {
+            reindex(upcOf(item));
+        }
+        modCount++;
+    }
+
+    /**
+     * Removes the line at a display position. If it was the indexed line for its UPC,
+     * the next line with that UPC (if any) takes its place in the index.
+     */
+    @Override
+    public TransactionItem remove(int index) {
+        TransactionItem item = lines.remove(index);
+        if (findByLine(item.getLineNumber()) == item) {
+            byLine[item.getLineNumber()] = null;
+        }
+        if (findByUpc(upcOf(item)) == item) {
+            reindex(upcOf(item));
+        }
+        modCount++;
+        return item;
+    }
+
+    @Override
+    public void clear() {
+        lines.clear();
+        if (packedSize > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            packedSize = 0;
+        }
+        fallback.clear();
+        Arrays.fill(byLine, null);
+        modCount++;
+    }
+
+    // ==================== Index ====================
+
+    private void indexLine(TransactionItem item) {
+        int lineNumber = item.getLineNumber();
+        if (lineNumber >= byLine.length) {
+            byLine = Arrays.copyOf(byLine, Math.max(byLine.length * 2, lineNumber + 1));
+        }
+        byLine[lineNumber] = item;
+    }
+
+    private static String upcOf(TransactionItem item) {
+        return item.getProduct().getUpc();
+    }
+
+    /**
+     * Points the index for a UPC at its first remaining line, or drops it if none is left.
+     */
+    private void reindex(String upc) {
+        unindex(upc);
+        for (int i = 0; i < lines.size(); i++) {
+            TransactionItem line = lines.get(i);
+            if (upcOf(line).equals(upc)) {
+                index(upc, line);
+                return;
+            }
+        }
+    }
+
+    private void index(String upc, TransactionItem item) {
+        long key = ProductCatalog.pack(upc);
+        if (key == 0) {
+            fallback.put(upc, item);
+            return;
+        }
+
+        if ((packedSize + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = ProductCatalog.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            packedSize++;
+        }
+        values[slot] = item;
+    }
+
+    private void unindex(String upc) {
+        long key = ProductCatalog.pack(upc);
+        if (key == 0) {
+            fallback.remove(upc);
+            return;
+        }
+
+        int slot = ProductCatalog.mix(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = 0;
+        values[slot] = null;
+        packedSize--;
+
+        // Shift later entries of the probe run back so lookups don't stop at the gap
+        int next = (slot + 1) & mask;
+        while (keys[next] != 0) {
+            int home = ProductCatalog.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                keys[next] = 0;
+                values[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new TransactionItem[capacity];
+        mask = capacity - 1;
+        packedSize = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        TransactionItem[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = ProductCatalog.mix(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                packedSize++;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Table model for the basket on the transaction screen, backed by the lines of the
+ * RegisterView being shown. Each new view is compared with the rows already displayed
+ * and only the lines that were added, changed or voided are reported to the table, so
+ * a scan on a long basket repaints one row instead of the whole table. Cell text is
+ * formatted once per line change and cached.
+ */
+public class BasketTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"UPC", "Description", "Price", "Qty", "Total"};
+    private static final int DESCRIPTION_LENGTH = 45;
+
+    private final List<Row> rows = new ArrayList<>();
+    private int transactionId = -1;
+
+    /**
+     * One displayed line with its cell text already formatted.
+     */
+    private static final class Row {
+        final int lineNumber;
+        final Product product;
+        final int quantity;
+        final Object[] cells;
+
+        Row(int lineNumber, Product product, int quantity, Object[] cells) {
+            this.lineNumber = lineNumber;
+            this.product = product;
+            this.quantity = quantity;
+            this.cells = cells;
+        }
+    }
+
+    /**
+     * Shows the lines of a view, firing events only for the rows that differ.
+     * Lines keep their relative order between views (new lines are appended, voided
+     * ones removed), so a single pass over both lists finds every change.
+     */
+    public void setView(RegisterView view) {
+        List<TransactionItem> lines = view.getLines();
+
+        if (view.getTransactionId() != transactionId) {
+            // A different sale; nothing on screen can be reused
+            transactionId = view.getTransactionId();
+            rows.clear();
+            for (TransactionItem item : lines) {
+                rows.add(format(item));
+            }
+            fireTableDataChanged();
+            return;
+        }
+
+        Set<Integer> remaining = new HashSet<>();
+        for (TransactionItem item : lines) {
+            remaining.add(item.getLineNumber());
+        }
+
+        int row = 0;
+        for (TransactionItem item : lines) {
+            // Drop displayed lines that are no longer in the basket
+            while (row < rows.size() && !remaining.contains(rows.get(row).lineNumber)) {
+                rows.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+
+            if (row < rows.size() && rows.get(row).lineNumber == item.getLineNumber()) {
+                Row current = rows.get(row);
+                if (current.quantity != item.getQuantity() || current.product != item.getProduct()) {
+                    rows.set(row, format(item));
+                    fireTableRowsUpdated(row, row);
+                }
+            } else {
+                rows.add(row, format(item));
+                fireTableRowsInserted(row, row);
+            }
+            row++;
+        }
+
+        if (row < rows.size()) {
+            int last = rows.size() - 1;
+            rows.subList(row, rows.size()).clear();
+            fireTableRowsDeleted(row, last);
+        }
+    }
+
+    private Row format(TransactionItem item) {
+        Product product = item.getProduct();
+        Object[] cells = {
+                product.getUpc(),
+                truncate(product.getName()),
+                "$" + Money.format(product.getPriceCents()),
+                String.valueOf(item.getQuantity()),
+                "$" + Money.format(item.getTotalCents())
+        };
+        return new Row(item.getLineNumber(), product, item.getQuantity(), cells);
+    }
+
+    private static String truncate(String text) {
+        if (text.length() <= DESCRIPTION_LENGTH) return text;
+        return text.substring(0, DESCRIPTION_LENGTH - 3) + "...";
+    }
+
+    /**
+     * Returns the line number shown in a row.
+     */
+    public int getLineNumber(int row) {
+        return rows.get(row).lineNumber;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.get(row).cells[column];
+    }
+}
@@ -0,0 +1,113 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed-size pool of embedded H2 connections.
+ * Each connection keeps its own prepared statement cache (see PooledConnection),
+ * so a caller that borrows a connection gets statements that are already parsed.
+ * Connections are created lazily up to the maximum size.
+ */
+public class ConnectionPool {
+
+    private static final long ACQUIRE_TIMEOUT_MS = 10000;
+    // How often a waiting acquire() checks whether a slot has been freed
+    private static final long RECHECK_MS = 100;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+    private boolean closed = false;
+
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Borrows a connection. Close the returned PooledConnection to give it back.
+     *
+     * @throws SQLException if the pool is closed, a connection cannot be opened,
+     *                      or none becomes free within the timeout
+     */
+    public PooledConnection acquire() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MS);
+        while (true) {
+            PooledConnection pooled = idle.poll();
+            if (pooled != null) {
+                return pooled;
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (all.size() < maxSize) {
+                    Connection connection = DriverManager.getConnection(url, user, password);
+                    pooled = new PooledConnection(this, connection);
+                    all.add(pooled);
+                    return pooled;
+                }
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            try {
+                // Wake up now and then in case a discarded connection freed a slot
+                pooled = idle.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(RECHECK_MS)),
+                        TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+    }
+
+    void release(PooledConnection pooled) {
+        synchronized (this) {
+            if (closed) {
+                pooled.closeQuietly();
+                return;
+            }
+        }
+        idle.offer(pooled);
+    }
+
+    /**
+     * Closes a connection that couldn't be reset and frees its slot for a new one.
+     */
+    void discard(PooledConnection pooled) {
+        synchronized (this) {
+            all.remove(pooled);
+        }
+        pooled.closeQuietly();
+    }
+
+    /**
+     * Closes every connection, including ones that are still borrowed.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (PooledConnection pooled : all) {
+            pooled.closeQuietly();
+        }
+        all.clear();
+        idle.clear();
+    }
+}
@@ -2,16 +2,31 @@ import java.sql.*;
 import java.util.*;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:h2:./registerdb";
+    // Embedded mode; a larger per-session query cache keeps all of this class's SQL parsed.
+    // WRITE_DELAY=0 writes each commit to disk at once: the controller journals a CHECKPOINT
+    // right after a suspend, void or tender commits, and recovery skips everything before it
+    private static final String DB_PATH = "./registerdb";
+    private static final String DB_OPTIONS = ";QUERY_CACHE_SIZE=64;WRITE_DELAY=0";
     private static final String DB_USER = "sa";
     private static final String DB_PASSWORD = "";
+    private static final int PRICEBOOK_BATCH_SIZE = 1000;
+    // Controller commands (tender, suspend, void, resume, lookups of new codes), the
+    // write-behind writer, reporting and one spare; scans use the in-memory catalog
+    private static final int POOL_SIZE = 4;
 
-    private Connection connection;
+    private ConnectionPool pool;
 
     public DatabaseManager() {
+        this(DB_PATH);
+    }
+
+    /**
+     * Opens (or creates) the database at another path, e.g. a scratch database for load testing.
+     */
+    public DatabaseManager(String databasePath) {
         try {
             Class.forName("org.h2.Driver");
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            pool = new ConnectionPool("jdbc:h2:" + databasePath + DB_OPTIONS, DB_USER, DB_PASSWORD, POOL_SIZE);
             initializeDatabase();
         } catch (Exception e) {
             System.err.println("Database initialization error: " + e.getMessage());
@@ -20,7 +35,13 @@ public class DatabaseManager {
     }
 
     private void initializeDatabase() throws SQLException {
-        Statement stmt = connection.createStatement();
+        try (PooledConnection pc = pool.acquire();
+             Statement stmt = pc.getConnection().createStatement()) {
+            createSchema(stmt);
+        }
+    }
+
+    private void createSchema(Statement stmt) throws SQLException {
 
         // Create products table
         stmt.execute("""
@@ -71,132 +92,350 @@ public class DatabaseManager {
             )
         """);
 
-        stmt.close();
-    }
+        // Stable per-transaction line number so items can be updated in place
+        stmt.execute("ALTER TABLE transaction_items ADD COLUMN IF NOT EXISTS line_number INT");
+        stmt.execute("UPDATE transaction_items SET line_number = id WHERE line_number IS NULL");
+        stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_transaction_items_line " +
+                "ON transaction_items (transaction_id, line_number)");
 
-    public void loadPriceBook(Map<String, Product> products) throws SQLException {
-        // Clear existing products
-        Statement stmt = connection.createStatement();
-        stmt.execute("DELETE FROM products");
-        stmt.close();
+        // Per-row content hash used by the pricebook delta sync
+        stmt.execute("ALTER TABLE products ADD COLUMN IF NOT EXISTS content_hash BIGINT");
 
-        // Insert all products
-        String sql = "INSERT INTO products (upc, name, price) VALUES (?, ?, ?)";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
+        // Single-row table recording which pricebook is currently loaded
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS pricebook_version (
+                id INT PRIMARY KEY,
+                version_hash BIGINT NOT NULL,
+                product_count INT NOT NULL,
+                loaded_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+    }
 
+    /**
+     * Syncs the products table with the given pricebook.
+     * Only new, changed and removed rows are written, so quick key settings on
+     * existing products survive a reload. An unchanged pricebook is detected from
+     * the stored version hash and costs a single lookup.
+     */
+    public void loadPriceBook(Map<String, Product> products) throws SQLException {
+        long[] rowHashes = new long[products.size()];
+        long versionHash = products.size();
+        int i = 0;
         for (Product product : products.values()) {
-            pstmt.setString(1, product.getUpc());
-            pstmt.setString(2, product.getName());
-            pstmt.setDouble(3, product.getPrice());
-            pstmt.addBatch();
+            long hash = contentHash(product);
+            rowHashes[i++] = hash;
+            // Order-independent combination so HashMap iteration order doesn't matter
+            versionHash += mixHash(hash);
         }
 
-        pstmt.executeBatch();
-        pstmt.close();
+        try (PooledConnection pc = pool.acquire()) {
+            if (getPricebookVersion(pc) == versionHash) {
+                System.out.println("Pricebook unchanged, skipping sync");
+                return;
+            }
+            syncProducts(pc, products, rowHashes, versionHash);
+        }
     }
 
-    public Product getProductByUPC(String upc) throws SQLException {
-        String sql = "SELECT * FROM products WHERE upc = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setString(1, upc);
-
-        ResultSet rs = pstmt.executeQuery();
-        Product product = null;
-
-        if (rs.next()) {
-            product = new Product(
-                    rs.getString("upc"),
-                    rs.getString("name"),
-                    rs.getDouble("price")
-            );
+    private void syncProducts(PooledConnection pc, Map<String, Product> products,
+                              long[] rowHashes, long versionHash) throws SQLException {
+        // Current contents of the table, keyed by UPC
+        Map<String, Long> stored = new HashMap<>();
+        ResultSet rs = pc.prepare("SELECT upc, content_hash FROM products").executeQuery();
+        while (rs.next()) {
+            long hash = rs.getLong("content_hash");
+            stored.put(rs.getString("upc"), rs.wasNull() ? null : hash);
         }
+        rs.close();
+
+        Connection connection = pc.getConnection();
+        connection.setAutoCommit(false);
 
+        String mergeSql = "MERGE INTO products (upc, name, price, content_hash) KEY (upc) VALUES (?, ?, ?, ?)";
+        String deleteSql = "DELETE FROM products WHERE upc = ?";
+        try {
+            PreparedStatement merge = pc.prepare(mergeSql);
+            PreparedStatement delete = pc.prepare(deleteSql);
+            int i = 0;
+            int inserted = 0;
+            int updated = 0;
+            int pending = 0;
+
+            for (Product product : products.values()) {
+                long hash = rowHashes[i++];
+                boolean exists = stored.containsKey(product.getUpc());
+                Long storedHash = stored.remove(product.getUpc());
+                if (exists && storedHash != null && storedHash == hash) {
+                    continue;
+                }
+
+                merge.setString(1, product.getUpc());
+                merge.setString(2, product.getName());
+                Money.bind(merge, 3, product.getPriceCents());
+                merge.setLong(4, hash);
+                merge.addBatch();
+                if (exists) {
+                    updated++;
+                } else {
+                    inserted++;
+                }
+
+                if (++pending == PRICEBOOK_BATCH_SIZE) {
+                    merge.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                merge.executeBatch();
+            }
+
+            // Anything left in the stored map is no longer in the pricebook
+            pending = 0;
+            for (String upc : stored.keySet()) {
+                delete.setString(1, upc);
+                delete.addBatch();
+                if (++pending == PRICEBOOK_BATCH_SIZE) {
+                    delete.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                delete.executeBatch();
+            }
+
+            savePricebookVersion(pc, versionHash, products.size());
+            connection.commit();
+
+            System.out.println("Pricebook sync: " + inserted + " inserted, " + updated +
+                    " updated, " + stored.size() + " deleted");
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Returns the stored pricebook version hash, or 0 if none has been recorded
+    private long getPricebookVersion(PooledConnection pc) throws SQLException {
+        ResultSet rs = pc.prepare("SELECT version_hash FROM pricebook_version WHERE id = 1").executeQuery();
+        long version = rs.next() ? rs.getLong("version_hash") : 0;
         rs.close();
-        pstmt.close();
-        return product;
+        return version;
     }
 
-    public int saveTransaction(double subtotal, double tax, double total) throws SQLException {
-        String sql = "INSERT INTO transactions (subtotal, tax, total) VALUES (?, ?, ?)";
-        PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-        pstmt.setDouble(1, subtotal);
-        pstmt.setDouble(2, tax);
-        pstmt.setDouble(3, total);
+    private void savePricebookVersion(PooledConnection pc, long versionHash, int productCount) throws SQLException {
+        String sql = "MERGE INTO pricebook_version (id, version_hash, product_count, loaded_date) " +
+                "KEY (id) VALUES (1, ?, ?, CURRENT_TIMESTAMP)";
+        PreparedStatement pstmt = pc.prepare(sql);
+        pstmt.setLong(1, versionHash);
+        pstmt.setInt(2, productCount);
         pstmt.executeUpdate();
+    }
 
-        ResultSet rs = pstmt.getGeneratedKeys();
-        int transactionId = -1;
-        if (rs.next()) {
-            transactionId = rs.getInt(1);
+    // FNV-1a over the columns the pricebook controls
+    private static long contentHash(Product product) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, product.getUpc());
+        hash = (hash ^ 0x1F) * 0x100000001b3L;
+        hash = fnv(hash, product.getName());
+        hash = (hash ^ 0x1F) * 0x100000001b3L;
+        long priceCents = product.getPriceCents();
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((priceCents >>> shift) & 0xFF)) * 0x100000001b3L;
         }
+        return hash;
+    }
 
-        rs.close();
-        pstmt.close();
-        return transactionId;
+    private static long fnv(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
     }
 
-    // Clear all non-voided items for a transaction before re-saving
-    public void clearTransactionItems(int transactionId) throws SQLException {
-        String sql = "DELETE FROM transaction_items WHERE transaction_id = ? AND is_voided = FALSE";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setInt(1, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
+    private static long mixHash(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
     }
 
-    public void saveTransactionItem(int transactionId, TransactionItem item) throws SQLException {
-        String sql = "INSERT INTO transaction_items (transaction_id, upc, product_name, price, quantity, total) VALUES (?, ?, ?, ?, ?, ?)";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setInt(1, transactionId);
-        pstmt.setString(2, item.getProduct().getUpc());
-        pstmt.setString(3, item.getProduct().getName());
-        pstmt.setDouble(4, item.getProduct().getPrice());
-        pstmt.setInt(5, item.getQuantity());
-        pstmt.setDouble(6, item.getTotal());
-        pstmt.executeUpdate();
-        pstmt.close();
+    public Product getProductByUPC(String upc) throws SQLException {
+        String sql = "SELECT * FROM products WHERE upc = ?";
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setString(1, upc);
+
+            ResultSet rs = pstmt.executeQuery();
+            Product product = null;
+
+            if (rs.next()) {
+                product = new Product(
+                        rs.getString("upc"),
+                        rs.getString("name"),
+                        Money.read(rs, "price")
+                );
+            }
+
+            rs.close();
+            return product;
+        }
+    }
+
+    // Load every product for the in-memory catalog
+    public List<Product> getAllProducts() throws SQLException {
+        String sql = "SELECT upc, name, price FROM products";
+        try (PooledConnection pc = pool.acquire()) {
+            ResultSet rs = pc.prepare(sql).executeQuery();
+
+            List<Product> products = new ArrayList<>();
+            while (rs.next()) {
+                products.add(new Product(
+                        rs.getString("upc"),
+                        rs.getString("name"),
+                        Money.read(rs, "price")
+                ));
+            }
+
+            rs.close();
+            return products;
+        }
+    }
+
+    public int saveTransaction(long subtotalCents, long taxCents, long totalCents) throws SQLException {
+        String sql = "INSERT INTO transactions (subtotal, tax, total) VALUES (?, ?, ?)";
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepareReturningKeys(sql);
+            Money.bind(pstmt, 1, subtotalCents);
+            Money.bind(pstmt, 2, taxCents);
+            Money.bind(pstmt, 3, totalCents);
+            pstmt.executeUpdate();
+
+            ResultSet rs = pstmt.getGeneratedKeys();
+            int transactionId = -1;
+            if (rs.next()) {
+                transactionId = rs.getInt(1);
+            }
+
+            rs.close();
+            return transactionId;
+        }
+    }
+
+    /**
+     * Applies a batch of queued transaction changes in a single database transaction.
+     * Called from the TransactionWriter thread, which borrows its own pooled connection.
+     */
+    public void applyTransactionChanges(List<TransactionChange> changes) throws SQLException {
+        String insertSql = "INSERT INTO transaction_items (transaction_id, line_number, upc, product_name, price, quantity, total) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String quantitySql = "UPDATE transaction_items SET quantity = ?, total = ? WHERE transaction_id = ? AND line_number = ?";
+        String voidSql = "UPDATE transaction_items SET is_voided = TRUE WHERE transaction_id = ? AND line_number = ?";
+        String totalsSql = "UPDATE transactions SET subtotal = ?, tax = ?, total = ? WHERE id = ?";
+
+        try (PooledConnection pc = pool.acquire()) {
+            Connection connection = pc.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement insert = pc.prepare(insertSql);
+                PreparedStatement quantity = pc.prepare(quantitySql);
+                PreparedStatement voidLine = pc.prepare(voidSql);
+                PreparedStatement totals = pc.prepare(totalsSql);
+
+                for (TransactionChange change : changes) {
+                    switch (change.getType()) {
+                        case ADD_LINE:
+                            insert.setInt(1, change.getTransactionId());
+                            insert.setInt(2, change.getLineNumber());
+                            insert.setString(3, change.getUpc());
+                            insert.setString(4, change.getName());
+                            Money.bind(insert, 5, change.getPriceCents());
+                            insert.setInt(6, change.getQuantity());
+                            Money.bind(insert, 7, change.getLineTotalCents());
+                            insert.addBatch();
+                            break;
+                        case CHANGE_QUANTITY:
+                            quantity.setInt(1, change.getQuantity());
+                            Money.bind(quantity, 2, change.getLineTotalCents());
+                            quantity.setInt(3, change.getTransactionId());
+                            quantity.setInt(4, change.getLineNumber());
+                            quantity.addBatch();
+                            break;
+                        case VOID_LINE:
+                            voidLine.setInt(1, change.getTransactionId());
+                            voidLine.setInt(2, change.getLineNumber());
+                            voidLine.addBatch();
+                            break;
+                        case UPDATE_TOTALS:
+                            Money.bind(totals, 1, change.getSubtotalCents());
+                            Money.bind(totals, 2, change.getTaxCents());
+                            Money.bind(totals, 3, change.getTotalCents());
+                            totals.setInt(4, change.getTransactionId());
+                            totals.addBatch();
+                            break;
+                    }
+                }
+
+                // Inserts go first so a line added and voided in the same batch exists to be flagged
+                insert.executeBatch();
+                quantity.executeBatch();
+                voidLine.executeBatch();
+                totals.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
     }
 
     public void updateTransactionPayment(int transactionId, String paymentType,
-                                         double tendered, double change) throws SQLException {
+                                         long tenderedCents, long changeCents) throws SQLException {
         String sql = "UPDATE transactions SET payment_type = ?, amount_tendered = ?, " +
                 "change_amount = ?, is_completed = TRUE, completion_date = CURRENT_TIMESTAMP WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setString(1, paymentType);
-        pstmt.setDouble(2, tendered);
-        pstmt.setDouble(3, change);
-        pstmt.setInt(4, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setString(1, paymentType);
+            Money.bind(pstmt, 2, tenderedCents);
+            Money.bind(pstmt, 3, changeCents);
+            pstmt.setInt(4, transactionId);
+            pstmt.executeUpdate();
+        }
     }
 
     public void voidTransaction(int transactionId, String reason) throws SQLException {
         String sql = "UPDATE transactions SET is_voided = TRUE, void_date = CURRENT_TIMESTAMP, void_reason = ? WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setString(1, reason);
-        pstmt.setInt(2, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setString(1, reason);
+            pstmt.setInt(2, transactionId);
+            pstmt.executeUpdate();
+        }
     }
 
-    public void updateTransactionTotals(int transactionId, double subtotal, double tax, double total) throws SQLException {
+    public void updateTransactionTotals(int transactionId, long subtotalCents, long taxCents, long totalCents) throws SQLException {
         String sql = "UPDATE transactions SET subtotal = ?, tax = ?, total = ? WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setDouble(1, subtotal);
-        pstmt.setDouble(2, tax);
-        pstmt.setDouble(3, total);
-        pstmt.setInt(4, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            Money.bind(pstmt, 1, subtotalCents);
+            Money.bind(pstmt, 2, taxCents);
+            Money.bind(pstmt, 3, totalCents);
+            pstmt.setInt(4, transactionId);
+            pstmt.executeUpdate();
+        }
     }
 
     public void suspendTransaction(int transactionId) throws SQLException {
         // When suspending, reset the resumed flag so it can be resumed again
         String sql = "UPDATE transactions SET is_suspended = TRUE, is_resumed = FALSE, suspend_date = CURRENT_TIMESTAMP WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setInt(1, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setInt(1, transactionId);
+            pstmt.executeUpdate();
+        }
     }
 
     // Get suspended transactions that can be resumed
@@ -204,70 +443,115 @@ public class DatabaseManager {
         // Get transactions that are currently suspended and not completed or voided
         // Don't check is_resumed since a transaction can be suspended again after being resumed
         String sql = "SELECT id FROM transactions WHERE is_suspended = TRUE AND is_completed = FALSE AND is_voided = FALSE ORDER BY id DESC";
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(sql);
+        try (PooledConnection pc = pool.acquire()) {
+            ResultSet rs = pc.prepare(sql).executeQuery();
 
-        List<Integer> suspendedIds = new ArrayList<>();
-        while (rs.next()) {
-            suspendedIds.add(rs.getInt("id"));
-        }
+            List<Integer> suspendedIds = new ArrayList<>();
+            while (rs.next()) {
+                suspendedIds.add(rs.getInt("id"));
+            }
 
-        rs.close();
-        stmt.close();
-        return suspendedIds;
+            rs.close();
+            return suspendedIds;
+        }
     }
 
     // Resume a suspended transaction
     public Map<String, Object> resumeTransaction(int transactionId) throws SQLException {
         Map<String, Object> transactionData = new HashMap<>();
 
-        // Mark transaction as resumed and not suspended
-        String updateSql = "UPDATE transactions SET is_resumed = TRUE, is_suspended = FALSE, resume_date = CURRENT_TIMESTAMP WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(updateSql);
-        pstmt.setInt(1, transactionId);
-        pstmt.executeUpdate();
-        pstmt.close();
-
-        // Get transaction details
-        String transSql = "SELECT * FROM transactions WHERE id = ?";
-        pstmt = connection.prepareStatement(transSql);
-        pstmt.setInt(1, transactionId);
-        ResultSet rs = pstmt.executeQuery();
-
-        if (rs.next()) {
-            transactionData.put("id", rs.getInt("id"));
-            transactionData.put("subtotal", rs.getDouble("subtotal"));
-            transactionData.put("tax", rs.getDouble("tax"));
-            transactionData.put("total", rs.getDouble("total"));
+        try (PooledConnection pc = pool.acquire()) {
+            // Mark transaction as resumed and not suspended
+            String updateSql = "UPDATE transactions SET is_resumed = TRUE, is_suspended = FALSE, resume_date = CURRENT_TIMESTAMP WHERE id = ?";
+            PreparedStatement pstmt = pc.prepare(updateSql);
+            pstmt.setInt(1, transactionId);
+            pstmt.executeUpdate();
+
+            // Get transaction details
+            String transSql = "SELECT * FROM transactions WHERE id = ?";
+            pstmt = pc.prepare(transSql);
+            pstmt.setInt(1, transactionId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                transactionData.put("id", rs.getInt("id"));
+                transactionData.put("subtotal", Money.read(rs, "subtotal"));
+                transactionData.put("tax", Money.read(rs, "tax"));
+                transactionData.put("total", Money.read(rs, "total"));
+            }
+            rs.close();
+
+            // Get transaction items
+            String itemsSql = "SELECT * FROM transaction_items WHERE transaction_id = ? AND is_voided = FALSE ORDER BY line_number";
+            pstmt = pc.prepare(itemsSql);
+            pstmt.setInt(1, transactionId);
+            rs = pstmt.executeQuery();
+
+            List<TransactionItem> items = new ArrayList<>();
+            while (rs.next()) {
+                Product product = new Product(
+                        rs.getString("upc"),
+                        rs.getString("product_name"),
+                        Money.read(rs, "price")
+                );
+                TransactionItem item = new TransactionItem(rs.getInt("line_number"), product, rs.getInt("quantity"));
+                items.add(item);
+            }
+            transactionData.put("items", items);
+
+            rs.close();
         }
-        rs.close();
-        pstmt.close();
 
-        // Get transaction items
-        String itemsSql = "SELECT * FROM transaction_items WHERE transaction_id = ? AND is_voided = FALSE";
-        pstmt = connection.prepareStatement(itemsSql);
-        pstmt.setInt(1, transactionId);
-        rs = pstmt.executeQuery();
+        return transactionData;
+    }
 
-        List<TransactionItem> items = new ArrayList<>();
-        while (rs.next()) {
-            Product product = new Product(
-                    rs.getString("upc"),
-                    rs.getString("product_name"),
-                    rs.getDouble("price")
-            );
-            TransactionItem item = new TransactionItem(product, rs.getInt("quantity"));
-            items.add(item);
+    /**
+     * Returns the active (not voided) lines of a transaction without changing its status.
+     */
+    public List<TransactionItem> getTransactionItems(int transactionId) throws SQLException {
+        String sql = "SELECT * FROM transaction_items WHERE transaction_id = ? AND is_voided = FALSE ORDER BY line_number";
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setInt(1, transactionId);
+            ResultSet rs = pstmt.executeQuery();
+
+            List<TransactionItem> items = new ArrayList<>();
+            while (rs.next()) {
+                Product product = new Product(
+                        rs.getString("upc"),
+                        rs.getString("product_name"),
+                        Money.read(rs, "price")
+                );
+                items.add(new TransactionItem(rs.getInt("line_number"), product, rs.getInt("quantity")));
+            }
+
+            rs.close();
+            return items;
         }
-        transactionData.put("items", items);
+    }
 
-        rs.close();
-        pstmt.close();
+    /**
+     * Returns line number -> quantity for every line of a transaction, with voided
+     * lines mapped to 0. Used to reconcile the database with the journal.
+     */
+    public Map<Integer, Integer> getLineQuantities(int transactionId) throws SQLException {
+        String sql = "SELECT line_number, quantity, is_voided FROM transaction_items WHERE transaction_id = ?";
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setInt(1, transactionId);
+            ResultSet rs = pstmt.executeQuery();
+
+            Map<Integer, Integer> quantities = new HashMap<>();
+            while (rs.next()) {
+                quantities.put(rs.getInt("line_number"), rs.getBoolean("is_voided") ? 0 : rs.getInt("quantity"));
+            }
 
-        return transactionData;
+            rs.close();
+            return quantities;
+        }
     }
 
-    // Get transaction history for reporting
+    // Get transaction history for reporting; amounts are Long cents
     public List<Map<String, Object>> getTransactionHistory(boolean includeVoided, boolean includeSuspended) throws SQLException {
         StringBuilder sql = new StringBuilder("SELECT * FROM transactions WHERE 1=1");
 
@@ -280,38 +564,34 @@ public class DatabaseManager {
 
         sql.append(" ORDER BY transaction_date DESC");
 
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(sql.toString());
+        try (PooledConnection pc = pool.acquire()) {
+            // Only four possible variants, so caching them is bounded
+            ResultSet rs = pc.prepare(sql.toString()).executeQuery();
+
+            List<Map<String, Object>> transactions = new ArrayList<>();
+            while (rs.next()) {
+                Map<String, Object> trans = new HashMap<>();
+                trans.put("id", rs.getInt("id"));
+                trans.put("date", rs.getTimestamp("transaction_date"));
+                trans.put("subtotal", Money.read(rs, "subtotal"));
+                trans.put("tax", Money.read(rs, "tax"));
+                trans.put("total", Money.read(rs, "total"));
+                trans.put("payment_type", rs.getString("payment_type"));
+                trans.put("is_voided", rs.getBoolean("is_voided"));
+                trans.put("is_suspended", rs.getBoolean("is_suspended"));
+                trans.put("is_resumed", rs.getBoolean("is_resumed"));
+                trans.put("is_completed", rs.getBoolean("is_completed"));
+                transactions.add(trans);
+            }
 
-        List<Map<String, Object>> transactions = new ArrayList<>();
-        while (rs.next()) {
-            Map<String, Object> trans = new HashMap<>();
-            trans.put("id", rs.getInt("id"));
-            trans.put("date", rs.getTimestamp("transaction_date"));
-            trans.put("subtotal", rs.getDouble("subtotal"));
-            trans.put("tax", rs.getDouble("tax"));
-            trans.put("total", rs.getDouble("total"));
-            trans.put("payment_type", rs.getString("payment_type"));
-            trans.put("is_voided", rs.getBoolean("is_voided"));
-            trans.put("is_suspended", rs.getBoolean("is_suspended"));
-            trans.put("is_resumed", rs.getBoolean("is_resumed"));
-            trans.put("is_completed", rs.getBoolean("is_completed"));
-            transactions.add(trans);
+            rs.close();
+            return transactions;
         }
-
-        rs.close();
-        stmt.close();
-
-        return transactions;
     }
 
     public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            System.err.println("Error closing database: " + e.getMessage());
+        if (pool != null) {
+            pool.close();
         }
     }
     // Note: You may need to add this helper method to DatabaseManager.java
@@ -319,20 +599,24 @@ public class DatabaseManager {
 
     public Map<String, Object> getTransactionById(int id) throws SQLException {
         String sql = "SELECT * FROM transactions WHERE id = ?";
-        PreparedStatement pstmt = connection.prepareStatement(sql);
-        pstmt.setInt(1, id);
-        ResultSet rs = pstmt.executeQuery();
-
-        Map<String, Object> trans = null;
-        if (rs.next()) {
-            trans = new HashMap<>();
-            trans.put("id", rs.getInt("id"));
-            trans.put("date", rs.getTimestamp("transaction_date"));
-            trans.put("total", rs.getDouble("total"));
-        }
+        try (PooledConnection pc = pool.acquire()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setInt(1, id);
+            ResultSet rs = pstmt.executeQuery();
+
+            Map<String, Object> trans = null;
+            if (rs.next()) {
+                trans = new HashMap<>();
+                trans.put("id", rs.getInt("id"));
+                trans.put("date", rs.getTimestamp("transaction_date"));
+                trans.put("total", Money.read(rs, "total"));
+                trans.put("is_voided", rs.getBoolean("is_voided"));
+                trans.put("is_suspended", rs.getBoolean("is_suspended"));
+                trans.put("is_completed", rs.getBoolean("is_completed"));
+            }
 
-        rs.close();
-        pstmt.close();
-        return trans;
+            rs.close();
+            return trans;
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,8 @@ import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * HTTP Client for communicating with the Discount API.
@@ -35,15 +37,7 @@ public class DiscountApiClient {
         }
 
         try {
-            String jsonBody = toJson(request);
-
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(config.getDiscountUrl()))
-                    .header("Content-Type", "application/json")
-                    .header("Accept", "application/json")
-                    .timeout(Duration.ofMillis(config.getReadTimeout()))
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
+            HttpRequest httpRequest = buildRequest(request);
 
             HttpResponse<String> response = httpClient.send(
                     httpRequest,
@@ -66,6 +60,61 @@ public class DiscountApiClient {
         }
     }
 
+    /**
+     * Asynchronous version of calculateDiscount. The request is sent with
+     * HttpClient.sendAsync, so the calling thread never waits on the network.
+     *
+     * @param request The discount request containing items
+     * @return future completed with the DiscountResponse, or exceptionally with
+     *         a CompletionException wrapping a DiscountApiException
+     */
+    public CompletableFuture<DiscountResponse> calculateDiscountAsync(DiscountRequest request) {
+        if (config.isEnabled()) {
+            return CompletableFuture.failedFuture(new DiscountApiException("Discount API is disabled"));
+        }
+
+        HttpRequest httpRequest;
+        try {
+            httpRequest = buildRequest(request);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    new DiscountApiException("Failed to call discount API: " + e.getMessage(), e));
+        }
+
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                        throw new CompletionException(
+                                new DiscountApiException("Failed to call discount API: " + reason, cause));
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new DiscountApiException(
+                                "API returned error status: " + response.statusCode() +
+                                        " - " + response.body()));
+                    }
+                    try {
+                        return parseResponse(response.body());
+                    } catch (DiscountApiException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private HttpRequest buildRequest(DiscountRequest request) {
+        String jsonBody = toJson(request);
+
+        return HttpRequest.newBuilder()
+                .uri(URI.create(config.getDiscountUrl()))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .timeout(Duration.ofMillis(config.getReadTimeout()))
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                .build();
+    }
+
     /**
      * Tests if the API is reachable.
      */
@@ -89,9 +138,9 @@ public class DiscountApiClient {
     }
 
     /**
-     * Converts DiscountRequest to JSON string.
+     * Converts DiscountRequest to JSON string. Package-private for the benchmarks.
      */
-    private String toJson(DiscountRequest request) {
+    String toJson(DiscountRequest request) {
         StringBuilder json = new StringBuilder();
         json.append("{\"items\":[");
 
@@ -104,7 +153,8 @@ public class DiscountApiClient {
             json.append("\"product\":{");
             json.append("\"upc\":\"").append(escapeJson(product.getUpc())).append("\",");
             json.append("\"name\":\"").append(escapeJson(product.getName())).append("\",");
-            json.append("\"price\":").append(product.getPrice());
+            json.append("\"price\":");
+            Money.appendTo(json, product.getPriceCents(), false);
             json.append("},");
             json.append("\"quantity\":").append(item.getQuantity());
             json.append("}");
@@ -119,15 +169,15 @@ public class DiscountApiClient {
     }
 
     /**
-     * Parses JSON response into DiscountResponse.
+     * Parses JSON response into DiscountResponse. Package-private for the benchmarks.
      */
-    private DiscountResponse parseResponse(String json) throws DiscountApiException {
+    DiscountResponse parseResponse(String json) throws DiscountApiException {
         try {
             DiscountResponse response = new DiscountResponse();
 
-            response.setOriginalTotal(extractDouble(json, "originalTotal"));
-            response.setDiscountAmount(extractDouble(json, "discountAmount"));
-            response.setFinalTotal(extractDouble(json, "finalTotal"));
+            response.setOriginalTotalCents(extractCents(json, "originalTotal"));
+            response.setDiscountCents(extractCents(json, "discountAmount"));
+            response.setFinalTotalCents(extractCents(json, "finalTotal"));
             response.setAppliedDiscounts(extractStringList(json));
 
             return response;
@@ -137,12 +187,12 @@ public class DiscountApiClient {
     }
 
     /**
-     * Extracts a double value from JSON.
+     * Extracts a decimal dollar amount from JSON as cents, without going through double.
      */
-    private double extractDouble(String json, String key) {
+    private long extractCents(String json, String key) {
         String pattern = "\"" + key + "\":";
         int start = json.indexOf(pattern);
-        if (start == -1) return 0.0;
+        if (start == -1) return 0;
 
         start += pattern.length();
         int end = start;
@@ -153,7 +203,7 @@ public class DiscountApiClient {
         }
 
         String value = json.substring(start, end).trim();
-        return Double.parseDouble(value);
+        return Money.parse(value);
     }
 
     /**
@@ -0,0 +1,159 @@
+import java.util.*;
+
+/**
+ * Cache of discount results keyed by a canonical basket fingerprint.
+ * The fingerprint is the sorted list of (UPC, total quantity) pairs, so the same
+ * basket scanned in a different order, resumed, or voided and re-added is a hit.
+ * Entries expire after a TTL and the least recently used entry is evicted once
+ * the size bound is reached. Failures are cached for a shorter time, and a failure
+ * also suppresses API calls for every basket until the negative TTL runs out.
+ */
+public class DiscountCache {
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, Entry> entries;
+
+    // API calls are skipped until this time after a failure (System.nanoTime based)
+    private long endpointDownUntil;
+    private boolean endpointDown;
+
+    private long hits;
+    private long misses;
+    private long negativeHits;
+    private long evictions;
+
+    public DiscountCache(long ttlMillis, long negativeTtlMillis, int maxEntries) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.negativeTtlNanos = negativeTtlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Builds the canonical fingerprint for a basket.
+     */
+    public static String fingerprint(List<TransactionItem> items) {
+        // Merge duplicate UPCs first so split lines and merged lines match
+        Map<String, Integer> quantities = new TreeMap<>();
+        for (TransactionItem item : items) {
+            quantities.merge(item.getProduct().getUpc(), item.getQuantity(), Integer::sum);
+        }
+
+        StringBuilder key = new StringBuilder(quantities.size() * 16);
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            key.append(entry.getKey()).append('x').append(entry.getValue()).append(';');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a cached result for the fingerprint, or null on a miss or expired entry.
+     */
+    public synchronized DiscountService.DiscountResult get(String fingerprint) {
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(fingerprint);
+            misses++;
+            return null;
+        }
+
+        if (entry.negative) {
+            negativeHits++;
+        } else {
+            hits++;
+        }
+        return entry.result;
+    }
+
+    public synchronized void put(String fingerprint, DiscountService.DiscountResult result) {
+        entries.put(fingerprint, new Entry(result, System.nanoTime() + ttlNanos, false));
+        endpointDown = false;
+    }
+
+    /**
+     * Caches a fallback result after an API failure and suppresses further calls
+     * for the negative TTL.
+     */
+    public synchronized void putFailure(String fingerprint, DiscountService.DiscountResult fallback) {
+        long now = System.nanoTime();
+        entries.put(fingerprint, new Entry(fallback, now + negativeTtlNanos, true));
+        endpointDown = true;
+        endpointDownUntil = now + negativeTtlNanos;
+    }
+
+    /**
+     * Returns true while a recent failure means the API should not be called.
+     */
+    public synchronized boolean isEndpointSuppressed() {
+        if (endpointDown && System.nanoTime() - endpointDownUntil > 0) {
+            endpointDown = false;
+        }
+        return endpointDown;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        endpointDown = false;
+    }
+
+    // ==================== Statistics ====================
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getNegativeHits() {
+        return negativeHits;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + negativeHits + misses;
+        double hitRate = lookups == 0 ? 0 : (hits + negativeHits) * 100.0 / lookups;
+        return "DiscountCache{" +
+                "size=" + entries.size() +
+                ", hits=" + hits +
+                ", negativeHits=" + negativeHits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", hitRate=" + String.format("%.1f%%", hitRate) +
+                '}';
+    }
+
+    private static class Entry {
+        final DiscountService.DiscountResult result;
+        final long expiresAt;
+        final boolean negative;
+
+        Entry(DiscountService.DiscountResult result, long expiresAt, boolean negative) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.negative = negative;
+        }
+    }
+}
@@ -30,8 +30,8 @@ public class DiscountItemDTO {
         return quantity;
     }
 
-    public double getLineTotal() {
-        return product.getPrice() * quantity;
+    public long getLineTotalCents() {
+        return Money.times(product.getPriceCents(), quantity);
     }
 
     @Override
@@ -39,7 +39,7 @@ public class DiscountItemDTO {
         return "DiscountItemDTO{" +
                 "product=" + product +
                 ", quantity=" + quantity +
-                ", lineTotal=" + getLineTotal() +
+                ", lineTotal=" + Money.toPlainString(getLineTotalCents()) +
                 '}';
     }
 }
\ No newline at end of file
@@ -6,12 +6,13 @@ public class DiscountProductDTO {
 
     private String upc;
     private String name;
-    private double price;
+    // Sent to the API as a decimal dollar amount
+    private long priceCents;
 
-    public DiscountProductDTO(String upc, String name, double price) {
+    public DiscountProductDTO(String upc, String name, long priceCents) {
         this.upc = upc;
         this.name = name;
-        this.price = price;
+        this.priceCents = priceCents;
     }
 
     /**
@@ -21,7 +22,7 @@ public class DiscountProductDTO {
         return new DiscountProductDTO(
                 product.getUpc(),
                 product.getName(),
-                product.getPrice()
+                product.getPriceCents()
         );
     }
 
@@ -33,8 +34,8 @@ public class DiscountProductDTO {
         return name;
     }
 
-    public double getPrice() {
-        return price;
+    public long getPriceCents() {
+        return priceCents;
     }
 
     @Override
@@ -42,7 +43,7 @@ public class DiscountProductDTO {
         return "DiscountProductDTO{" +
                 "upc='" + upc + '\'' +
                 ", name='" + name + '\'' +
-                ", price=" + price +
+                ", price=" + Money.toPlainString(priceCents) +
                 '}';
     }
 }
\ No newline at end of file
@@ -7,52 +7,53 @@ import java.util.List;
  */
 public class DiscountResponse {
 
-    private double originalTotal;
-    private double discountAmount;
-    private double finalTotal;
+    // Amounts in cents; the API sends and receives them as decimal dollars
+    private long originalTotalCents;
+    private long discountCents;
+    private long finalTotalCents;
     private List<String> appliedDiscounts;
 
     public DiscountResponse() {
         this.appliedDiscounts = Collections.emptyList();
     }
 
-    public DiscountResponse(double originalTotal, double discountAmount,
-                            double finalTotal, List<String> appliedDiscounts) {
-        this.originalTotal = originalTotal;
-        this.discountAmount = discountAmount;
-        this.finalTotal = finalTotal;
+    public DiscountResponse(long originalTotalCents, long discountCents,
+                            long finalTotalCents, List<String> appliedDiscounts) {
+        this.originalTotalCents = originalTotalCents;
+        this.discountCents = discountCents;
+        this.finalTotalCents = finalTotalCents;
         this.appliedDiscounts = appliedDiscounts != null ? appliedDiscounts : Collections.emptyList();
     }
 
     /**
      * Creates a response with no discounts applied (fallback scenario).
      */
-    public static DiscountResponse noDiscount(double total) {
-        return new DiscountResponse(total, 0.0, total, Collections.emptyList());
+    public static DiscountResponse noDiscount(long totalCents) {
+        return new DiscountResponse(totalCents, 0, totalCents, Collections.emptyList());
     }
 
-    public double getOriginalTotal() {
-        return originalTotal;
+    public long getOriginalTotalCents() {
+        return originalTotalCents;
     }
 
-    public void setOriginalTotal(double originalTotal) {
-        this.originalTotal = originalTotal;
+    public void setOriginalTotalCents(long originalTotalCents) {
+        this.originalTotalCents = originalTotalCents;
     }
 
-    public double getDiscountAmount() {
-        return discountAmount;
+    public long getDiscountCents() {
+        return discountCents;
     }
 
-    public void setDiscountAmount(double discountAmount) {
-        this.discountAmount = discountAmount;
+    public void setDiscountCents(long discountCents) {
+        this.discountCents = discountCents;
     }
 
-    public double getFinalTotal() {
-        return finalTotal;
+    public long getFinalTotalCents() {
+        return finalTotalCents;
     }
 
-    public void setFinalTotal(double finalTotal) {
-        this.finalTotal = finalTotal;
+    public void setFinalTotalCents(long finalTotalCents) {
+        this.finalTotalCents = finalTotalCents;
     }
 
     public List<String> getAppliedDiscounts() {
@@ -64,15 +65,15 @@ public class DiscountResponse {
     }
 
     public boolean hasDiscounts() {
-        return discountAmount > 0 && !appliedDiscounts.isEmpty();
+        return discountCents > 0 && !appliedDiscounts.isEmpty();
     }
 
     @Override
     public String toString() {
         return "DiscountResponse{" +
-                "originalTotal=" + originalTotal +
-                ", discountAmount=" + discountAmount +
-                ", finalTotal=" + finalTotal +
+                "originalTotal=" + Money.toPlainString(originalTotalCents) +
+                ", discountAmount=" + Money.toPlainString(discountCents) +
+                ", finalTotal=" + Money.toPlainString(finalTotalCents) +
                 ", appliedDiscounts=" + appliedDiscounts +
                 '}';
     }
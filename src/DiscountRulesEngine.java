@@ -0,0 +1,472 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-process evaluator for the promotion types the discount API returns.
+ * Rules are read from a locally synced tab-separated file and compiled into a
+ * per-UPC table, so evaluating a basket only touches promotions its UPCs belong to.
+ * Use a Session to maintain the discount incrementally as the basket changes.
+ *
+ * Rules file format (one promotion per line, tab-separated, '#' starts a comment):
+ * <pre>
+ * id    type           name                 upcs (comma separated)   param1   param2
+ * P1    BOGO           Polar Pop BOGO       041594904794,041594899038   1        1      buy 1, get 1 free
+ * P2    MIX_MATCH      Any 2 Candy $3       028000123456,034000002467   2        3.00   any 2 for $3.00
+ * P3    QTY_THRESHOLD  10% Off 3+ Energy    070847811169,611269991000   3        10     10% off when 3 or more
+ * </pre>
+ */
+public class DiscountRulesEngine {
+
+    public enum PromotionType {
+        BOGO,            // Buy param1, get param2 free (cheapest units are free)
+        MIX_MATCH,       // Any param1 units from the set for param2 dollars
+        QTY_THRESHOLD    // param2 percent off the set once param1 units are in the basket
+    }
+
+    private static final Promotion[] NO_PROMOTIONS = new Promotion[0];
+
+    private final List<Promotion> promotions;
+    private final Map<String, Promotion[]> promotionsByUpc;
+
+    public DiscountRulesEngine(List<Promotion> promotions) {
+        this.promotions = Collections.unmodifiableList(new ArrayList<>(promotions));
+
+        // Compile the per-UPC lookup table
+        Map<String, List<Promotion>> byUpc = new HashMap<>();
+        for (Promotion promotion : promotions) {
+            for (String upc : promotion.getUpcs()) {
+                byUpc.computeIfAbsent(upc, k -> new ArrayList<>()).add(promotion);
+            }
+        }
+        this.promotionsByUpc = new HashMap<>(byUpc.size() * 2);
+        for (Map.Entry<String, List<Promotion>> entry : byUpc.entrySet()) {
+            promotionsByUpc.put(entry.getKey(), entry.getValue().toArray(new Promotion[0]));
+        }
+    }
+
+    /**
+     * Returns an engine with no promotions.
+     */
+    public static DiscountRulesEngine empty() {
+        return new DiscountRulesEngine(List.of());
+    }
+
+    /**
+     * Loads and compiles a rules file. Bad lines are reported and skipped;
+     * a missing file yields an empty engine.
+     */
+    public static DiscountRulesEngine load(Path path) {
+        if (!Files.exists(path)) {
+            return empty();
+        }
+
+        List<Promotion> promotions = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                try {
+                    promotions.add(Promotion.parse(line));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Discount rules line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading discount rules: " + e.getMessage());
+        }
+
+        return new DiscountRulesEngine(promotions);
+    }
+
+    public boolean hasRules() {
+        return !promotions.isEmpty();
+    }
+
+    public List<Promotion> getPromotions() {
+        return promotions;
+    }
+
+    /**
+     * Returns the promotions a UPC participates in (empty array if none).
+     */
+    public Promotion[] getPromotionsFor(String upc) {
+        Promotion[] result = promotionsByUpc.get(upc);
+        return result != null ? result : NO_PROMOTIONS;
+    }
+
+    /**
+     * Evaluates every promotion that applies to the basket from scratch.
+     */
+    public DiscountResponse evaluate(List<TransactionItem> items) {
+        Session session = newSession();
+        long subtotalCents = 0;
+        for (TransactionItem item : items) {
+            subtotalCents += item.getTotalCents();
+            session.apply(item.getProduct().getUpc(), item.getProduct().getPriceCents(), item.getQuantity());
+        }
+        return session.toResponse(subtotalCents);
+    }
+
+    /**
+     * Starts incremental evaluation for one transaction.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Incremental discount state for a single basket.
+     * Each add, void or quantity change is applied as a (UPC, unit price in cents, quantity delta)
+     * and only the promotions that include that UPC are recomputed, so the cost of a
+     * scan depends on the promotions it touches rather than on basket size.
+     * Not thread-safe; owned by the controller.
+     */
+    public class Session {
+        private final Map<Promotion, PromotionState> states = new IdentityHashMap<>();
+        // Promotions currently giving a discount, in the order they first applied
+        private final Set<PromotionState> active = new LinkedHashSet<>();
+
+        public void apply(String upc, long unitPriceCents, int quantityDelta) {
+            if (quantityDelta == 0) {
+                return;
+            }
+            for (Promotion promotion : getPromotionsFor(upc)) {
+                PromotionState state = states.computeIfAbsent(promotion, PromotionState::new);
+                state.apply(unitPriceCents, quantityDelta);
+                if (state.discountCents > 0) {
+                    active.add(state);
+                } else {
+                    active.remove(state);
+                }
+            }
+        }
+
+        public long getDiscountCents() {
+            long discountCents = 0;
+            for (PromotionState state : active) {
+                discountCents += state.discountCents;
+            }
+            return discountCents;
+        }
+
+        public List<String> getAppliedDiscounts() {
+            List<String> names = new ArrayList<>(active.size());
+            for (PromotionState state : active) {
+                names.add(state.promotion.getName());
+            }
+            return names;
+        }
+
+        /**
+         * Builds a response for the current state; the discount never exceeds the subtotal.
+         */
+        public DiscountResponse toResponse(long subtotalCents) {
+            long discountCents = Math.min(getDiscountCents(), subtotalCents);
+            return new DiscountResponse(subtotalCents, discountCents, subtotalCents - discountCents,
+                    getAppliedDiscounts());
+        }
+
+        public void reset() {
+            states.clear();
+            active.clear();
+        }
+    }
+
+    /**
+     * Running state of one promotion within a session.
+     */
+    private static class PromotionState {
+        final Promotion promotion;
+        int eligibleQty;
+        long eligibleCents;
+        // Unit price in cents -> quantity, most expensive first (grouped promotions only)
+        final TreeMap<Long, Integer> units = new TreeMap<>(Comparator.reverseOrder());
+        long discountCents;
+
+        PromotionState(Promotion promotion) {
+            this.promotion = promotion;
+        }
+
+        void apply(long unitPriceCents, int quantityDelta) {
+            eligibleQty += quantityDelta;
+            eligibleCents += Money.times(unitPriceCents, quantityDelta);
+            if (promotion.getType() != PromotionType.QTY_THRESHOLD) {
+                units.merge(unitPriceCents, quantityDelta, (a, b) -> a + b == 0 ? null : a + b);
+            }
+            discountCents = compute();
+        }
+
+        private long compute() {
+            if (eligibleQty <= 0) {
+                return 0;
+            }
+            switch (promotion.getType()) {
+                case QTY_THRESHOLD:
+                    return eligibleQty >= promotion.getQuantity()
+                            ? Money.applyRate(eligibleCents, promotion.getRateBasisPoints()) : 0;
+                case BOGO:
+                    return bogoDiscount();
+                case MIX_MATCH:
+                    return mixMatchDiscount();
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Units are grouped most expensive first; the last (cheapest) free units of
+         * each full group are free. Works per price bucket, not per unit.
+         */
+        private long bogoDiscount() {
+            int free = promotion.getFreeUnits();
+            int groupSize = promotion.getQuantity() + free;
+            int covered = (eligibleQty / groupSize) * groupSize;
+            if (covered == 0 || free == 0) {
+                return 0;
+            }
+
+            long discount = 0;
+            int position = 0;
+            for (Map.Entry<Long, Integer> bucket : units.entrySet()) {
+                if (position >= covered) {
+                    break;
+                }
+                int end = position + bucket.getValue();
+                int freeUnits = freeBefore(end, covered, groupSize, free) - freeBefore(position, covered, groupSize, free);
+                discount += Money.times(bucket.getKey(), freeUnits);
+                position = end;
+            }
+            return discount;
+        }
+
+        // Number of free positions in [0, x) when the first `covered` units form full groups
+        private static int freeBefore(int x, int covered, int groupSize, int free) {
+            int full = Math.min(x, covered);
+            return (full / groupSize) * free + Math.max(0, full % groupSize - (groupSize - free));
+        }
+
+        /**
+         * Units are grouped most expensive first; each full group costs the promo price.
+         */
+        private long mixMatchDiscount() {
+            int groupSize = promotion.getQuantity();
+            long groupPrice = promotion.getGroupPriceCents();
+            int groups = eligibleQty / groupSize;
+
+            long discount = 0;
+            long groupTotal = 0;
+            int inGroup = 0;
+            for (Map.Entry<Long, Integer> bucket : units.entrySet()) {
+                long price = bucket.getKey();
+                int remaining = bucket.getValue();
+                while (remaining > 0 && groups > 0) {
+                    if (inGroup == 0 && remaining >= groupSize) {
+                        // Whole groups at a single price
+                        int whole = Math.min(remaining / groupSize, groups);
+                        discount += whole * Math.max(0, Money.times(price, groupSize) - groupPrice);
+                        remaining -= whole * groupSize;
+                        groups -= whole;
+                        continue;
+                    }
+                    int take = Math.min(remaining, groupSize - inGroup);
+                    groupTotal += Money.times(price, take);
+                    inGroup += take;
+                    remaining -= take;
+                    if (inGroup == groupSize) {
+                        discount += Math.max(0, groupTotal - groupPrice);
+                        groupTotal = 0;
+                        inGroup = 0;
+                        groups--;
+                    }
+                }
+                if (groups == 0) {
+                    break;
+                }
+            }
+            return discount;
+        }
+    }
+
+    /**
+     * A single compiled promotion. param2 of the rules file is kept in the field for
+     * its type; the fields of the other types are 0.
+     */
+    public static class Promotion {
+        private static final long MAX_RATE_BASIS_POINTS = 10_000;
+
+        private final String id;
+        private final PromotionType type;
+        private final String name;
+        private final Set<String> upcs;
+        private final int quantity;
+        // MIX_MATCH: price of a full group, in cents
+        private final long groupPriceCents;
+        // QTY_THRESHOLD: percentage off, in basis points
+        private final long rateBasisPoints;
+        // BOGO: units free in each group
+        private final int freeUnits;
+
+        private Promotion(String id, PromotionType type, String name, Set<String> upcs, int quantity,
+                          long groupPriceCents, long rateBasisPoints, int freeUnits) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.upcs = Collections.unmodifiableSet(new LinkedHashSet<>(upcs));
+            this.quantity = quantity;
+            this.groupPriceCents = groupPriceCents;
+            this.rateBasisPoints = rateBasisPoints;
+            this.freeUnits = freeUnits;
+        }
+
+        /**
+         * Buy buyQuantity, get freeUnits free; the cheapest units of each group are free.
+         */
+        public static Promotion bogo(String id, String name, Set<String> upcs, int buyQuantity, int freeUnits) {
+            return new Promotion(id, PromotionType.BOGO, name, upcs, buyQuantity, 0, 0, freeUnits);
+        }
+
+        /**
+         * Any quantity units from the set for groupPriceCents.
+         */
+        public static Promotion mixMatch(String id, String name, Set<String> upcs, int quantity, long groupPriceCents) {
+            return new Promotion(id, PromotionType.MIX_MATCH, name, upcs, quantity, groupPriceCents, 0, 0);
+        }
+
+        /**
+         * rateBasisPoints off the set once quantity units are in the basket.
+         */
+        public static Promotion qtyThreshold(String id, String name, Set<String> upcs, int quantity,
+                                             long rateBasisPoints) {
+            return new Promotion(id, PromotionType.QTY_THRESHOLD, name, upcs, quantity, 0, rateBasisPoints, 0);
+        }
+
+        static Promotion parse(String line) {
+            String[] columns = line.split("\t");
+            if (columns.length < 6) {
+                throw new IllegalArgumentException("expected 6 tab-separated columns");
+            }
+
+            PromotionType type;
+            try {
+                type = PromotionType.valueOf(columns[1].trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown promotion type " + columns[1].trim());
+            }
+
+            Set<String> upcs = new LinkedHashSet<>();
+            for (String upc : columns[3].split(",")) {
+                if (!upc.trim().isEmpty()) {
+                    upcs.add(upc.trim());
+                }
+            }
+            if (upcs.isEmpty()) {
+                throw new IllegalArgumentException("promotion has no UPCs");
+            }
+
+            String id = columns[0].trim();
+            String name = columns[2].trim();
+            String param2 = columns[5].trim();
+            try {
+                int quantity = Integer.parseInt(columns[4].trim());
+                if (quantity <= 0) {
+                    throw new IllegalArgumentException("quantity must be positive");
+                }
+
+                switch (type) {
+                    case BOGO: {
+                        int free = Integer.parseInt(param2);
+                        if (free <= 0) {
+                            throw new IllegalArgumentException("free units must be a positive whole number");
+                        }
+                        return bogo(id, name, upcs, quantity, free);
+                    }
+                    case MIX_MATCH: {
+                        long price = Money.parse(param2);
+                        if (price < 0) {
+                            throw new IllegalArgumentException("group price must not be negative");
+                        }
+                        return mixMatch(id, name, upcs, quantity, price);
+                    }
+                    case QTY_THRESHOLD: {
+                        // Percent with at most two decimals, e.g. "12.5" is 1250 basis points
+                        long rate = new BigDecimal(param2).movePointRight(2).longValueExact();
+                        if (rate < 0 || rate > MAX_RATE_BASIS_POINTS) {
+                            throw new IllegalArgumentException("percentage must be between 0 and 100");
+                        }
+                        return qtyThreshold(id, name, upcs, quantity, rate);
+                    }
+                    default:
+                        throw new IllegalArgumentException("unknown promotion type " + type);
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("invalid number: " + e.getMessage());
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public PromotionType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Set<String> getUpcs() {
+            return upcs;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getGroupPriceCents() {
+            return groupPriceCents;
+        }
+
+        public long getRateBasisPoints() {
+            return rateBasisPoints;
+        }
+
+        public int getFreeUnits() {
+            return freeUnits;
+        }
+
+        @Override
+        public String toString() {
+            String terms;
+            switch (type) {
+                case BOGO:
+                    terms = "buy=" + quantity + ", free=" + freeUnits;
+                    break;
+                case MIX_MATCH:
+                    terms = "quantity=" + quantity + ", groupPrice=" + Money.toPlainString(groupPriceCents);
+                    break;
+                default:
+                    terms = "quantity=" + quantity + ", rate=" + Money.toPlainString(rateBasisPoints) + "%";
+                    break;
+            }
+            return "Promotion{" +
+                    "id='" + id + '\'' +
+                    ", type=" + type +
+                    ", name='" + name + '\'' +
+                    ", upcs=" + upcs.size() +
+                    ", " + terms +
+                    '}';
+        }
+    }
+}
@@ -1,18 +1,33 @@
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service layer for discount calculations.
  * Wraps the API client and provides fallback behavior when API is unavailable.
+ * Results are cached per basket fingerprint (see DiscountCache).
+ * When a local rules file is present, discounts are evaluated in-process by
+ * DiscountRulesEngine and the API is only called at tender to reconcile.
  */
 public class DiscountService {
 
     private final DiscountApiClient apiClient;
     private final ApiConfig config;
-    private boolean lastCallSuccessful;
+    private final DiscountCache cache;
+    private final DiscountRulesEngine rulesEngine;
+    private volatile boolean lastCallSuccessful;
+    private volatile long reconcileMismatches;
 
     public DiscountService(ApiConfig config) {
         this.config = config;
         this.apiClient = new DiscountApiClient(config);
+        this.cache = new DiscountCache(config.getCacheTtl(), config.getNegativeCacheTtl(),
+                config.getCacheMaxEntries());
+        this.rulesEngine = DiscountRulesEngine.load(Paths.get(config.getRulesFile()));
+        if (rulesEngine.hasRules()) {
+            System.out.println("Loaded " + rulesEngine.getPromotions().size() + " local discount rules");
+        }
     }
 
     /**
@@ -27,33 +42,165 @@ public class DiscountService {
             return DiscountResult.noItems();
         }
 
+        if (rulesEngine.hasRules()) {
+            DiscountResult local = DiscountResult.local(rulesEngine.evaluate(items));
+            reconcile(items, local);
+            return local;
+        }
+
         if (config.isEnabled()) {
-            return DiscountResult.disabled(calculateSubtotal(items));
+            return DiscountResult.disabled(calculateSubtotalCents(items));
+        }
+
+        String fingerprint = DiscountCache.fingerprint(items);
+        DiscountResult cached = lookup(fingerprint, items);
+        if (cached != null) {
+            return cached;
         }
 
         try {
             DiscountRequest request = DiscountRequest.fromTransactionItems(items);
             DiscountResponse response = apiClient.calculateDiscount(request);
             lastCallSuccessful = true;
-            return DiscountResult.success(response);
+            DiscountResult result = DiscountResult.success(response);
+            cache.put(fingerprint, result);
+            return result;
 
         } catch (DiscountApiClient.DiscountApiException e) {
             lastCallSuccessful = false;
             System.err.println("Discount API error: " + e.getMessage());
 
             // Fallback: return no discount
-            double subtotal = calculateSubtotal(items);
-            return DiscountResult.fallback(subtotal, e.getMessage());
+            long subtotalCents = calculateSubtotalCents(items);
+            DiscountResult result = DiscountResult.fallback(subtotalCents, e.getMessage());
+            cache.putFailure(fingerprint, result);
+            return result;
+        }
+    }
+
+    /**
+     * Asynchronous version of calculateDiscount. The items are copied into the
+     * request before returning, so the caller may keep modifying its list.
+     * The future never completes exceptionally; API failures become a fallback result.
+     *
+     * @param items List of transaction items
+     * @return future DiscountResult containing the response and status
+     */
+    public CompletableFuture<DiscountResult> calculateDiscountAsync(List<TransactionItem> items) {
+        if (items == null || items.isEmpty()) {
+            return CompletableFuture.completedFuture(DiscountResult.noItems());
+        }
+
+        // Local rules are fast enough to evaluate on every scan; no API call per scan
+        if (rulesEngine.hasRules()) {
+            return CompletableFuture.completedFuture(DiscountResult.local(rulesEngine.evaluate(items)));
+        }
+
+        long subtotalCents = calculateSubtotalCents(items);
+        if (config.isEnabled()) {
+            return CompletableFuture.completedFuture(DiscountResult.disabled(subtotalCents));
+        }
+
+        String fingerprint = DiscountCache.fingerprint(items);
+        DiscountResult cached = lookup(fingerprint, items);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        DiscountRequest request = DiscountRequest.fromTransactionItems(items);
+        return apiClient.calculateDiscountAsync(request)
+                .thenApply(response -> {
+                    lastCallSuccessful = true;
+                    DiscountResult result = DiscountResult.success(response);
+                    cache.put(fingerprint, result);
+                    return result;
+                })
+                .exceptionally(error -> {
+                    lastCallSuccessful = false;
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    System.err.println("Discount API error: " + cause.getMessage());
+
+                    // Fallback: return no discount
+                    DiscountResult result = DiscountResult.fallback(subtotalCents, cause.getMessage());
+                    cache.putFailure(fingerprint, result);
+                    return result;
+                });
+    }
+
+    /**
+     * Returns a cached result, or a fallback while a recent API failure is
+     * suppressing calls. Returns null if the API should be called.
+     */
+    private DiscountResult lookup(String fingerprint, List<TransactionItem> items) {
+        DiscountResult cached = cache.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        if (cache.isEndpointSuppressed()) {
+            return DiscountResult.fallback(calculateSubtotalCents(items), "recent API failure, retrying shortly");
         }
+        return null;
+    }
+
+    /**
+     * Returns a new incremental session over the local rules, or null if no rules are loaded.
+     */
+    public DiscountRulesEngine.Session newLocalSession() {
+        return rulesEngine.hasRules() ? rulesEngine.newSession() : null;
+    }
+
+    /**
+     * Checks a local result against the API in the background and logs any difference.
+     * The local result stays authoritative for the transaction.
+     */
+    public void reconcile(List<TransactionItem> items, DiscountResult local) {
+        if (config.isEnabled()) {
+            return;
+        }
+        DiscountRequest request = DiscountRequest.fromTransactionItems(items);
+        apiClient.calculateDiscountAsync(request).whenComplete((response, error) -> {
+            if (error != null) {
+                lastCallSuccessful = false;
+                return;
+            }
+            lastCallSuccessful = true;
+            if (response.getDiscountCents() != local.getDiscountCents()) {
+                reconcileMismatches++;
+                System.err.println("Discount reconciliation mismatch: local " + Money.toPlainString(local.getDiscountCents()) +
+                        " " + local.getAppliedDiscounts() + ", API " + Money.toPlainString(response.getDiscountCents()) +
+                        " " + response.getAppliedDiscounts());
+            }
+        });
+    }
+
+    public DiscountRulesEngine getRulesEngine() {
+        return rulesEngine;
     }
 
     /**
-     * Calculates subtotal from transaction items (fallback calculation).
+     * Number of tenders where the local rules and the API disagreed.
      */
-    private double calculateSubtotal(List<TransactionItem> items) {
-        return items.stream()
-                .mapToDouble(TransactionItem::getTotal)
-                .sum();
+    public long getReconcileMismatches() {
+        return reconcileMismatches;
+    }
+
+    /**
+     * Returns the result cache, e.g. to read hit/miss counts for sizing.
+     */
+    public DiscountCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Calculates subtotal in cents from transaction items (fallback calculation).
+     */
+    private long calculateSubtotalCents(List<TransactionItem> items) {
+        long subtotalCents = 0;
+        for (TransactionItem item : items) {
+            subtotalCents += item.getTotalCents();
+        }
+        return subtotalCents;
     }
 
     /**
@@ -67,6 +214,7 @@ public class DiscountService {
         public enum Status {
             SUCCESS,      // API call succeeded
             FALLBACK,     // API failed, using fallback
+            LOCAL,        // Evaluated by the local rules engine
             DISABLED,     // Service is disabled
             NO_ITEMS      // No items to calculate
         }
@@ -81,14 +229,18 @@ public class DiscountService {
             return new DiscountResult(response, Status.SUCCESS, "Discount calculated successfully");
         }
 
-        public static DiscountResult fallback(double subtotal, String errorMessage) {
-            DiscountResponse response = DiscountResponse.noDiscount(subtotal);
+        public static DiscountResult fallback(long subtotalCents, String errorMessage) {
+            DiscountResponse response = DiscountResponse.noDiscount(subtotalCents);
             return new DiscountResult(response, Status.FALLBACK,
                     "API unavailable, no discount applied: " + errorMessage);
         }
 
-        public static DiscountResult disabled(double subtotal) {
-            DiscountResponse response = DiscountResponse.noDiscount(subtotal);
+        public static DiscountResult local(DiscountResponse response) {
+            return new DiscountResult(response, Status.LOCAL, "Discount calculated from local rules");
+        }
+
+        public static DiscountResult disabled(long subtotalCents) {
+            DiscountResponse response = DiscountResponse.noDiscount(subtotalCents);
             return new DiscountResult(response, Status.DISABLED, "Discount service is disabled");
         }
 
@@ -113,8 +265,8 @@ public class DiscountService {
             return response != null && response.hasDiscounts();
         }
 
-        public double getDiscountAmount() {
-            return response != null ? response.getDiscountAmount() : 0;
+        public long getDiscountCents() {
+            return response != null ? response.getDiscountCents() : 0;
         }
 
         public List<String> getAppliedDiscounts() {
@@ -127,7 +279,7 @@ public class DiscountService {
                     "status=" + status +
                     ", message='" + message + '\'' +
                     ", hasDiscount=" + hasDiscount() +
-                    ", discountAmount=" + getDiscountAmount() +
+                    ", discountAmount=" + Money.toPlainString(getDiscountCents()) +
                     '}';
         }
     }
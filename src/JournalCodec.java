@@ -0,0 +1,252 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary encoding of journal records.
+ *
+ * A journal file starts with an 8-byte header (magic "VJNL" and a format version),
+ * followed by records laid out as:
+ * <pre>
+ * int     payload length (bytes, > 0; a zero here marks the end of the written data)
+ * int     CRC32C of the payload
+ * payload:
+ *   byte    event type (JournalEvent.Type ordinal - only append new types)
+ *   byte    field flags (which of the optional fields below are present)
+ *   varlong timestamp (epoch millis)
+ *   varint  transaction id
+ *   varint  line number
+ *   [varint quantity] [varint secondary quantity]         zigzag encoded
+ *   [varlong amount cents] [varlong secondary amount cents] zigzag encoded
+ *   [str upc] [str name] [str payment type]
+ *   [varint detail count, then one str per detail]
+ * </pre>
+ * A str is a varint byte length followed by UTF-8 bytes. Absent fields decode
+ * as zero or null, so a scan line costs about as much as its UPC and name.
+ */
+public final class JournalCodec {
+
+    public static final int MAGIC = 0x564A4E4C; // "VJNL"
+    public static final int VERSION = 2;
+    public static final int FILE_HEADER_SIZE = 8;
+    public static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int HAS_QUANTITY = 1;
+    private static final int HAS_SECONDARY_QUANTITY = 1 << 1;
+    private static final int HAS_AMOUNT = 1 << 2;
+    private static final int HAS_SECONDARY_AMOUNT = 1 << 3;
+    private static final int HAS_UPC = 1 << 4;
+    private static final int HAS_NAME = 1 << 5;
+    private static final int HAS_PAYMENT_TYPE = 1 << 6;
+    private static final int HAS_DETAILS = 1 << 7;
+
+    // Strings and detail lists are clamped so a record always fits a write buffer
+    private static final int MAX_STRING_BYTES = 1024;
+    private static final int MAX_DETAILS = 32;
+    public static final int MAX_PAYLOAD_SIZE = 2 + 10 + 2 * 5 + 2 * 5 + 2 * 10
+            + 3 * (2 + MAX_STRING_BYTES) + 1 + MAX_DETAILS * (2 + MAX_STRING_BYTES);
+    public static final int MAX_RECORD_SIZE = RECORD_HEADER_SIZE + MAX_PAYLOAD_SIZE;
+
+    private static final JournalEvent.Type[] TYPES = JournalEvent.Type.values();
+
+    private JournalCodec() {
+    }
+
+    public static void writeFileHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    public static boolean isValidFileHeader(ByteBuffer buffer) {
+        return buffer.remaining() >= FILE_HEADER_SIZE
+                && buffer.getInt() == MAGIC
+                && buffer.getInt() == VERSION;
+    }
+
+    /**
+     * Appends one record to the buffer, which must have at least MAX_RECORD_SIZE bytes remaining.
+     */
+    public static void encode(JournalEvent event, ByteBuffer buffer, CRC32C crc) {
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+
+        long amountCents = event.amountCents;
+        long secondaryAmountCents = event.secondaryAmountCents;
+        List<String> details = event.details;
+        int detailCount = details == null ? 0 : Math.min(details.size(), MAX_DETAILS);
+
+        int flags = 0;
+        if (event.quantity != 0) flags |= HAS_QUANTITY;
+        if (event.secondaryQuantity != 0) flags |= HAS_SECONDARY_QUANTITY;
+        if (amountCents != 0) flags |= HAS_AMOUNT;
+        if (secondaryAmountCents != 0) flags |= HAS_SECONDARY_AMOUNT;
+        if (event.upc != null) flags |= HAS_UPC;
+        if (event.name != null) flags |= HAS_NAME;
+        if (event.paymentType != null) flags |= HAS_PAYMENT_TYPE;
+        if (detailCount > 0) flags |= HAS_DETAILS;
+
+        buffer.put((byte) event.type.ordinal());
+        buffer.put((byte) flags);
+        putVarLong(buffer, event.timestamp);
+        putVarLong(buffer, event.transactionId & 0xFFFFFFFFL);
+        putVarLong(buffer, event.lineNumber & 0xFFFFFFFFL);
+        if ((flags & HAS_QUANTITY) != 0) putVarLong(buffer, zigzag(event.quantity));
+        if ((flags & HAS_SECONDARY_QUANTITY) != 0) putVarLong(buffer, zigzag(event.secondaryQuantity));
+        if ((flags & HAS_AMOUNT) != 0) putVarLong(buffer, zigzag(amountCents));
+        if ((flags & HAS_SECONDARY_AMOUNT) != 0) putVarLong(buffer, zigzag(secondaryAmountCents));
+        if ((flags & HAS_UPC) != 0) putString(buffer, event.upc);
+        if ((flags & HAS_NAME) != 0) putString(buffer, event.name);
+        if ((flags & HAS_PAYMENT_TYPE) != 0) putString(buffer, event.paymentType);
+        if ((flags & HAS_DETAILS) != 0) {
+            putVarLong(buffer, detailCount);
+            for (int i = 0; i < detailCount; i++) {
+                putString(buffer, details.get(i));
+            }
+        }
+
+        int end = buffer.position();
+        int length = end - start - RECORD_HEADER_SIZE;
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE).limit(end);
+        crc.reset();
+        crc.update(payload);
+
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Outcome of decoding a record.
+     */
+    public enum DecodeStatus {
+        OK,
+        END,        // Zero length: the unwritten (preallocated) part of the file
+        TRUNCATED,  // Not enough bytes for the declared record
+        CORRUPT     // Bad length, bad CRC or unknown type
+    }
+
+    /**
+     * Reads the record at the buffer's position into the event. On OK the position
+     * moves past the record; otherwise it is left unchanged. TRUNCATED only means
+     * the buffer holds part of a record - the caller decides whether more data exists.
+     */
+    public static DecodeStatus decode(ByteBuffer buffer, JournalEvent event, CRC32C crc) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return DecodeStatus.TRUNCATED;
+        }
+
+        int length = buffer.getInt(start);
+        int expectedCrc = buffer.getInt(start + 4);
+        if (length == 0) {
+            return DecodeStatus.END;
+        }
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            return DecodeStatus.CORRUPT;
+        }
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            return DecodeStatus.TRUNCATED;
+        }
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + length);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            return DecodeStatus.CORRUPT;
+        }
+
+        try {
+            int type = payload.get();
+            if (type < 0 || type >= TYPES.length) {
+                return DecodeStatus.CORRUPT;
+            }
+            int flags = payload.get() & 0xFF;
+            event.clear();
+            event.type = TYPES[type];
+            event.timestamp = getVarLong(payload);
+            event.transactionId = (int) getVarLong(payload);
+            event.lineNumber = (int) getVarLong(payload);
+            if ((flags & HAS_QUANTITY) != 0) event.quantity = (int) unzigzag(getVarLong(payload));
+            if ((flags & HAS_SECONDARY_QUANTITY) != 0) event.secondaryQuantity = (int) unzigzag(getVarLong(payload));
+            if ((flags & HAS_AMOUNT) != 0) event.amountCents = unzigzag(getVarLong(payload));
+            if ((flags & HAS_SECONDARY_AMOUNT) != 0) event.secondaryAmountCents = unzigzag(getVarLong(payload));
+            if ((flags & HAS_UPC) != 0) event.upc = getString(payload);
+            if ((flags & HAS_NAME) != 0) event.name = getString(payload);
+            if ((flags & HAS_PAYMENT_TYPE) != 0) event.paymentType = getString(payload);
+            if ((flags & HAS_DETAILS) != 0) {
+                int detailCount = (int) getVarLong(payload);
+                if (detailCount > MAX_DETAILS) {
+                    return DecodeStatus.CORRUPT;
+                }
+                List<String> details = new ArrayList<>(detailCount);
+                for (int i = 0; i < detailCount; i++) {
+                    details.add(getString(payload));
+                }
+                event.details = details;
+            }
+        } catch (RuntimeException e) {
+            // CRC matched but the layout didn't - treat as corrupt rather than crash
+            return DecodeStatus.CORRUPT;
+        }
+
+        buffer.position(start + RECORD_HEADER_SIZE + length);
+        return DecodeStatus.OK;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        if (length > MAX_STRING_BYTES) {
+            // Cut on a character boundary: back off over UTF-8 continuation bytes
+            length = MAX_STRING_BYTES;
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        putVarLong(buffer, length);
+        buffer.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = (int) getVarLong(buffer);
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("string too long: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Unsigned LEB128: seven bits per byte, high bit set on all but the last byte
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
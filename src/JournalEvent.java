@@ -0,0 +1,108 @@
+import java.util.List;
+
+/**
+ * A structured journal entry. Instances live in the JournalRingBuffer and are reused,
+ * so the producer fills the fields in place instead of allocating per event.
+ * Formatting into text happens later on the journal writer thread.
+ */
+public class JournalEvent {
+
+    public enum Type {
+        TRANSACTION_START,
+        ITEM,
+        VOID_ITEM,
+        QUANTITY_CHANGE,
+        SUBTOTAL,
+        DISCOUNT,
+        TAX,
+        TOTAL,
+        PAYMENT,
+        VOID_TRANSACTION,
+        SUSPEND_TRANSACTION,
+        RESUME_TRANSACTION,
+        TRANSACTION_COMPLETE,
+        FLUSH,                  // Marker only: flush outputs once everything before it is written
+        CHECKPOINT              // No transaction in flight and the database has everything before this
+    }
+
+    Type type;
+    long timestamp;
+    int transactionId;
+    // Basket line for ITEM, VOID_ITEM and QUANTITY_CHANGE
+    int lineNumber;
+    String upc;
+    String name;
+    // Price, subtotal, tax, total, discount or amount tendered depending on type, in cents
+    long amountCents;
+    // Change due for PAYMENT, in cents
+    long secondaryAmountCents;
+    // Line quantity after the scan for ITEM, voided quantity, or old quantity for QUANTITY_CHANGE
+    int quantity;
+    // New quantity for QUANTITY_CHANGE
+    int secondaryQuantity;
+    String paymentType;
+    List<String> details;
+
+    void clear() {
+        type = null;
+        timestamp = 0;
+        transactionId = 0;
+        lineNumber = 0;
+        upc = null;
+        name = null;
+        amountCents = 0;
+        secondaryAmountCents = 0;
+        quantity = 0;
+        secondaryQuantity = 0;
+        paymentType = null;
+        details = null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getUpc() {
+        return upc;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public long getSecondaryAmountCents() {
+        return secondaryAmountCents;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getSecondaryQuantity() {
+        return secondaryQuantity;
+    }
+
+    public String getPaymentType() {
+        return paymentType;
+    }
+
+    public List<String> getDetails() {
+        return details;
+    }
+}
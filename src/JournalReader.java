@@ -0,0 +1,106 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Sequential reader for binary journal files (see JournalCodec).
+ * Reading stops at the first zero length (end of data) or at the first record
+ * that is truncated or fails its CRC; getStatus() tells which.
+ */
+public class JournalReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, JournalCodec.MAX_RECORD_SIZE * 2));
+    private final CRC32C crc = new CRC32C();
+
+    // File offset of buffer.position()
+    private long position;
+    private boolean eof;
+    private JournalCodec.DecodeStatus status = JournalCodec.DecodeStatus.OK;
+
+    public JournalReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.limit(0);
+        fill();
+        if (!JournalCodec.isValidFileHeader(buffer)) {
+            channel.close();
+            throw new IOException("Not a journal file: " + path);
+        }
+        position = JournalCodec.FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Reads the next record into the event.
+     *
+     * @return false at the end of the valid data
+     */
+    public boolean next(JournalEvent event) throws IOException {
+        if (status != JournalCodec.DecodeStatus.OK) {
+            return false;
+        }
+
+        while (true) {
+            int before = buffer.position();
+            JournalCodec.DecodeStatus result = JournalCodec.decode(buffer, event, crc);
+            if (result == JournalCodec.DecodeStatus.OK) {
+                position += buffer.position() - before;
+                return true;
+            }
+            if (result == JournalCodec.DecodeStatus.TRUNCATED && !eof) {
+                fill();
+                continue;
+            }
+            if (result == JournalCodec.DecodeStatus.TRUNCATED && isZeros(buffer)) {
+                // A file that ends without preallocated space, or in the middle of it
+                result = JournalCodec.DecodeStatus.END;
+            }
+            status = result;
+            return false;
+        }
+    }
+
+    /**
+     * File offset just past the last record read successfully.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * OK while reading; END, TRUNCATED or CORRUPT once next() has returned false.
+     */
+    public JournalCodec.DecodeStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean isZeros(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                break;
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Startup recovery from the binary journal.
+ *
+ * The journal is the write-ahead log for transactions: the controller journals every
+ * scan, quantity change and void, but only writes them to H2 when a transaction is
+ * suspended, voided or completed. After those database writes it journals a
+ * CHECKPOINT. On startup, scan() replays everything after the last checkpoint and
+ * reconcile() brings the database in line with it - missing lines are inserted,
+ * quantities and voids applied, and a completion, void or suspend that reached the
+ * journal but not the database is finished. Reconciling compares against what the
+ * database already has, so running it twice does no harm.
+ *
+ * A transaction that was still open when the register stopped is returned by
+ * reconcile() so the controller can put it back on screen.
+ */
+public class JournalRecovery {
+
+    /**
+     * What the journal says about one transaction after the last checkpoint.
+     */
+    public static class RecoveredTransaction {
+        private final int transactionId;
+        private boolean resumed;
+        // Line number -> latest state of that line; voided lines are kept with voided = true
+        private final Map<Integer, RecoveredLine> lines = new TreeMap<>();
+        // TRANSACTION_COMPLETE, VOID_TRANSACTION or SUSPEND_TRANSACTION; null while open
+        private JournalEvent.Type outcome;
+        private boolean hasTotals;
+        private long subtotalCents;
+        private long taxCents;
+        private long totalCents;
+        private String paymentType;
+        private long tenderedCents;
+        private long changeCents;
+
+        RecoveredTransaction(int transactionId) {
+            this.transactionId = transactionId;
+        }
+
+        public int getTransactionId() {
+            return transactionId;
+        }
+
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        public boolean isOpen() {
+            return outcome == null;
+        }
+
+        public JournalEvent.Type getOutcome() {
+            return outcome;
+        }
+
+        public int getLineCount() {
+            return lines.size();
+        }
+    }
+
+    private static class RecoveredLine {
+        String upc;
+        String name;
+        long priceCents;
+        int quantity;
+        boolean voided;
+    }
+
+    /**
+     * Result of scanning the journal.
+     */
+    public static class ScanResult {
+        private final List<RecoveredTransaction> transactions;
+        private final int eventsReplayed;
+        private final boolean checkpointFound;
+
+        ScanResult(List<RecoveredTransaction> transactions, int eventsReplayed, boolean checkpointFound) {
+            this.transactions = transactions;
+            this.eventsReplayed = eventsReplayed;
+            this.checkpointFound = checkpointFound;
+        }
+
+        public List<RecoveredTransaction> getTransactions() {
+            return transactions;
+        }
+
+        public int getEventsReplayed() {
+            return eventsReplayed;
+        }
+
+        public boolean isCheckpointFound() {
+            return checkpointFound;
+        }
+
+        public boolean isEmpty() {
+            return transactions.isEmpty();
+        }
+    }
+
+    // ==================== Scanning ====================
+
+    /**
+     * Replays the journal from the last checkpoint (or from the oldest segment if
+     * there is none) and returns the transactions it touched, in the order they were
+     * last started or resumed.
+     */
+    public static ScanResult scan(Path directory) throws IOException {
+        List<Path> segments = SegmentedJournal.listSegments(directory);
+
+        // Find the last checkpoint, newest segment first
+        int startSegment = 0;
+        long startRecord = 0;
+        boolean checkpointFound = false;
+        for (int i = segments.size() - 1; i >= 0 && !checkpointFound; i--) {
+            long lastCheckpoint = findLastCheckpoint(segments.get(i));
+            if (lastCheckpoint >= 0) {
+                startSegment = i;
+                startRecord = lastCheckpoint + 1;
+                checkpointFound = true;
+            }
+        }
+
+        Map<Integer, RecoveredTransaction> transactions = new LinkedHashMap<>();
+        int replayed = 0;
+        JournalEvent event = new JournalEvent();
+
+        for (int i = startSegment; i < segments.size(); i++) {
+            try (JournalReader reader = new JournalReader(segments.get(i))) {
+                long record = 0;
+                while (reader.next(event)) {
+                    if (i == startSegment && record++ < startRecord) {
+                        continue;
+                    }
+                    replay(event, transactions);
+                    replayed++;
+                }
+            } catch (IOException e) {
+                // Unreadable segments were set aside when the journal was opened
+                System.err.println("Skipping journal segment " + segments.get(i) + ": " + e.getMessage());
+            }
+        }
+
+        return new ScanResult(new ArrayList<>(transactions.values()), replayed, checkpointFound);
+    }
+
+    // Index of the last CHECKPOINT record in the segment, or -1
+    private static long findLastCheckpoint(Path segment) {
+        long last = -1;
+        try (JournalReader reader = new JournalReader(segment)) {
+            JournalEvent event = new JournalEvent();
+            long record = 0;
+            while (reader.next(event)) {
+                if (event.getType() == JournalEvent.Type.CHECKPOINT) {
+                    last = record;
+                }
+                record++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading journal segment " + segment + ": " + e.getMessage());
+        }
+        return last;
+    }
+
+    private static void replay(JournalEvent event, Map<Integer, RecoveredTransaction> transactions) {
+        switch (event.getType()) {
+            case TRANSACTION_START:
+                moveToEnd(transactionFor(event, transactions), transactions);
+                break;
+
+            case RESUME_TRANSACTION: {
+                RecoveredTransaction txn = transactionFor(event, transactions);
+                moveToEnd(txn, transactions);
+                txn.resumed = true;
+                txn.outcome = null;
+                break;
+            }
+
+            case ITEM: {
+                RecoveredLine line = lineFor(event, transactions);
+                line.upc = event.getUpc();
+                line.name = event.getName();
+                line.priceCents = event.getAmountCents();
+                line.quantity = event.getQuantity();
+                break;
+            }
+
+            case QUANTITY_CHANGE:
+                lineFor(event, transactions).quantity = event.getSecondaryQuantity();
+                break;
+
+            case VOID_ITEM:
+                lineFor(event, transactions).voided = true;
+                break;
+
+            case SUBTOTAL:
+            case TAX:
+            case TOTAL:
+            case PAYMENT:
+                applyAmount(event, transactionFor(event, transactions));
+                break;
+
+            case TRANSACTION_COMPLETE:
+            case VOID_TRANSACTION:
+            case SUSPEND_TRANSACTION:
+                transactionFor(event, transactions).outcome = event.getType();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private static RecoveredTransaction transactionFor(JournalEvent event,
+                                                       Map<Integer, RecoveredTransaction> transactions) {
+        return transactions.computeIfAbsent(event.getTransactionId(), RecoveredTransaction::new);
+    }
+
+    // Keeps the map in the order transactions were last opened, so the one the
+    // register was on is the last open one
+    private static void moveToEnd(RecoveredTransaction txn, Map<Integer, RecoveredTransaction> transactions) {
+        transactions.remove(txn.transactionId);
+        transactions.put(txn.transactionId, txn);
+    }
+
+    private static void applyAmount(JournalEvent event, RecoveredTransaction txn) {
+        switch (event.getType()) {
+            case SUBTOTAL:
+                txn.subtotalCents = event.getAmountCents();
+                break;
+            case TAX:
+                txn.taxCents = event.getAmountCents();
+                break;
+            case TOTAL:
+                txn.totalCents = event.getAmountCents();
+                txn.hasTotals = true;
+                break;
+            case PAYMENT:
+                txn.paymentType = event.getPaymentType();
+                txn.tenderedCents = event.getAmountCents();
+                txn.changeCents = event.getSecondaryAmountCents();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static RecoveredLine lineFor(JournalEvent event, Map<Integer, RecoveredTransaction> transactions) {
+        return transactionFor(event, transactions).lines.computeIfAbsent(event.getLineNumber(), k -> new RecoveredLine());
+    }
+
+    // ==================== Reconciling ====================
+
+    /**
+     * Brings the database in line with the scanned journal. Only the transaction opened
+     * last can still be on the register; any other that the journal leaves open was
+     * abandoned (e.g. the register stopped again before recovery finished) and is
+     * suspended, so the cashier can still resume or void it.
+     *
+     * @return the transaction that was still open, or null if there was none
+     */
+    public static RecoveredTransaction reconcile(ScanResult scan, DatabaseManager dbManager) throws SQLException {
+        RecoveredTransaction open = null;
+
+        for (RecoveredTransaction txn : scan.getTransactions()) {
+            Map<String, Object> status = dbManager.getTransactionById(txn.transactionId);
+            if (status == null) {
+                System.err.println("Journal recovery: transaction #" + txn.transactionId + " is not in the database, skipping");
+                continue;
+            }
+
+            dbManager.applyTransactionChanges(lineChanges(txn, dbManager.getLineQuantities(txn.transactionId)));
+
+            if (txn.outcome == null) {
+                if (isClosed(status)) {
+                    // The database has an outcome the journal never got to; it wins
+                    System.out.println("Journal recovery: transaction #" + txn.transactionId +
+                            " is already closed in the database");
+                    continue;
+                }
+                if (open != null) {
+                    suspendAbandoned(open, dbManager);
+                }
+                open = txn;
+                continue;
+            }
+
+            switch (txn.outcome) {
+                case TRANSACTION_COMPLETE:
+                    if (!(Boolean) status.get("is_completed") && txn.paymentType != null) {
+                        dbManager.updateTransactionPayment(txn.transactionId, txn.paymentType, txn.tenderedCents, txn.changeCents);
+                        System.out.println("Journal recovery: completed transaction #" + txn.transactionId);
+                    }
+                    break;
+                case VOID_TRANSACTION:
+                    if (!(Boolean) status.get("is_voided")) {
+                        dbManager.voidTransaction(txn.transactionId, "Voided by cashier");
+                        System.out.println("Journal recovery: voided transaction #" + txn.transactionId);
+                    }
+                    break;
+                case SUSPEND_TRANSACTION:
+                    if (!(Boolean) status.get("is_suspended")) {
+                        dbManager.suspendTransaction(txn.transactionId);
+                        System.out.println("Journal recovery: suspended transaction #" + txn.transactionId);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return open;
+    }
+
+    private static boolean isClosed(Map<String, Object> status) {
+        return (Boolean) status.get("is_completed") || (Boolean) status.get("is_suspended")
+                || (Boolean) status.get("is_voided");
+    }
+
+    private static void suspendAbandoned(RecoveredTransaction txn, DatabaseManager dbManager) throws SQLException {
+        dbManager.suspendTransaction(txn.transactionId);
+        txn.outcome = JournalEvent.Type.SUSPEND_TRANSACTION;
+        System.out.println("Journal recovery: suspended transaction #" + txn.transactionId +
+                " that was left open");
+    }
+
+    /**
+     * Changes that make the database lines match the journal. Lines the journal
+     * doesn't mention (e.g. lines from before a resume) are left alone.
+     */
+    private static List<TransactionChange> lineChanges(RecoveredTransaction txn, Map<Integer, Integer> dbQuantities) {
+        List<TransactionChange> changes = new ArrayList<>();
+
+        for (Map.Entry<Integer, RecoveredLine> entry : txn.lines.entrySet()) {
+            int lineNumber = entry.getKey();
+            RecoveredLine line = entry.getValue();
+            Integer dbQuantity = dbQuantities.get(lineNumber);
+
+            if (dbQuantity == null) {
+                if (line.upc == null) {
+                    // Only a quantity change or void survived for a line the database never saw
+                    continue;
+                }
+                TransactionItem item = new TransactionItem(lineNumber,
+                        new Product(line.upc, line.name, line.priceCents), line.quantity);
+                changes.add(TransactionChange.addLine(txn.transactionId, item));
+                if (line.voided) {
+                    changes.add(TransactionChange.voidLine(txn.transactionId, item));
+                }
+            } else if (dbQuantity > 0) {
+                TransactionItem item = new TransactionItem(lineNumber,
+                        new Product(line.upc, line.name, line.priceCents), line.quantity);
+                if (line.voided) {
+                    changes.add(TransactionChange.voidLine(txn.transactionId, item));
+                } else if (dbQuantity != line.quantity && line.upc != null) {
+                    changes.add(TransactionChange.changeQuantity(txn.transactionId, item));
+                }
+            }
+        }
+
+        if (txn.hasTotals) {
+            changes.add(TransactionChange.totals(txn.transactionId, txn.subtotalCents, txn.taxCents, txn.totalCents));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Renders journal events in the text layout of the journal tape, for the console
+ * and the remote server. The binary journal only stores the fields; this is the
+ * one place the padded columns and separators are produced.
+ *
+ * Not thread-safe (the formatters aren't); use one renderer per thread.
+ * Run with a journal directory or segment file to print it as text.
+ */
+public class JournalRenderer {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Appends the text lines for one event.
+     */
+    public void render(JournalEvent event, List<String> lines) {
+        switch (event.getType()) {
+            case TRANSACTION_START:
+                lines.add("=".repeat(60));
+                lines.add("TRANSACTION #" + event.getTransactionId() + " - " + formatTime(event));
+                lines.add("=".repeat(60));
+                break;
+
+            case ITEM:
+                lines.add(String.format("%-20s %-30s $%-8s",
+                        event.getUpc(), truncate(event.getName()), Money.format(event.getAmountCents())));
+                break;
+
+            case VOID_ITEM:
+                lines.add("*** VOID ITEM: " + event.getUpc() + " " + event.getName() +
+                        " QTY: " + event.getQuantity() + " ***");
+                break;
+
+            case QUANTITY_CHANGE:
+                lines.add("*** QTY CHANGE: " + event.getUpc() + " " + event.getName() +
+                        " FROM " + event.getQuantity() + " TO " + event.getSecondaryQuantity() + " ***");
+                break;
+
+            case SUBTOTAL:
+                lines.add("");
+                lines.add(String.format("%50s $%s", "SUBTOTAL:", Money.format(event.getAmountCents())));
+                break;
+
+            case DISCOUNT:
+                lines.add(String.format("%50s -$%s", "DISCOUNT:", Money.format(event.getAmountCents())));
+                if (event.getDetails() != null) {
+                    for (String discount : event.getDetails()) {
+                        lines.add(String.format("%50s   %s", "", discount));
+                    }
+                }
+                break;
+
+            case TAX:
+                lines.add(String.format("%50s $%s", "TAX (7%):", Money.format(event.getAmountCents())));
+                break;
+
+            case TOTAL:
+                lines.add(String.format("%50s $%s", "TOTAL:", Money.format(event.getAmountCents())));
+                lines.add("-".repeat(60));
+                break;
+
+            case PAYMENT:
+                lines.add("");
+                lines.add("PAYMENT TYPE: " + event.getPaymentType());
+                lines.add(String.format("%50s $%s", "AMOUNT TENDERED:", Money.format(event.getAmountCents())));
+                if (event.getSecondaryAmountCents() > 0) {
+                    lines.add(String.format("%50s $%s", "CHANGE:", Money.format(event.getSecondaryAmountCents())));
+                }
+                break;
+
+            case VOID_TRANSACTION:
+                lines.add("");
+                lines.add("*** TRANSACTION #" + event.getTransactionId() + " VOIDED ***");
+                lines.add("*** VOIDED AT: " + formatTime(event) + " ***");
+                lines.add("=".repeat(60));
+                lines.add("");
+                break;
+
+            case SUSPEND_TRANSACTION:
+                lines.add("");
+                lines.add("*** TRANSACTION #" + event.getTransactionId() + " SUSPENDED ***");
+                lines.add("*** SUSPENDED AT: " + formatTime(event) + " ***");
+                lines.add("=".repeat(60));
+                lines.add("");
+                break;
+
+            case RESUME_TRANSACTION:
+                lines.add("");
+                lines.add("*** TRANSACTION #" + event.getTransactionId() + " RESUMED ***");
+                lines.add("*** RESUMED AT: " + formatTime(event) + " ***");
+                lines.add("=".repeat(60));
+                break;
+
+            case TRANSACTION_COMPLETE:
+                lines.add("");
+                lines.add("TRANSACTION #" + event.getTransactionId() + " COMPLETED");
+                lines.add("COMPLETED AT: " + formatTime(event));
+                lines.add("=".repeat(60));
+                lines.add("");
+                break;
+
+            case FLUSH:
+            case CHECKPOINT:
+                break;
+        }
+    }
+
+    /**
+     * Renders every segment in a journal directory, oldest first.
+     */
+    public List<String> renderDirectory(Path directory) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path segment : SegmentedJournal.listSegments(directory)) {
+            lines.addAll(renderFile(segment));
+        }
+        return lines;
+    }
+
+    /**
+     * Renders every record of a binary journal file.
+     */
+    public List<String> renderFile(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(path)) {
+            JournalEvent event = new JournalEvent();
+            while (reader.next(event)) {
+                render(event, lines);
+            }
+            if (reader.getStatus() != JournalCodec.DecodeStatus.END) {
+                System.err.println("Journal " + path + ": stopped at " + reader.getStatus() +
+                        " record, offset " + reader.getPosition());
+            }
+        }
+        return lines;
+    }
+
+    private String formatTime(JournalEvent event) {
+        return dateFormat.format(new Date(event.getTimestamp()));
+    }
+
+    private String truncate(String text) {
+        if (text.length() <= 30) {
+            return text;
+        }
+        return text.substring(0, 30 - 3) + "...";
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java JournalRenderer <journal directory or segment file>");
+            System.exit(1);
+        }
+
+        Path path = Paths.get(args[0]);
+        JournalRenderer renderer = new JournalRenderer();
+        try {
+            List<String> lines = Files.isDirectory(path) ? renderer.renderDirectory(path) : renderer.renderFile(path);
+            for (String line : lines) {
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
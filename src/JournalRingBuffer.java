@@ -0,0 +1,167 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer, single-consumer ring buffer of JournalEvents.
+ * The producer claims a slot, fills it and publishes it; the consumer drains
+ * published slots in order. No locks are taken on either side.
+ *
+ * When the buffer is full the producer waits for the consumer. With a bounded
+ * wait it then drops the event and counts it, so a stalled disk or network can
+ * never block the producer for long; with WAIT_FOREVER nothing is ever dropped,
+ * which is what a write-ahead log needs.
+ */
+public class JournalRingBuffer {
+
+    // Producer waits as long as it takes for space rather than dropping
+    public static final long WAIT_FOREVER = -1;
+
+    // How long the producer parks between checks while the buffer is full
+    private static final long BACKPRESSURE_PARK_NANOS = 50_000;
+
+    private final JournalEvent[] slots;
+    private final int mask;
+    private final long maxWaitNanos;
+
+    // Next sequence the producer will write; written only by the producer
+    private final AtomicLong published = new AtomicLong();
+    // Next sequence the consumer will read; written only by the consumer
+    private final AtomicLong consumed = new AtomicLong();
+    // Producer's last view of consumed, to avoid reading the volatile on every claim
+    private long cachedConsumed;
+
+    private volatile Thread consumerThread;
+    private volatile boolean consumerWaiting;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+
+    /**
+     * @param capacity     number of slots, rounded up to a power of two
+     * @param maxWaitMillis how long a producer may wait for space before dropping,
+     *                      or WAIT_FOREVER
+     */
+    public JournalRingBuffer(int capacity, long maxWaitMillis) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new JournalEvent[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new JournalEvent();
+        }
+        this.mask = size - 1;
+        this.maxWaitNanos = maxWaitMillis == WAIT_FOREVER ? WAIT_FOREVER : maxWaitMillis * 1_000_000L;
+    }
+
+    // ==================== Producer Side ====================
+
+    /**
+     * Claims the next slot for writing. Returns null (and counts a drop) if the
+     * buffer stays full for longer than the configured wait; never with WAIT_FOREVER.
+     */
+    public JournalEvent claim() {
+        long sequence = published.get();
+        if (sequence - cachedConsumed >= slots.length) {
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed >= slots.length && !awaitSpace(sequence)) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        }
+
+        JournalEvent event = slots[(int) sequence & mask];
+        event.clear();
+        return event;
+    }
+
+    /**
+     * Publishes the slot returned by the last claim().
+     */
+    public void publish() {
+        // Volatile write: the consumer sees the filled slot, and the read of consumerWaiting below can't move above it
+        published.set(published.get() + 1);
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    private boolean awaitSpace(long sequence) {
+        backpressureWaits.incrementAndGet();
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (maxWaitNanos == WAIT_FOREVER || System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed < slots.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sequence the next published event will get. Together with
+     * getConsumedSequence() this lets the producer wait for the consumer to catch up.
+     */
+    public long getPublishedSequence() {
+        return published.get();
+    }
+
+    // ==================== Consumer Side ====================
+
+    /**
+     * Handler invoked by drain() for each published event.
+     */
+    public interface EventHandler {
+        void onEvent(JournalEvent event, boolean endOfBatch);
+    }
+
+    /**
+     * Hands every published event to the handler, then frees the slots.
+     *
+     * @return the number of events drained
+     */
+    public int drain(EventHandler handler) {
+        long start = consumed.get();
+        long end = published.get();
+        for (long sequence = start; sequence < end; sequence++) {
+            handler.onEvent(slots[(int) sequence & mask], sequence == end - 1);
+        }
+        if (end > start) {
+            consumed.set(end);
+        }
+        return (int) (end - start);
+    }
+
+    /**
+     * Parks the consumer until something is published or the timeout passes.
+     * Producers only pay for an unpark while the consumer is parked here.
+     *
+     * @return true if the consumer actually parked
+     */
+    public boolean awaitEvents(long timeoutNanos) {
+        consumerThread = Thread.currentThread();
+        consumerWaiting = true;
+        boolean parked = published.get() == consumed.get();
+        if (parked) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        consumerWaiting = false;
+        return parked;
+    }
+
+    public long getConsumedSequence() {
+        return consumed.get();
+    }
+
+    // ==================== Metrics ====================
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getBackpressureWaits() {
+        return backpressureWaits.get();
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Store-and-forward spool for the Virtual Journal client.
+ *
+ * Every line bound for the server is appended to remote.spool exactly as it goes
+ * on the wire ("seq|line\n"), and sent from there with transferTo. The spool keeps
+ * everything the server hasn't acknowledged yet; remote.ack records how far the
+ * acknowledgements have reached ("epoch ackedSeq ackedOffset"), so unacknowledged
+ * lines survive a restart. Once everything has been acknowledged the file is
+ * truncated back to zero.
+ *
+ * The epoch is a random id chosen when the spool is created. It tells the server
+ * that sequence numbers started over, e.g. after the spool directory was removed.
+ *
+ * Not thread-safe; owned by the client's I/O thread.
+ */
+public class JournalSpool implements Closeable {
+
+    private static final String SPOOL_FILE = "remote.spool";
+    private static final String ACK_FILE = "remote.ack";
+    private static final long ACK_PERSIST_INTERVAL_MS = 1000;
+    // Startup rebuilds one index entry per this many bytes of unacknowledged lines
+    private static final int INDEX_GRANULARITY = 16 * 1024;
+
+    private final Path spoolPath;
+    private final Path ackPath;
+    private final long maxBytes;
+    private final FileChannel channel;
+    private final ByteBuffer scanBuffer = ByteBuffer.allocate(8192);
+
+    private long epoch;
+    private long end;
+    private long ackedOffset;
+    private long ackedSeq;
+    private long lastSeq;
+    // {last seq, end offset} of each appended block not yet acknowledged, oldest first
+    private final ArrayDeque<long[]> blocks = new ArrayDeque<>();
+
+    private boolean ackDirty;
+    private long ackPersistedAt;
+
+    /**
+     * Opens the spool in the directory, keeping whatever was left unacknowledged.
+     *
+     * @param maxBytes largest size the spool file may grow to
+     */
+    public JournalSpool(Path directory, long maxBytes) throws IOException {
+        this.spoolPath = directory.resolve(SPOOL_FILE);
+        this.ackPath = directory.resolve(ACK_FILE);
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(directory);
+        channel = FileChannel.open(spoolPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadAck();
+        rebuildIndex();
+    }
+
+    // ==================== Appending ====================
+
+    /**
+     * Appends complete lines (the buffer's remaining bytes) whose last sequence number is lastSeqInData.
+     *
+     * @return false, writing nothing, if the spool would grow past its maximum size
+     */
+    public boolean append(ByteBuffer data, long lastSeqInData) throws IOException {
+        int length = data.remaining();
+        if (end + length > maxBytes) {
+            return false;
+        }
+        while (data.hasRemaining()) {
+            channel.write(data, end + (length - data.remaining()));
+        }
+        end += length;
+        lastSeq = lastSeqInData;
+        blocks.addLast(new long[] {lastSeqInData, end});
+        return true;
+    }
+
+    /**
+     * Sends bytes [position, position + count) of the spool to the target.
+     *
+     * @return the number of bytes written, 0 if the target can't take more right now
+     */
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(position, count, target);
+    }
+
+    /**
+     * Returns the offset just after the line containing position - 1, i.e. the first
+     * line boundary at or after position.
+     */
+    public long lineBoundaryAtOrAfter(long position) throws IOException {
+        if (position <= 0 || position >= end) {
+            return Math.min(Math.max(position, 0), end);
+        }
+        long offset = position - 1;
+        while (offset < end) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scanBuffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return end;
+    }
+
+    // ==================== Acknowledgements ====================
+
+    /**
+     * Records that the server has stored every line up to and including seq.
+     */
+    public void acknowledge(long seq) {
+        if (seq <= ackedSeq) {
+            return;
+        }
+        ackedSeq = Math.min(seq, lastSeq);
+        while (!blocks.isEmpty() && blocks.peekFirst()[0] <= ackedSeq) {
+            ackedOffset = blocks.pollFirst()[1];
+        }
+        ackDirty = true;
+    }
+
+    /**
+     * Truncates the spool once every line in it has been acknowledged.
+     *
+     * @return true if the spool was emptied (offsets start again at zero)
+     */
+    public boolean compactIfAcknowledged() throws IOException {
+        if (end == 0 || ackedOffset < end) {
+            return false;
+        }
+        // Record the new offset first; a crash in between only means rescanning acked lines
+        ackedOffset = 0;
+        end = 0;
+        blocks.clear();
+        persistAck();
+        channel.truncate(0);
+        return true;
+    }
+
+    /**
+     * Writes the acknowledgement file if it changed and the persist interval has passed.
+     */
+    public void persistAckIfDue() {
+        if (ackDirty && System.currentTimeMillis() - ackPersistedAt >= ACK_PERSIST_INTERVAL_MS) {
+            persistAck();
+        }
+    }
+
+    private void persistAck() {
+        try {
+            Path temp = ackPath.resolveSibling(ACK_FILE + ".tmp");
+            Files.writeString(temp, epoch + " " + ackedSeq + " " + ackedOffset + "\n", StandardCharsets.UTF_8);
+            Files.move(temp, ackPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ackDirty = false;
+            ackPersistedAt = System.currentTimeMillis();
+        } catch (IOException e) {
+            System.err.println("Error saving spool acknowledgements: " + e.getMessage());
+        }
+    }
+
+    // ==================== Startup ====================
+
+    private void loadAck() throws IOException {
+        if (Files.exists(ackPath)) {
+            try {
+                String[] fields = Files.readString(ackPath, StandardCharsets.UTF_8).trim().split(" ");
+                epoch = Long.parseLong(fields[0]);
+                ackedSeq = Long.parseLong(fields[1]);
+                ackedOffset = Long.parseLong(fields[2]);
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Spool acknowledgement file is unreadable, resending the whole spool");
+            }
+        }
+        // New spool (or lost acknowledgements): a new epoch tells the server to start over
+        epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        ackedSeq = 0;
+        ackedOffset = 0;
+        persistAck();
+    }
+
+    /**
+     * Scans the unacknowledged part of the spool to rebuild the block index and find
+     * the last sequence number. A partial line left by a crash is cut off.
+     */
+    private void rebuildIndex() throws IOException {
+        long size = channel.size();
+        if (ackedOffset > size) {
+            ackedOffset = 0;
+        }
+
+        long offset = ackedOffset;
+        long lineStart = offset;
+        long lineSeq = 0;
+        boolean inSeq = true;
+        long blockStart = offset;
+        long maxSeq = ackedSeq;
+
+        while (offset < size) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = scanBuffer.get(i);
+                if (inSeq) {
+                    if (b >= '0' && b <= '9') {
+                        lineSeq = lineSeq * 10 + (b - '0');
+                    } else {
+                        inSeq = false;
+                    }
+                }
+                if (b == '\n') {
+                    long lineEnd = offset + i + 1;
+                    if (lineSeq <= ackedSeq) {
+                        // Acknowledged before the ack file was last written
+                        ackedOffset = lineEnd;
+                        blockStart = lineEnd;
+                    } else {
+                        maxSeq = Math.max(maxSeq, lineSeq);
+                        if (lineEnd - blockStart >= INDEX_GRANULARITY) {
+                            blocks.addLast(new long[] {lineSeq, lineEnd});
+                            blockStart = lineEnd;
+                        }
+                    }
+                    lineStart = lineEnd;
+                    lineSeq = 0;
+                    inSeq = true;
+                }
+            }
+            offset += read;
+        }
+
+        if (lineStart < size) {
+            System.err.println("Spool: discarding partial line at offset " + lineStart);
+            channel.truncate(lineStart);
+        }
+        end = lineStart;
+        lastSeq = maxSeq;
+        if (blockStart < end) {
+            blocks.addLast(new long[] {lastSeq, end});
+        }
+        if (end > ackedOffset) {
+            System.out.println("Spool: " + (end - ackedOffset) + " bytes waiting for the Virtual Journal server");
+        }
+    }
+
+    // ==================== Status ====================
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getAckedOffset() {
+        return ackedOffset;
+    }
+
+    public long getAckedSeq() {
+        return ackedSeq;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public long getUnackedBytes() {
+        return end - ackedOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ackDirty) {
+            persistAck();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,537 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless load driver. Runs several registers in one process, each with its own
+ * RegisterController, journal and spool, against a scratch database, rings up baskets
+ * and reports transactions per second and per-operation latency percentiles.
+ *
+ * Baskets are either synthetic (random products from the pricebook) or replayed from
+ * a file with one basket per line: UPCs separated by spaces or commas, each optionally
+ * followed by "*qty"; lines starting with '#' are ignored.
+ *
+ * Usage: java -cp out:lib/h2-2.4.240.jar LoadDriver [options]
+ *   --registers=N         registers run concurrently (default 4)
+ *   --transactions=N      measured transactions per register (default 200)
+ *   --warmup=N            unmeasured transactions per register first (default 20)
+ *   --tps=N               target transactions per second over all registers; 0 = as fast as possible
+ *   --scan-interval-ms=N  time between scans in a basket (default 0)
+ *   --basket=MIN-MAX      lines per synthetic basket (default 5-30)
+ *   --repeat=P            chance a synthetic scan repeats an item already in the basket (default 0.1)
+ *   --pricebook=PATH      pricebook TSV (default src/pricebook__1_.tsv)
+ *   --replay=PATH         replay recorded baskets instead of generating them
+ *   --dir=PATH            where the database, journals and spools go (default loadtest)
+ *   --seed=N              random seed (default 1)
+ *   --vj                  also send journal lines to the Virtual Journal server
+ *
+ * Latency is measured from when an operation was due, not from when the driver got
+ * round to issuing it, so a register that falls behind its schedule shows up in the
+ * percentiles instead of quietly lowering the offered load.
+ */
+public class LoadDriver {
+
+    private static final long COMPLETION_TIMEOUT_MS = 30_000;
+    // Baskets in a row on one register that may time out before the whole run is abandoned
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final Options options;
+    private final Map<String, Product> pricebook;
+    private final List<Product> products;
+    private final List<List<Scan>> recorded;
+
+    // Why the run was abandoned, or null while it is going
+    private volatile String abortReason;
+
+    /**
+     * Command-line settings.
+     */
+    static final class Options {
+        int registers = 4;
+        int transactions = 200;
+        int warmup = 20;
+        double tps = 0;
+        long scanIntervalMs = 0;
+        int basketMin = 5;
+        int basketMax = 30;
+        double repeat = 0.1;
+        String pricebook = "src/pricebook__1_.tsv";
+        String replay;
+        String dir = "loadtest";
+        long seed = 1;
+        boolean virtualJournal;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                String name = eq == -1 ? arg : arg.substring(0, eq);
+                String value = eq == -1 ? "" : arg.substring(eq + 1);
+                switch (name) {
+                    case "--registers" -> options.registers = Integer.parseInt(value);
+                    case "--transactions" -> options.transactions = Integer.parseInt(value);
+                    case "--warmup" -> options.warmup = Integer.parseInt(value);
+                    case "--tps" -> options.tps = Double.parseDouble(value);
+                    case "--scan-interval-ms" -> options.scanIntervalMs = Long.parseLong(value);
+                    case "--basket" -> {
+                        String[] range = value.split("-");
+                        options.basketMin = Integer.parseInt(range[0]);
+                        options.basketMax = Integer.parseInt(range[range.length - 1]);
+                    }
+                    case "--repeat" -> options.repeat = Double.parseDouble(value);
+                    case "--pricebook" -> options.pricebook = value;
+                    case "--replay" -> options.replay = value;
+                    case "--dir" -> options.dir = value;
+                    case "--seed" -> options.seed = Long.parseLong(value);
+                    case "--vj" -> options.virtualJournal = true;
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (options.registers < 1 || options.transactions < 1 || options.warmup < 0
+                    || options.basketMin < 1 || options.basketMax < options.basketMin) {
+                throw new IllegalArgumentException("Invalid option values");
+            }
+            return options;
+        }
+    }
+
+    static final class Scan {
+        final Product product;
+        final int qty;
+
+        Scan(Product product, int qty) {
+            this.product = product;
+            this.qty = qty;
+        }
+    }
+
+    /**
+     * @param recorded baskets to replay, or null to generate them
+     */
+    public LoadDriver(Options options, Map<String, Product> pricebook, List<List<Scan>> recorded) {
+        this.options = options;
+        this.pricebook = pricebook;
+        this.products = new ArrayList<>(pricebook.values());
+        this.recorded = recorded;
+    }
+
+    // ==================== Latency Recording ====================
+
+    /**
+     * Collects latencies for one operation. Each recorder is written by one thread;
+     * they are merged once the run is over.
+     */
+    static final class LatencyRecorder {
+        private long[] nanos = new long[1024];
+        private int count;
+
+        void record(long latencyNanos) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNanos;
+        }
+
+        static long[] merge(List<LatencyRecorder> recorders) {
+            int total = 0;
+            for (LatencyRecorder recorder : recorders) {
+                total += recorder.count;
+            }
+            long[] merged = new long[total];
+            int offset = 0;
+            for (LatencyRecorder recorder : recorders) {
+                System.arraycopy(recorder.nanos, 0, merged, offset, recorder.count);
+                offset += recorder.count;
+            }
+            Arrays.sort(merged);
+            return merged;
+        }
+
+        static double percentileMs(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / 1_000_000.0;
+        }
+    }
+
+    // ==================== Simulated Register ====================
+
+    /**
+     * One register: a controller with its own journal, and a driver thread that rings
+     * up baskets on it. The listener runs on the controller's thread and records a
+     * scan as done once a view shows its quantity in the basket.
+     */
+    private final class SimulatedRegister implements RegisterListener {
+        final int index;
+        final RegisterController controller;
+        final VirtualJournal journal;
+        final Random random;
+
+        final LatencyRecorder scanLatency = new LatencyRecorder();
+        final LatencyRecorder tenderLatency = new LatencyRecorder();
+        final LatencyRecorder transactionLatency = new LatencyRecorder();
+        int completed;
+        int failed;
+        int consecutiveFailures;
+        final AtomicInteger errors = new AtomicInteger();
+
+        // Scans waiting to show up in a view: {basket quantity once applied, due time}
+        private final ArrayDeque<long[]> pendingScans = new ArrayDeque<>();
+        private volatile boolean recording;
+
+        // Completion of the current basket
+        private final Object completionLock = new Object();
+        private boolean basketCompleted;
+
+        SimulatedRegister(int index, DatabaseManager dbManager, ProductCatalog catalog) {
+            this.index = index;
+            this.random = new Random(options.seed + index);
+
+            String registerId = String.format("LOAD-%03d", index + 1);
+            Path registerDir = Paths.get(options.dir, registerId);
+            SocketClientConfig config = new SocketClientConfig();
+            config.setRegisterId(registerId);
+            config.setJournalDir(registerDir.resolve("journal").toString());
+            config.setSpoolDir(registerDir.resolve("spool").toString());
+            config.setJournalConsole(false);
+            config.setEnabled(options.virtualJournal);
+
+            this.journal = new VirtualJournal(config, true);
+            this.controller = new RegisterController(dbManager, journal, catalog);
+            controller.setListener(this);
+        }
+
+        @Override
+        public void onView(RegisterView view) {
+            long now = System.nanoTime();
+            int basketQuantity = 0;
+            for (TransactionItem item : view.getLines()) {
+                basketQuantity += item.getQuantity();
+            }
+            synchronized (pendingScans) {
+                while (!pendingScans.isEmpty() && pendingScans.peekFirst()[0] <= basketQuantity) {
+                    long[] scan = pendingScans.pollFirst();
+                    if (recording) {
+                        scanLatency.record(now - scan[1]);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onError(String message) {
+            if (errors.getAndIncrement() < 10) {
+                System.err.println("Register " + (index + 1) + ": " + message);
+            }
+        }
+
+        /**
+         * Rings up warmup and measured transactions. The barrier lines the registers up
+         * so the measured phase starts at the same moment on all of them.
+         */
+        void run(CyclicBarrier measuredStart, long[] phaseStartNanos) throws InterruptedException, BrokenBarrierException {
+            for (int i = 0; i < options.warmup && abortReason == null; i++) {
+                ringUpBasket(System.nanoTime(), i);
+            }
+
+            measuredStart.await();
+            recording = true;
+            long start = phaseStartNanos[0];
+            long intervalNanos = options.tps > 0 ? (long) (options.registers * 1e9 / options.tps) : 0;
+            // Spread the registers' first baskets over one interval
+            long offset = intervalNanos * index / options.registers;
+
+            for (int i = 0; i < options.transactions && abortReason == null; i++) {
+                long due = intervalNanos > 0 ? start + offset + i * intervalNanos : System.nanoTime();
+                parkUntil(due);
+                ringUpBasket(due, options.warmup + i);
+            }
+        }
+
+        private void ringUpBasket(long dueNanos, int sequence) throws InterruptedException {
+            List<Scan> basket = nextBasket(sequence);
+            long subtotalCents = 0;
+            int basketQuantity = 0;
+
+            synchronized (completionLock) {
+                basketCompleted = false;
+            }
+
+            long scanIntervalNanos = TimeUnit.MILLISECONDS.toNanos(options.scanIntervalMs);
+            for (int i = 0; i < basket.size(); i++) {
+                Scan scan = basket.get(i);
+                long scanDue;
+                if (scanIntervalNanos > 0) {
+                    scanDue = dueNanos + i * scanIntervalNanos;
+                    parkUntil(scanDue);
+                } else {
+                    scanDue = System.nanoTime();
+                }
+
+                basketQuantity += scan.qty;
+                subtotalCents += Money.times(scan.product.getPriceCents(), scan.qty);
+                synchronized (pendingScans) {
+                    pendingScans.addLast(new long[] {basketQuantity, scanDue});
+                }
+                controller.addItem(scan.product.getUpc(), scan.qty);
+            }
+
+            // Discounts only lower the total, so twice the subtotal always covers tax
+            long tenderedCents = subtotalCents * 2 + 100;
+            long tenderStart = System.nanoTime();
+            controller.completeTransaction("CASH", tenderedCents, sale -> {
+                if (recording) {
+                    tenderLatency.record(System.nanoTime() - tenderStart);
+                }
+                synchronized (completionLock) {
+                    basketCompleted = true;
+                    completionLock.notifyAll();
+                }
+            });
+
+            if (awaitCompletion()) {
+                consecutiveFailures = 0;
+                if (recording) {
+                    transactionLatency.record(System.nanoTime() - dueNanos);
+                    completed++;
+                }
+            } else {
+                if (recording) {
+                    failed++;
+                }
+                synchronized (pendingScans) {
+                    pendingScans.clear();
+                }
+                controller.voidTransaction();
+                if (++consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                    // Every register sees this and stops; they still all reach the measured-phase barrier
+                    abortReason = "register " + (index + 1) + ": " + consecutiveFailures +
+                            " baskets in a row did not complete within " + COMPLETION_TIMEOUT_MS + " ms";
+                }
+            }
+        }
+
+        private boolean awaitCompletion() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + COMPLETION_TIMEOUT_MS;
+            synchronized (completionLock) {
+                while (!basketCompleted) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    completionLock.wait(remaining);
+                }
+                return true;
+            }
+        }
+
+        private List<Scan> nextBasket(int sequence) {
+            if (recorded != null) {
+                return recorded.get((index + sequence * options.registers) % recorded.size());
+            }
+
+            int lines = options.basketMin + random.nextInt(options.basketMax - options.basketMin + 1);
+            List<Scan> basket = new ArrayList<>(lines);
+            for (int i = 0; i < lines; i++) {
+                if (!basket.isEmpty() && random.nextDouble() < options.repeat) {
+                    basket.add(basket.get(random.nextInt(basket.size())));
+                } else {
+                    basket.add(new Scan(products.get(random.nextInt(products.size())), 1));
+                }
+            }
+            return basket;
+        }
+
+        void close() {
+            controller.close();
+            journal.close();
+        }
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // ==================== Run ====================
+
+    /**
+     * Runs every register to completion and prints the report.
+     */
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get(options.dir));
+        DatabaseManager dbManager = new DatabaseManager(Paths.get(options.dir, "registerdb").toAbsolutePath().toString());
+
+        List<SimulatedRegister> registers = new ArrayList<>();
+        try {
+            dbManager.loadPriceBook(pricebook);
+            ProductCatalog catalog = new ProductCatalog();
+            catalog.load(products);
+
+            for (int i = 0; i < options.registers; i++) {
+                // Every register shares the catalog read-only; put() is only called for codes
+                // missing from it, which a run built from the same pricebook never scans
+                registers.add(new SimulatedRegister(i, dbManager, catalog));
+            }
+
+            long[] phaseStartNanos = new long[1];
+            CyclicBarrier measuredStart = new CyclicBarrier(options.registers,
+                    () -> phaseStartNanos[0] = System.nanoTime());
+
+            List<Thread> threads = new ArrayList<>();
+            for (SimulatedRegister register : registers) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        register.run(measuredStart, phaseStartNanos);
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "load-register-" + (register.index + 1));
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (abortReason != null) {
+                throw new IOException("aborted, " + abortReason);
+            }
+            long elapsedNanos = System.nanoTime() - phaseStartNanos[0];
+
+            report(registers, elapsedNanos);
+        } catch (SQLException e) {
+            System.err.println("Error loading pricebook: " + e.getMessage());
+        } finally {
+            for (SimulatedRegister register : registers) {
+                register.close();
+            }
+            dbManager.close();
+        }
+    }
+
+    private void report(List<SimulatedRegister> registers, long elapsedNanos) {
+        int completed = 0;
+        int failed = 0;
+        int errors = 0;
+        List<LatencyRecorder> scans = new ArrayList<>();
+        List<LatencyRecorder> tenders = new ArrayList<>();
+        List<LatencyRecorder> transactions = new ArrayList<>();
+        for (SimulatedRegister register : registers) {
+            completed += register.completed;
+            failed += register.failed;
+            errors += register.errors.get();
+            scans.add(register.scanLatency);
+            tenders.add(register.tenderLatency);
+            transactions.add(register.transactionLatency);
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.printf("Load test: %d registers, %d transactions each (+%d warmup), target %s, scan interval %d ms, %s%n",
+                options.registers, options.transactions, options.warmup,
+                options.tps > 0 ? options.tps + " TPS" : "unthrottled", options.scanIntervalMs,
+                options.replay != null ? "replaying " + recorded.size() + " baskets"
+                        : "baskets of " + options.basketMin + "-" + options.basketMax + " lines");
+        System.out.printf("Completed %d transactions in %.2f s: %.1f TPS (%d failed, %d errors)%n",
+                completed, seconds, completed / seconds, failed, errors);
+        System.out.println();
+        System.out.printf("%-12s %9s %10s %10s %10s %10s%n", "operation", "count", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        printLatency("scan", LatencyRecorder.merge(scans));
+        printLatency("tender", LatencyRecorder.merge(tenders));
+        printLatency("transaction", LatencyRecorder.merge(transactions));
+    }
+
+    private static void printLatency(String operation, long[] sorted) {
+        System.out.printf("%-12s %9d %10.3f %10.3f %10.3f %10.3f%n", operation, sorted.length,
+                LatencyRecorder.percentileMs(sorted, 50), LatencyRecorder.percentileMs(sorted, 99),
+                LatencyRecorder.percentileMs(sorted, 99.9), LatencyRecorder.percentileMs(sorted, 100));
+    }
+
+    // ==================== Basket Files ====================
+
+    /**
+     * Reads recorded baskets. UPCs that aren't in the pricebook are skipped with a warning.
+     */
+    private static List<List<Scan>> readBaskets(String path, Map<String, Product> pricebook) throws IOException {
+        List<List<Scan>> baskets = new ArrayList<>();
+        int unknown = 0;
+        for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<Scan> basket = new ArrayList<>();
+            for (String token : line.split("[\\s,]+")) {
+                int star = token.indexOf('*');
+                String upc = star == -1 ? token : token.substring(0, star);
+                int qty = star == -1 ? 1 : Integer.parseInt(token.substring(star + 1));
+                Product product = pricebook.get(upc);
+                if (product == null || qty < 1) {
+                    unknown++;
+                    continue;
+                }
+                basket.add(new Scan(product, qty));
+            }
+            if (!basket.isEmpty()) {
+                baskets.add(basket);
+            }
+        }
+        if (unknown > 0) {
+            System.err.println("Skipped " + unknown + " unknown or invalid entries in " + path);
+        }
+        return baskets;
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("See the LoadDriver class comment for the options");
+            System.exit(2);
+            return;
+        }
+
+        Map<String, Product> pricebook = PricebookParser.parseTSV(options.pricebook);
+        if (pricebook.isEmpty()) {
+            System.err.println("No products in " + options.pricebook);
+            System.exit(1);
+        }
+
+        try {
+            List<List<Scan>> recorded = null;
+            if (options.replay != null) {
+                recorded = readBaskets(options.replay, pricebook);
+                if (recorded.isEmpty()) {
+                    System.err.println("No baskets in " + options.replay);
+                    System.exit(1);
+                }
+            }
+            new LoadDriver(options, pricebook, recorded).run();
+        } catch (IOException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
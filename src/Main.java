@@ -19,8 +19,17 @@ public class Main {
             e.printStackTrace();
         }
 
+        // Build the in-memory product index used by the scan path
+        ProductCatalog catalog = new ProductCatalog();
+        try {
+            catalog.load(dbManager.getAllProducts());
+            System.out.println("Indexed " + catalog.size() + " products for scanning");
+        } catch (Exception e) {
+            System.err.println("Error building product catalog: " + e.getMessage());
+        }
+
         // Create controller
-        RegisterController controller = new RegisterController(dbManager, journal);
+        RegisterController controller = new RegisterController(dbManager, journal, catalog);
 
         // Create and show UI
         SwingUtilities.invokeLater(() -> {
@@ -32,12 +41,16 @@ public class Main {
             }
 
             RegisterUI ui = new RegisterUI(controller);
-            controller.setUI(ui);
+            controller.setListener(ui);
+
+            // Finish anything the journal has that the database doesn't (e.g. after a crash)
+            controller.recoverFromJournal();
             ui.setVisible(true);
         });
 
         // Shutdown hook to close database and journal
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            controller.close();
             journal.close();
             dbManager.close();
             System.out.println("Database and journal closed");
@@ -0,0 +1,126 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Money is carried through the register as a primitive long number of cents.
+ * These helpers do the arithmetic, rounding and conversions without allocating,
+ * except where a boundary needs an object (JDBC DECIMAL columns, JSON text).
+ *
+ * Rounding is half away from zero, to the cent, and happens once per computed
+ * amount (a line total is exact; tax is rounded once on the discounted subtotal).
+ */
+public final class Money {
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    // ==================== Arithmetic ====================
+
+    /**
+     * Returns unit price × quantity.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * Applies a rate in basis points (700 = 7%) and rounds to the cent.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public static long applyRate(long cents, long basisPoints) {
+        long product = Math.multiplyExact(cents, basisPoints);
+        long result = product / BASIS_POINTS;
+        long remainder = product % BASIS_POINTS;
+        if (Math.abs(remainder) * 2 >= BASIS_POINTS) {
+            result += Long.signum(product);
+        }
+        return result;
+    }
+
+    // ==================== Conversions ====================
+
+    /**
+     * Parses decimal dollar text such as "8.91", "-1.5" or "12".
+     *
+     * @throws NumberFormatException if the text is not a plain decimal
+     */
+    public static long parse(String text) {
+        return fromBigDecimal(new BigDecimal(text.trim()));
+    }
+
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Binds cents to a DECIMAL parameter with the exact value, never through double.
+     */
+    public static void bind(PreparedStatement statement, int index, long cents) throws SQLException {
+        statement.setBigDecimal(index, toBigDecimal(cents));
+    }
+
+    /**
+     * Reads a DECIMAL column as cents; SQL NULL reads as 0.
+     */
+    public static long read(ResultSet rs, String column) throws SQLException {
+        BigDecimal value = rs.getBigDecimal(column);
+        return value != null ? fromBigDecimal(value) : 0;
+    }
+
+    // ==================== Formatting ====================
+
+    /**
+     * Formats cents for display with grouping, e.g. "1,234.56" or "-0.50".
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(16), cents, true).toString();
+    }
+
+    /**
+     * Formats cents as plain decimal text without grouping, e.g. "1234.56", as used in JSON.
+     */
+    public static String toPlainString(long cents) {
+        return appendTo(new StringBuilder(16), cents, false).toString();
+    }
+
+    /**
+     * Appends cents as decimal text to a builder.
+     */
+    public static StringBuilder appendTo(StringBuilder out, long cents, boolean grouping) {
+        if (cents < 0) {
+            out.append('-');
+        }
+        // Long.MIN_VALUE has no positive counterpart; its digits come out right via unsigned division
+        long dollars = Long.divideUnsigned(Math.abs(cents), 100);
+        int fraction = (int) Long.remainderUnsigned(Math.abs(cents), 100);
+
+        if (grouping && dollars >= 1000) {
+            String digits = Long.toString(dollars);
+            int lead = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+            out.append(digits, 0, lead);
+            for (int i = lead; i < digits.length(); i += 3) {
+                out.append(',').append(digits, i, i + 3);
+            }
+        } else {
+            out.append(dollars);
+        }
+
+        out.append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+}
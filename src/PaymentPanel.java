@@ -5,8 +5,6 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,7 +30,6 @@ public class PaymentPanel extends JPanel {
     private final RegisterController controller;
     private final Runnable onBackRequested;
     private final Runnable onPaymentComplete;
-    private final DecimalFormat df = new DecimalFormat("#,##0.00");
 
     // UI Elements
     private DefaultTableModel summaryTableModel;
@@ -299,11 +296,11 @@ public class PaymentPanel extends JPanel {
         JPanel quickAmounts = new JPanel(new GridLayout(2, 4, 10, 10));
         quickAmounts.setBackground(CARD_BG);
 
-        quickAmounts.add(createCashButton("$5", 5.0));
-        quickAmounts.add(createCashButton("$10", 10.0));
-        quickAmounts.add(createCashButton("$20", 20.0));
-        quickAmounts.add(createCashButton("$50", 50.0));
-        quickAmounts.add(createCashButton("$100", 100.0));
+        quickAmounts.add(createCashButton("$5", 500));
+        quickAmounts.add(createCashButton("$10", 1000));
+        quickAmounts.add(createCashButton("$20", 2000));
+        quickAmounts.add(createCashButton("$50", 5000));
+        quickAmounts.add(createCashButton("$100", 10000));
         quickAmounts.add(createExactButton());
         quickAmounts.add(createNextDollarButton());
         quickAmounts.add(createCustomButton());
@@ -314,7 +311,7 @@ public class PaymentPanel extends JPanel {
         return section;
     }
 
-    private JButton createCashButton(String text, double amount) {
+    private JButton createCashButton(String text, long amountCents) {
         JButton btn = new JButton(text);
         btn.setFont(new Font("Segoe UI", Font.BOLD, 16));
         btn.setBackground(ACCENT_GREEN);
@@ -333,7 +330,7 @@ public class PaymentPanel extends JPanel {
             }
         });
 
-        btn.addActionListener(e -> handleCashPayment(amount));
+        btn.addActionListener(e -> handleCashPayment(amountCents));
         return btn;
     }
 
@@ -355,7 +352,7 @@ public class PaymentPanel extends JPanel {
             }
         });
 
-        btn.addActionListener(e -> handleCashPayment(controller.getTotal()));
+        btn.addActionListener(e -> handleCashPayment(controller.getTotals().getTotalCents()));
         return btn;
     }
 
@@ -378,8 +375,9 @@ public class PaymentPanel extends JPanel {
         });
 
         btn.addActionListener(e -> {
-            double nextDollar = Math.ceil(controller.getTotal());
-            handleCashPayment(nextDollar);
+            // Round up to whole dollars
+            long totalCents = controller.getTotals().getTotalCents();
+            handleCashPayment(Math.floorDiv(totalCents + 99, 100) * 100);
         });
         return btn;
     }
@@ -526,23 +524,23 @@ public class PaymentPanel extends JPanel {
 
     // ==================== Payment Handlers ====================
 
-    private void handleCashPayment(double tendered) {
-        double total = controller.getTotal();
+    private void handleCashPayment(long tenderedCents) {
+        long totalCents = controller.getTotals().getTotalCents();
 
-        if (tendered < total) {
-            showError("Insufficient amount. Need at least $" + df.format(total));
+        if (tenderedCents < totalCents) {
+            showError("Insufficient amount. Need at least $" + Money.format(totalCents));
             return;
         }
 
-        double change = tendered - total;
+        long changeCents = tenderedCents - totalCents;
 
         // Show change display
-        tenderedLabel.setText("Tendered: $" + df.format(tendered));
-        changeLabel.setText("Change: $" + df.format(change));
+        tenderedLabel.setText("Tendered: $" + Money.format(tenderedCents));
+        changeLabel.setText("Change: $" + Money.format(changeCents));
         changeDisplayPanel.setVisible(true);
 
         // Styled confirmation dialog
-        JPanel confirmPanel = createConfirmationPanel(tendered, change);
+        JPanel confirmPanel = createConfirmationPanel(tenderedCents, changeCents);
 
         int confirm = JOptionPane.showConfirmDialog(this,
                 confirmPanel,
@@ -551,26 +549,17 @@ public class PaymentPanel extends JPanel {
                 JOptionPane.PLAIN_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // Capture transaction data BEFORE completing transaction
-            List<TransactionItem> items = new ArrayList<>(controller.getCurrentTransaction());
-            double subtotal = controller.getSubtotal();
-            double discount = controller.getDiscountAmount();
-            double tax = controller.getTax();
-            int transactionId = controller.getCurrentTransactionId();
-
-            // Complete the transaction (this clears the data)
-            controller.completeTransaction("CASH", tendered);
-
-            // Show receipt with captured data
-            showReceipt("CASH", tendered, change, items, subtotal, discount, tax, total, transactionId);
-
-            onPaymentComplete.run();
+            // The receipt comes from the controller's snapshot of the sale it completed
+            controller.completeTransaction("CASH", tenderedCents, sale -> SwingUtilities.invokeLater(() -> {
+                showReceipt("CASH", tenderedCents, tenderedCents - sale.getTotals().getTotalCents(), sale);
+                onPaymentComplete.run();
+            }));
         }
 
         changeDisplayPanel.setVisible(false);
     }
 
-    private JPanel createConfirmationPanel(double tendered, double change) {
+    private JPanel createConfirmationPanel(long tenderedCents, long changeCents) {
         JPanel panel = new JPanel(new BorderLayout(10, 15));
         panel.setBackground(Color.WHITE);
         panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
@@ -586,11 +575,11 @@ public class PaymentPanel extends JPanel {
                 BorderFactory.createEmptyBorder(15, 15, 15, 15)
         ));
 
-        JLabel tenderedLbl = new JLabel("Tendered: $" + df.format(tendered));
+        JLabel tenderedLbl = new JLabel("Tendered: $" + Money.format(tenderedCents));
         tenderedLbl.setFont(new Font("Segoe UI", Font.PLAIN, 16));
         tenderedLbl.setForeground(TEXT_PRIMARY);
 
-        JLabel changeLbl = new JLabel("Change: $" + df.format(change));
+        JLabel changeLbl = new JLabel("Change: $" + Money.format(changeCents));
         changeLbl.setFont(new Font("Segoe UI", Font.BOLD, 20));
         changeLbl.setForeground(ACCENT_GREEN);
 
@@ -612,7 +601,7 @@ public class PaymentPanel extends JPanel {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
         titleLabel.setForeground(ACCENT_GREEN);
 
-        JLabel instructionLabel = new JLabel("Total Due: $" + df.format(controller.getTotal()));
+        JLabel instructionLabel = new JLabel("Total Due: $" + Money.format(controller.getTotals().getTotalCents()));
         instructionLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
         instructionLabel.setForeground(TEXT_PRIMARY);
         instructionLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -643,9 +632,8 @@ public class PaymentPanel extends JPanel {
             String input = amountField.getText().trim();
             if (!input.isEmpty()) {
                 try {
-                    double amount = Double.parseDouble(input);
-                    handleCashPayment(amount);
-                } catch (NumberFormatException e) {
+                    handleCashPayment(Money.parse(input));
+                } catch (NumberFormatException | ArithmeticException e) {
                     showError("Invalid amount entered");
                 }
             }
@@ -653,7 +641,7 @@ public class PaymentPanel extends JPanel {
     }
 
     private void handleCardPayment() {
-        double total = controller.getTotal();
+        long totalCents = controller.getTotals().getTotalCents();
 
         JPanel confirmPanel = new JPanel(new BorderLayout(10, 15));
         confirmPanel.setBackground(Color.WHITE);
@@ -663,7 +651,7 @@ public class PaymentPanel extends JPanel {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
         titleLabel.setForeground(ACCENT_BLUE);
 
-        JLabel amountLabel = new JLabel("Amount: $" + df.format(total));
+        JLabel amountLabel = new JLabel("Amount: $" + Money.format(totalCents));
         amountLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         amountLabel.setForeground(TEXT_PRIMARY);
         amountLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -692,20 +680,10 @@ public class PaymentPanel extends JPanel {
                 JOptionPane.PLAIN_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // Capture transaction data BEFORE completing transaction
-            List<TransactionItem> items = new ArrayList<>(controller.getCurrentTransaction());
-            double subtotal = controller.getSubtotal();
-            double discount = controller.getDiscountAmount();
-            double tax = controller.getTax();
-            int transactionId = controller.getCurrentTransactionId();
-
-            // Complete the transaction (this clears the data)
-            controller.completeTransaction("CREDIT", total);
-
-            // Show receipt with captured data
-            showReceipt("CREDIT", total, 0.0, items, subtotal, discount, tax, total, transactionId);
-
-            onPaymentComplete.run();
+            controller.completeTransaction("CREDIT", totalCents, sale -> SwingUtilities.invokeLater(() -> {
+                showReceipt("CREDIT", totalCents, 0, sale);
+                onPaymentComplete.run();
+            }));
         }
     }
 
@@ -741,25 +719,24 @@ public class PaymentPanel extends JPanel {
 
     // ==================== Receipt Display ====================
 
-    private void showReceipt(String paymentType, double tendered, double change,
-                             List<TransactionItem> items, double subtotal, double discount,
-                             double tax, double total, int transactionId) {
+    private void showReceipt(String paymentType, long tenderedCents, long changeCents, RegisterView sale) {
         Frame parentFrame = (Frame) SwingUtilities.getWindowAncestor(this);
         if (parentFrame == null) {
             parentFrame = JOptionPane.getFrameForComponent(this);
         }
 
+        Totals totals = sale.getTotals();
         ReceiptDialog receiptDialog = new ReceiptDialog(
                 parentFrame,
-                transactionId,
-                items,
-                subtotal,
-                discount,
-                tax,
-                total,
+                sale.getTransactionId(),
+                sale.getLines(),
+                totals.getSubtotalCents(),
+                totals.getDiscountCents(),
+                totals.getTaxCents(),
+                totals.getTotalCents(),
                 paymentType,
-                tendered,
-                change
+                tenderedCents,
+                changeCents
         );
 
         receiptDialog.setVisible(true);
@@ -776,23 +753,24 @@ public class PaymentPanel extends JPanel {
             Object[] row = {
                     truncate(item.getProduct().getName()),
                     item.getQuantity(),
-                    "$" + df.format(item.getTotal())
+                    "$" + Money.format(item.getTotalCents())
             };
             summaryTableModel.addRow(row);
         }
 
         // Update totals
-        double subtotal = controller.getSubtotal();
-        double discount = controller.getDiscountAmount();
-        double tax = controller.getTax();
-        double total = controller.getTotal();
-
-        subtotalValueLabel.setText("$" + df.format(subtotal));
-        taxValueLabel.setText("$" + df.format(tax));
-        totalValueLabel.setText("$" + df.format(total));
-
-        if (discount > 0) {
-            discountValueLabel.setText("-$" + df.format(discount));
+        Totals totals = controller.getTotals();
+        long subtotalCents = totals.getSubtotalCents();
+        long discountCents = totals.getDiscountCents();
+        long taxCents = totals.getTaxCents();
+        long totalCents = totals.getTotalCents();
+
+        subtotalValueLabel.setText("$" + Money.format(subtotalCents));
+        taxValueLabel.setText("$" + Money.format(taxCents));
+        totalValueLabel.setText("$" + Money.format(totalCents));
+
+        if (discountCents > 0) {
+            discountValueLabel.setText("-$" + Money.format(discountCents));
             discountCard.setVisible(true);
         } else {
             discountCard.setVisible(false);
@@ -0,0 +1,97 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a ConnectionPool, with a cache of prepared statements.
+ * Statements returned by prepare() belong to the cache and must not be closed by
+ * the caller; closing the PooledConnection returns it to the pool.
+ * Only one thread may use a borrowed connection at a time.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> keyStatements = new HashMap<>();
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns a cached prepared statement for the SQL, preparing it on first use.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt == null) {
+            pstmt = connection.prepareStatement(sql);
+            statements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Same as prepare() but the statement returns generated keys.
+     */
+    public PreparedStatement prepareReturningKeys(String sql) throws SQLException {
+        PreparedStatement pstmt = keyStatements.get(sql);
+        if (pstmt == null) {
+            pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            keyStatements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Returns the connection to the pool. Any transaction left open is rolled back and
+     * batches left on cached statements are cleared. A connection that can't be reset
+     * is closed and dropped from the pool instead.
+     */
+    @Override
+    public void close() {
+        boolean broken;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            // A failed executeBatch leaves its parameters queued on the statement, and the
+            // caller has usually restored autoCommit already, so clear them regardless
+            clearBatches(statements);
+            clearBatches(keyStatements);
+            broken = connection.isClosed();
+        } catch (SQLException e) {
+            System.err.println("Error resetting pooled connection: " + e.getMessage());
+            broken = true;
+        }
+
+        if (broken) {
+            pool.discard(this);
+        } else {
+            pool.release(this);
+        }
+    }
+
+    private static void clearBatches(Map<String, PreparedStatement> cache) throws SQLException {
+        for (PreparedStatement pstmt : cache.values()) {
+            pstmt.clearBatch();
+        }
+    }
+
+    void closeQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing database connection: " + e.getMessage());
+        }
+    }
+}
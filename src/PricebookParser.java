@@ -1,30 +1,358 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Loads the tab-separated pricebook (UPC, name, price).
+ * The file is memory-mapped and split into chunks on line boundaries; chunks are
+ * parsed in parallel on the common fork-join pool with a byte-level scanner.
+ * Bad rows are reported by line number and skipped instead of aborting the load.
+ */
 public class PricebookParser {
-    public static Map<String, Product> parseTSV(String filePath) {
-        Map<String, Product> products = new HashMap<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] columns = line.split("\t");
+    // Target chunk size; each chunk is mapped separately so files over 2 GB work
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    // Longest UPC or name we expect; longer fields are reported as bad rows
+    private static final int MAX_FIELD_LENGTH = 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // Returned by parsePriceCents for a malformed price
+    private static final long INVALID_PRICE = Long.MIN_VALUE;
 
-                if (columns.length >= 3) {
-                    String upc = columns[0].trim();
-                    String name = columns[1].trim();
-                    double price = Double.parseDouble(columns[2].trim());
+    public static Map<String, Product> parseTSV(String filePath) {
+        try {
+            LoadResult result = load(Paths.get(filePath));
 
-                    Product product = new Product(upc, name, price);
-                    products.put(upc, product);
-                }
+            List<String> errors = result.getErrors();
+            for (int i = 0; i < errors.size() && i < MAX_REPORTED_ERRORS; i++) {
+                System.err.println("Pricebook: " + errors.get(i));
             }
+            if (errors.size() > MAX_REPORTED_ERRORS) {
+                System.err.println("Pricebook: " + (errors.size() - MAX_REPORTED_ERRORS) + " more bad rows not shown");
+            }
+            return result.getProducts();
         } catch (IOException e) {
             System.err.println("Error reading file: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.err.println("Error parsing price: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Loads a pricebook file. Later rows win when a UPC appears more than once.
+     *
+     * @param path Pricebook TSV file
+     * @return LoadResult with the parsed products and one message per bad row
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static LoadResult load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> chunks = splitIntoChunks(channel);
+            ChunkResult[] results = new ChunkResult[chunks.size()];
+            if (!chunks.isEmpty()) {
+                ForkJoinPool.commonPool().invoke(new ChunkTask(channel, chunks, results, 0, chunks.size()));
+            }
+
+            int productCount = 0;
+            for (ChunkResult result : results) {
+                if (result.failure != null) {
+                    throw result.failure;
+                }
+                productCount += result.products.size();
+            }
+
+            // Merge in file order, converting chunk-relative line numbers to absolute ones
+            Map<String, Product> products = new HashMap<>(Math.max(16, productCount * 4 / 3 + 1));
+            List<String> errors = new ArrayList<>();
+            int linesBefore = 0;
+            for (ChunkResult result : results) {
+                for (Product product : result.products) {
+                    products.put(product.getUpc(), product);
+                }
+                for (int i = 0; i < result.errorLines.size(); i++) {
+                    errors.add("line " + (linesBefore + result.errorLines.get(i)) + ": " + result.errorMessages.get(i));
+                }
+                linesBefore += result.lineCount;
+            }
+
+            return new LoadResult(products, errors, linesBefore);
+        }
+    }
+
+    /**
+     * Splits the file into [start, end) byte ranges that each end just after a newline.
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_SIZE);
+            end = nextLineStart(channel, end, size, probe);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                return size;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    // ==================== Chunk Parsing ====================
+
+    private static class ChunkTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final List<long[]> chunks;
+        private final ChunkResult[] results;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, List<long[]> chunks, ChunkResult[] results, int from, int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from == 1) {
+                long[] range = chunks.get(from);
+                ChunkResult result = new ChunkResult();
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    parseChunk(buffer, result);
+                } catch (IOException e) {
+                    result.failure = e;
+                }
+                results[from] = result;
+                return null;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(channel, chunks, results, from, mid),
+                    new ChunkTask(channel, chunks, results, mid, to));
+            return null;
+        }
+    }
+
+    private static class ChunkResult {
+        final List<Product> products = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<String> errorMessages = new ArrayList<>();
+        int lineCount;
+        IOException failure;
+
+        void error(int line, String message) {
+            errorLines.add(line);
+            errorMessages.add(message);
         }
+    }
+
+    /**
+     * Scans one chunk byte by byte. Only the UPC and name become Strings;
+     * the price is parsed straight from the buffer.
+     */
+    private static void parseChunk(ByteBuffer buf, ChunkResult result) {
+        byte[] scratch = new byte[MAX_FIELD_LENGTH];
+        int limit = buf.limit();
+        int pos = 0;
+        int line = 0;
+
+        while (pos < limit) {
+            int lineStart = pos;
+            int lineEnd = pos;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            pos = lineEnd + 1;
+            line++;
+
+            int end = lineEnd;
+            if (end > lineStart && buf.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == lineStart) {
+                continue;
+            }
 
-        return products;
+            int tab1 = indexOfTab(buf, lineStart, end);
+            int tab2 = tab1 < 0 ? -1 : indexOfTab(buf, tab1 + 1, end);
+            if (tab2 < 0) {
+                // Rows with fewer than three columns were always skipped silently
+                continue;
+            }
+            int tab3 = indexOfTab(buf, tab2 + 1, end);
+            int priceEnd = tab3 < 0 ? end : tab3;
+
+            String upc = decodeTrimmed(buf, lineStart, tab1, scratch);
+            String name = decodeTrimmed(buf, tab1 + 1, tab2, scratch);
+            if (upc == null || name == null) {
+                result.error(line, "field longer than " + MAX_FIELD_LENGTH + " bytes");
+                continue;
+            }
+            if (upc.isEmpty()) {
+                result.error(line, "missing UPC");
+                continue;
+            }
+
+            long priceCents = parsePriceCents(buf, tab2 + 1, priceEnd);
+            if (priceCents == INVALID_PRICE) {
+                result.error(line, "invalid price for UPC " + upc);
+                continue;
+            }
+
+            result.products.add(new Product(upc, name, priceCents));
+        }
+
+        result.lineCount = line;
+    }
+
+    private static int indexOfTab(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == '\t') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes [from, to) as UTF-8 with surrounding whitespace trimmed.
+     * Returns null if the field does not fit in the scratch buffer.
+     */
+    private static String decodeTrimmed(ByteBuffer buf, int from, int to, byte[] scratch) {
+        while (from < to && isSpace(buf.get(from))) {
+            from++;
+        }
+        while (to > from && isSpace(buf.get(to - 1))) {
+            to--;
+        }
+        int length = to - from;
+        if (length > scratch.length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buf.get(from + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a plain decimal such as "8.91" or "-1.5" straight to cents, rounding
+     * half up past the second decimal place. Returns INVALID_PRICE if malformed.
+     */
+    private static long parsePriceCents(ByteBuffer buf, int from, int to) {
+        while (from < to && isSpace(buf.get(from))) {
+            from++;
+        }
+        while (to > from && isSpace(buf.get(to - 1))) {
+            to--;
+        }
+
+        boolean negative = false;
+        if (from < to && (buf.get(from) == '-' || buf.get(from) == '+')) {
+            negative = buf.get(from) == '-';
+            from++;
+        }
+
+        long cents = 0;
+        int digits = 0;
+        // Decimal places seen so far; -1 before the point
+        int scale = -1;
+        boolean roundUp = false;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                if (scale >= 2) {
+                    // Past the cents; only the first dropped digit decides the rounding
+                    if (scale == 2) {
+                        roundUp = b >= '5';
+                    }
+                    scale++;
+                    continue;
+                }
+                if (digits == 16) {
+                    return INVALID_PRICE;
+                }
+                cents = cents * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return INVALID_PRICE;
+            }
+        }
+        if (digits == 0) {
+            return INVALID_PRICE;
+        }
+
+        // Scale up to whole cents, e.g. "8" or "1.5"
+        for (int s = Math.max(scale, 0); s < 2; s++) {
+            cents *= 10;
+        }
+        if (roundUp) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Result of a pricebook load.
+     */
+    public static class LoadResult {
+        private final Map<String, Product> products;
+        private final List<String> errors;
+        private final int lineCount;
+
+        LoadResult(Map<String, Product> products, List<String> errors, int lineCount) {
+            this.products = products;
+            this.errors = errors;
+            this.lineCount = lineCount;
+        }
+
+        public Map<String, Product> getProducts() {
+            return products;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
     }
 }
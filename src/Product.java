@@ -1,12 +1,13 @@
 public class Product {
     private String upc;
     private String name;
-    private double price;
+    // Unit price in cents (see Money)
+    private long priceCents;
 
-    public Product(String upc, String name, double price) {
+    public Product(String upc, String name, long priceCents) {
         this.upc = upc;
         this.name = name;
-        this.price = price;
+        this.priceCents = priceCents;
     }
 
     public String getUpc() {
@@ -15,11 +16,11 @@ public class Product {
     public String getName() {
         return name;
     }
-    public double getPrice() {
-        return price;
+    public long getPriceCents() {
+        return priceCents;
     }
     @Override
     public String toString() {
-        return "Product{" + "upc=" + upc + ", name=" + name + ", price=" + price + '}';
+        return "Product{" + "upc=" + upc + ", name=" + name + ", price=" + Money.toPlainString(priceCents) + '}';
     }
 }
@@ -0,0 +1,160 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory product index used by the scan path.
+ * Numeric UPCs are packed into a long and stored in an open-addressing table,
+ * so a scan lookup is a handful of array probes with no allocation.
+ * Short PLU codes (e.g. "80", "79") and non-numeric codes go to a plain map.
+ * Not thread-safe: load it at startup and update it from the controller's thread.
+ */
+public class ProductCatalog {
+
+    // Codes shorter than this are treated as PLUs and kept in the fallback map
+    private static final int MIN_PACKED_LENGTH = 6;
+    // 17 digits * 32 (length tag) still fits in a signed long
+    private static final int MAX_PACKED_LENGTH = 17;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys;
+    private Product[] values;
+    private int mask;
+    private int packedSize;
+    private final Map<String, Product> fallback = new HashMap<>();
+
+    public ProductCatalog() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Replaces the catalog contents with the given products.
+     */
+    public void load(Collection<Product> products) {
+        allocate(tableSizeFor(products.size()));
+        fallback.clear();
+        for (Product product : products) {
+            put(product);
+        }
+    }
+
+    /**
+     * Adds or replaces a single product.
+     */
+    public void put(Product product) {
+        String upc = product.getUpc();
+        long key = pack(upc);
+        if (key == 0) {
+            fallback.put(upc, product);
+            return;
+        }
+
+        if ((packedSize + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        if (insert(keys, values, mask, key, product)) {
+            packedSize++;
+        }
+    }
+
+    /**
+     * Looks up a product by UPC. Returns null if the code is not in the catalog.
+     */
+    public Product find(String upc) {
+        if (upc == null) {
+            return null;
+        }
+        long key = pack(upc);
+        if (key == 0) {
+            return fallback.get(upc);
+        }
+
+        long[] k = keys;
+        Product[] v = values;
+        int m = k.length - 1;
+        int slot = mix(key) & m;
+        while (k[slot] != 0) {
+            if (k[slot] == key) {
+                return v[slot];
+            }
+            slot = (slot + 1) & m;
+        }
+        return null;
+    }
+
+    public int size() {
+        return packedSize + fallback.size();
+    }
+
+    // ==================== Internal Helpers ====================
+
+    /**
+     * Packs an all-digit code into a long with its length in the low five bits,
+     * so "080" and "80" stay distinct. Returns 0 if the code cannot be packed.
+     * Basket uses the same packing for its line index.
+     */
+    static long pack(String upc) {
+        int length = upc.length();
+        if (length < MIN_PACKED_LENGTH || length > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = upc.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (value << 5) | length;
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean insert(long[] k, Product[] v, int m, long key, Product product) {
+        int slot = mix(key) & m;
+        while (k[slot] != 0) {
+            if (k[slot] == key) {
+                v[slot] = product;
+                return false;
+            }
+            slot = (slot + 1) & m;
+        }
+        k[slot] = key;
+        v[slot] = product;
+        return true;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Product[capacity];
+        mask = capacity - 1;
+        packedSize = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] newKeys = new long[capacity];
+        Product[] newValues = new Product[capacity];
+        int newMask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                insert(newKeys, newValues, newMask, keys[i], values[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        mask = newMask;
+    }
+
+    private static int tableSizeFor(int expected) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -2,7 +2,6 @@
 
 import javax.swing.*;
 import java.awt.*;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
@@ -22,24 +21,23 @@ public class ReceiptDialog extends JDialog {
     private static final Color RECEIPT_BG = new Color(255, 255, 255);
     private static final Color DISCOUNT_GREEN = new Color(5, 150, 105);
 
-    private final DecimalFormat df = new DecimalFormat("#,##0.00");
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy hh:mm a");
 
     public ReceiptDialog(Frame parent, int transactionId, List<TransactionItem> items,
-                         double subtotal, double discount, double tax, double total,
-                         String paymentType, double tendered, double change) {
+                         long subtotalCents, long discountCents, long taxCents, long totalCents,
+                         String paymentType, long tenderedCents, long changeCents) {
         super(parent, "Receipt", true);
 
         setSize(500, 700);
         setLocationRelativeTo(parent);
         setResizable(false);
 
-        initializeUI(transactionId, items, subtotal, discount, tax, total, paymentType, tendered, change);
+        initializeUI(transactionId, items, subtotalCents, discountCents, taxCents, totalCents, paymentType, tenderedCents, changeCents);
     }
 
     private void initializeUI(int transactionId, List<TransactionItem> items,
-                              double subtotal, double discount, double tax, double total,
-                              String paymentType, double tendered, double change) {
+                              long subtotalCents, long discountCents, long taxCents, long totalCents,
+                              String paymentType, long tenderedCents, long changeCents) {
         setLayout(new BorderLayout(0, 0));
         getContentPane().setBackground(PRIMARY_BG);
 
@@ -49,7 +47,7 @@ public class ReceiptDialog extends JDialog {
         mainPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         // Receipt panel (the actual receipt look)
-        JPanel receiptPanel = createReceiptPanel(transactionId, items, subtotal, discount, tax, total, paymentType, tendered, change);
+        JPanel receiptPanel = createReceiptPanel(transactionId, items, subtotalCents, discountCents, taxCents, totalCents, paymentType, tenderedCents, changeCents);
 
         // Buttons panel
         JPanel buttonsPanel = createButtonsPanel();
@@ -63,8 +61,8 @@ public class ReceiptDialog extends JDialog {
     // ==================== Receipt Panel ====================
 
     private JPanel createReceiptPanel(int transactionId, List<TransactionItem> items,
-                                      double subtotal, double discount, double tax, double total,
-                                      String paymentType, double tendered, double change) {
+                                      long subtotalCents, long discountCents, long taxCents, long totalCents,
+                                      String paymentType, long tenderedCents, long changeCents) {
         JPanel receiptContainer = new JPanel(new BorderLayout());
         receiptContainer.setBackground(RECEIPT_BG);
         receiptContainer.setBorder(BorderFactory.createCompoundBorder(
@@ -90,13 +88,13 @@ public class ReceiptDialog extends JDialog {
         contentPanel.add(Box.createVerticalStrut(15));
 
         // Totals
-        contentPanel.add(createTotalsSection(subtotal, discount, tax, total));
+        contentPanel.add(createTotalsSection(subtotalCents, discountCents, taxCents, totalCents));
         contentPanel.add(Box.createVerticalStrut(15));
         contentPanel.add(createThickDivider());
         contentPanel.add(Box.createVerticalStrut(15));
 
         // Payment details
-        contentPanel.add(createPaymentSection(paymentType, tendered, change));
+        contentPanel.add(createPaymentSection(paymentType, tenderedCents, changeCents));
         contentPanel.add(Box.createVerticalStrut(20));
         contentPanel.add(createDivider());
         contentPanel.add(Box.createVerticalStrut(15));
@@ -192,12 +190,12 @@ public class ReceiptDialog extends JDialog {
         JPanel detailsPanel = new JPanel(new BorderLayout());
         detailsPanel.setBackground(RECEIPT_BG);
 
-        String qtyPrice = item.getQuantity() + " @ $" + df.format(item.getProduct().getPrice());
+        String qtyPrice = item.getQuantity() + " @ $" + Money.format(item.getProduct().getPriceCents());
         JLabel qtyLabel = new JLabel(qtyPrice);
         qtyLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
         qtyLabel.setForeground(TEXT_SECONDARY);
 
-        JLabel totalLabel = new JLabel("$" + df.format(item.getTotal()));
+        JLabel totalLabel = new JLabel("$" + Money.format(item.getTotalCents()));
         totalLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
         totalLabel.setForeground(TEXT_PRIMARY);
         totalLabel.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -216,32 +214,32 @@ public class ReceiptDialog extends JDialog {
 
     // ==================== Totals Section ====================
 
-    private JPanel createTotalsSection(double subtotal, double discount, double tax, double total) {
+    private JPanel createTotalsSection(long subtotalCents, long discountCents, long taxCents, long totalCents) {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.setBackground(RECEIPT_BG);
 
         // Subtotal
-        panel.add(createTotalRow("Subtotal:", subtotal, false, TEXT_SECONDARY));
+        panel.add(createTotalRow("Subtotal:", subtotalCents, false, TEXT_SECONDARY));
         panel.add(Box.createVerticalStrut(8));
 
         // Discount (if applicable)
-        if (discount > 0) {
-            panel.add(createDiscountRow(discount));
+        if (discountCents > 0) {
+            panel.add(createDiscountRow(discountCents));
             panel.add(Box.createVerticalStrut(8));
         }
 
         // Tax
-        panel.add(createTotalRow("Tax (7%):", tax, false, TEXT_SECONDARY));
+        panel.add(createTotalRow("Tax (7%):", taxCents, false, TEXT_SECONDARY));
         panel.add(Box.createVerticalStrut(12));
 
         // Total (emphasized)
-        panel.add(createTotalRow("TOTAL:", total, true, TEXT_PRIMARY));
+        panel.add(createTotalRow("TOTAL:", totalCents, true, TEXT_PRIMARY));
 
         return panel;
     }
 
-    private JPanel createTotalRow(String label, double amount, boolean emphasized, Color labelColor) {
+    private JPanel createTotalRow(String label, long amountCents, boolean emphasized, Color labelColor) {
         JPanel row = new JPanel(new BorderLayout());
         row.setBackground(RECEIPT_BG);
         row.setMaximumSize(new Dimension(Integer.MAX_VALUE, emphasized ? 35 : 25));
@@ -250,7 +248,7 @@ public class ReceiptDialog extends JDialog {
         labelComp.setFont(new Font("Segoe UI", emphasized ? Font.BOLD : Font.PLAIN, emphasized ? 16 : 13));
         labelComp.setForeground(labelColor);
 
-        JLabel amountComp = new JLabel("$" + df.format(amount));
+        JLabel amountComp = new JLabel("$" + Money.format(amountCents));
         amountComp.setFont(new Font("Segoe UI", Font.BOLD, emphasized ? 20 : 13));
         amountComp.setForeground(emphasized ? ACCENT_GREEN : TEXT_PRIMARY);
         amountComp.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -261,7 +259,7 @@ public class ReceiptDialog extends JDialog {
         return row;
     }
 
-    private JPanel createDiscountRow(double amount) {
+    private JPanel createDiscountRow(long amountCents) {
         JPanel row = new JPanel(new BorderLayout());
         row.setBackground(RECEIPT_BG);
         row.setMaximumSize(new Dimension(Integer.MAX_VALUE, 25));
@@ -270,7 +268,7 @@ public class ReceiptDialog extends JDialog {
         labelComp.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         labelComp.setForeground(DISCOUNT_GREEN);
 
-        JLabel amountComp = new JLabel("-$" + df.format(amount));
+        JLabel amountComp = new JLabel("-$" + Money.format(amountCents));
         amountComp.setFont(new Font("Segoe UI", Font.BOLD, 13));
         amountComp.setForeground(DISCOUNT_GREEN);
         amountComp.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -283,7 +281,7 @@ public class ReceiptDialog extends JDialog {
 
     // ==================== Payment Section ====================
 
-    private JPanel createPaymentSection(String paymentType, double tendered, double change) {
+    private JPanel createPaymentSection(String paymentType, long tenderedCents, long changeCents) {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.setBackground(RECEIPT_BG);
@@ -320,7 +318,7 @@ public class ReceiptDialog extends JDialog {
             tenderedLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
             tenderedLabel.setForeground(TEXT_SECONDARY);
 
-            JLabel tenderedValue = new JLabel("$" + df.format(tendered));
+            JLabel tenderedValue = new JLabel("$" + Money.format(tenderedCents));
             tenderedValue.setFont(new Font("Segoe UI", Font.PLAIN, 13));
             tenderedValue.setForeground(TEXT_PRIMARY);
             tenderedValue.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -340,7 +338,7 @@ public class ReceiptDialog extends JDialog {
             changeLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
             changeLabel.setForeground(TEXT_PRIMARY);
 
-            JLabel changeValue = new JLabel("$" + df.format(change));
+            JLabel changeValue = new JLabel("$" + Money.format(changeCents));
             changeValue.setFont(new Font("Segoe UI", Font.BOLD, 16));
             changeValue.setForeground(ACCENT_GREEN);
             changeValue.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -1,45 +1,224 @@
 // src/RegisterController.java
 
-import java.awt.*;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.List;
-import javax.swing.*;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Owns the register's transaction state. UI actions are submitted as commands and
+ * run one at a time, in order, on the controller's own thread; the caller never waits
+ * for the database or the discount service, and scans made while a slow command
+ * runs are queued behind it rather than lost. After each command the controller
+ * publishes an immutable RegisterView to its RegisterListener.
+ *
+ * The controller has no Swing dependency: RegisterUI is one listener, and LoadDriver
+ * runs registers headless with another.
+ *
+ * Scans are not commands of their own: those arriving within a few milliseconds of
+ * each other, or while another command is running, are applied together as one
+ * batch, with one discount evaluation, one totals write and one repaint.
+ */
 public class RegisterController {
-    private static final double TAX_RATE = 0.07;
+    // 7% in basis points; tax is rounded to the cent once, on the discounted subtotal
+    private static final long TAX_RATE_BASIS_POINTS = 700;
+
+    // How long the first scan of a burst waits for others to join its batch
+    private static final long SCAN_BATCH_WINDOW_MS = 10;
 
     private final DatabaseManager dbManager;
     private final VirtualJournal journal;
+    private final ProductCatalog catalog;
     private final DiscountService discountService;
-    private final List<TransactionItem> currentTransaction;
-    private RegisterUI ui;
+    private final TransactionWriter transactionWriter;
+    private final Basket currentTransaction;
+    private RegisterListener listener;
     private int currentTransactionId = -1;
+    private int nextLineNumber = 1;
     private boolean isResumedTransaction = false;
 
     // Cached discount result for current transaction
     private DiscountService.DiscountResult currentDiscount = null;
 
-    public RegisterController(DatabaseManager dbManager, VirtualJournal journal) {
+    // Running subtotal, adjusted by each line change, and the totals derived from it
+    private long subtotalCents = 0;
+    private Totals totals = Totals.ZERO;
+
+    // Basket version is bumped on every change; discount results for older versions are stale
+    private long basketVersion = 0;
+    private long discountVersion = -1;
+    private boolean discountInFlight = false;
+
+    // Incremental local discount state; null when no local rules are loaded
+    private final DiscountRulesEngine.Session discountSession;
+
+    // Runs every command; all fields above are only touched from this thread
+    private final ScheduledExecutorService commands;
+
+    // Scans waiting to be applied as the next batch
+    private final Object scanLock = new Object();
+    private List<Scan> pendingScans = new ArrayList<>();
+    private boolean scanBatchScheduled = false;
+
+    // Latest snapshot
+    private volatile RegisterView view = RegisterView.EMPTY;
+
+    @FunctionalInterface
+    private interface Command {
+        void run() throws SQLException;
+    }
+
+    private static final class Scan {
+        final String upc;
+        final int qty;
+
+        Scan(String upc, int qty) {
+            this.upc = upc;
+            this.qty = qty;
+        }
+    }
+
+    public RegisterController(DatabaseManager dbManager, VirtualJournal journal, ProductCatalog catalog) {
         this.dbManager = dbManager;
         this.journal = journal;
-        this.currentTransaction = new ArrayList<>();
+        this.catalog = catalog;
+        this.currentTransaction = new Basket();
+        // The journal is the write-ahead log for open baskets, so lines only reach H2 on flush
+        this.transactionWriter = new TransactionWriter(dbManager, true);
 
         // Initialize discount service with default config
         ApiConfig apiConfig = new ApiConfig();
         this.discountService = new DiscountService(apiConfig);
+        this.discountSession = discountService.newLocalSession();
+
+        // The journal's ring buffer allows a single producer, which is this thread
+        this.commands = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "register-controller");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    public void setUI(RegisterUI ui) {
-        this.ui = ui;
+    /**
+     * Sets the listener that receives views, errors and requests for the cashier.
+     * Set it before submitting commands.
+     */
+    public void setListener(RegisterListener listener) {
+        this.listener = listener;
+    }
+
+    // ==================== Command Execution ====================
+
+    /**
+     * Queues a command behind any already submitted. Safe to call from any thread.
+     * Scans still waiting for their batch window are taken along and applied first,
+     * so the command sees every scan made before it.
+     */
+    private void submit(Command command) {
+        List<Scan> scans = takePendingScans();
+        try {
+            commands.execute(() -> {
+                if (!scans.isEmpty()) {
+                    runCommand(() -> addItems(scans));
+                }
+                runCommand(command);
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println("Register is shutting down, command ignored");
+        }
+    }
+
+    private List<Scan> takePendingScans() {
+        synchronized (scanLock) {
+            if (pendingScans.isEmpty()) {
+                return List.of();
+            }
+            List<Scan> scans = pendingScans;
+            pendingScans = new ArrayList<>();
+            return scans;
+        }
     }
 
+    private void runScanBatch() {
+        synchronized (scanLock) {
+            scanBatchScheduled = false;
+        }
+        List<Scan> scans = takePendingScans();
+        if (!scans.isEmpty()) {
+            runCommand(() -> addItems(scans));
+        }
+    }
+
+    private void runCommand(Command command) {
+        try {
+            command.run();
+        } catch (SQLException e) {
+            showError("Database error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Register command failed: " + e);
+            e.printStackTrace();
+            showError("Unexpected error: " + e.getMessage());
+        }
+        publishView();
+    }
+
+    /**
+     * Snapshots the current state and hands it to the listener.
+     */
+    private void publishView() {
+        boolean discountPending = !currentTransaction.isEmpty() && !isDiscountCurrent();
+        List<String> discounts = !discountPending && currentDiscount != null && currentDiscount.hasDiscount()
+                ? currentDiscount.getAppliedDiscounts() : List.of();
+        view = RegisterView.of(currentTransactionId, isResumedTransaction, currentTransaction, totals, discounts,
+                discountPending);
+
+        if (listener != null) {
+            listener.onView(view);
+        }
+    }
+
+    private void showError(String message) {
+        if (listener != null) {
+            listener.onError(message);
+        } else {
+            System.err.println(message);
+        }
+    }
+
+    // ==================== Commands ====================
+
+    /**
+     * Queues a scan. It is applied with any other scans made within the batch window.
+     */
     public void addItem(String upc, int qty) {
+        synchronized (scanLock) {
+            pendingScans.add(new Scan(upc, qty));
+            if (scanBatchScheduled) {
+                return;
+            }
+            scanBatchScheduled = true;
+        }
         try {
-            Product product = dbManager.getProductByUPC(upc);
+            commands.schedule(this::runScanBatch, SCAN_BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Register is shutting down, scan ignored");
+        }
+    }
+
+    private void addItems(List<Scan> scans) throws SQLException {
+        List<String> notFound = new ArrayList<>();
+        int added = 0;
+
+        for (Scan scan : scans) {
+            Product product = findProduct(scan.upc);
             if (product == null) {
-                ui.showError("Product not found with UPC: " + upc);
-                return;
+                notFound.add(scan.upc);
+                continue;
             }
 
             if (currentTransactionId == -1 && currentTransaction.isEmpty()) {
@@ -47,93 +226,182 @@ public class RegisterController {
                 journal.logTransactionStart(currentTransactionId);
             }
 
-            addOrUpdateTransactionItem(product, qty);
-            updateTransactionInDatabase();
+            addOrUpdateTransactionItem(product, scan.qty);
+            added++;
+        }
 
-            // Recalculate discounts when items change
+        if (added > 0) {
+            // Recalculate discounts once for the whole batch
             recalculateDiscount();
+            queueTotals();
+        }
 
-            refreshUI();
-        } catch (SQLException e) {
-            ui.showError("Database error: " + e.getMessage());
+        if (notFound.size() == 1) {
+            showError("Product not found with UPC: " + notFound.get(0));
+        } else if (!notFound.isEmpty()) {
+            showError("Products not found with UPCs: " + String.join(", ", notFound));
+        }
+    }
+
+    /**
+     * Looks up a product in the in-memory catalog, falling back to the database
+     * for codes added since startup.
+     */
+    private Product findProduct(String upc) throws SQLException {
+        Product product = catalog.find(upc);
+        if (product == null) {
+            product = dbManager.getProductByUPC(upc);
+            if (product != null) {
+                catalog.put(product);
+            }
         }
+        return product;
     }
 
     private void addOrUpdateTransactionItem(Product product, int qty) {
-        TransactionItem existingItem = findItemByUPC(product.getUpc());
+        TransactionItem existingItem = currentTransaction.findByUpc(product.getUpc());
+
+        trackDiscountDelta(product, qty);
 
         if (existingItem != null) {
             existingItem.addQuantity(qty);
-            journal.logItem(product.getUpc(), product.getName(),
-                    product.getPrice());
+            adjustSubtotal(Money.times(product.getPriceCents(), qty));
+            journal.logItem(currentTransactionId, existingItem.getLineNumber(), product.getUpc(),
+                    product.getName(), product.getPriceCents(), existingItem.getQuantity());
+            transactionWriter.submit(TransactionChange.changeQuantity(currentTransactionId, existingItem));
         } else {
-            TransactionItem newItem = new TransactionItem(product, qty);
+            TransactionItem newItem = new TransactionItem(nextLineNumber++, product, qty);
             currentTransaction.add(newItem);
-            journal.logItem(product.getUpc(), product.getName(),
-                    product.getPrice());
+            adjustSubtotal(newItem.getTotalCents());
+            journal.logItem(currentTransactionId, newItem.getLineNumber(), product.getUpc(),
+                    product.getName(), product.getPriceCents(), qty);
+            transactionWriter.submit(TransactionChange.addLine(currentTransactionId, newItem));
         }
     }
 
-    public void voidItem(int index) {
-        if (index >= 0 && index < currentTransaction.size()) {
-            TransactionItem item = currentTransaction.get(index);
-            journal.logVoidItem(item.getProduct().getUpc(),
+    /**
+     * Voids a basket line. Lines are addressed by line number rather than table row,
+     * since rows may have moved by the time the command runs.
+     */
+    public void voidLine(int lineNumber) {
+        submit(() -> doVoidLine(lineNumber));
+    }
+
+    private void doVoidLine(int lineNumber) {
+        TransactionItem item = currentTransaction.findByLine(lineNumber);
+        if (item != null) {
+            journal.logVoidItem(currentTransactionId, item.getLineNumber(),
+                    item.getProduct().getUpc(),
                     item.getProduct().getName(),
                     item.getQuantity());
 
-            currentTransaction.remove(index);
-
-            try {
-                if (currentTransactionId != -1) {
-                    updateTransactionInDatabase();
-                }
-            } catch (SQLException e) {
-                ui.showError("Database error: " + e.getMessage());
+            currentTransaction.removeLine(lineNumber);
+            adjustSubtotal(-item.getTotalCents());
+            trackDiscountDelta(item.getProduct(), -item.getQuantity());
+            if (currentTransactionId != -1) {
+                transactionWriter.submit(TransactionChange.voidLine(currentTransactionId, item));
             }
 
             // Recalculate discounts when items change
             recalculateDiscount();
-
-            refreshUI();
+            queueTotals();
         }
     }
 
-    public void changeQuantity(int index, int newQty) {
-        if (index >= 0 && index < currentTransaction.size() && newQty > 0) {
-            TransactionItem item = currentTransaction.get(index);
+    public void changeLineQuantity(int lineNumber, int newQty) {
+        submit(() -> doChangeLineQuantity(lineNumber, newQty));
+    }
+
+    private void doChangeLineQuantity(int lineNumber, int newQty) {
+        TransactionItem item = currentTransaction.findByLine(lineNumber);
+        if (item != null && newQty > 0) {
             int oldQty = item.getQuantity();
             item.setQuantity(newQty);
+            adjustSubtotal(Money.times(item.getProduct().getPriceCents(), newQty - oldQty));
+            trackDiscountDelta(item.getProduct(), newQty - oldQty);
 
-            journal.logQuantityChange(item.getProduct().getUpc(),
-                    item.getProduct().getName(), oldQty, newQty);
-            journal.logItem(item.getProduct().getUpc(), item.getProduct().getName(),
-                    item.getProduct().getPrice());
+            journal.logQuantityChange(currentTransactionId, item.getLineNumber(),
+                    item.getProduct().getUpc(), item.getProduct().getName(), oldQty, newQty);
+            journal.logItem(currentTransactionId, item.getLineNumber(), item.getProduct().getUpc(),
+                    item.getProduct().getName(), item.getProduct().getPriceCents(), newQty);
 
-            try {
-                if (currentTransactionId != -1) {
-                    updateTransactionInDatabase();
-                }
-            } catch (SQLException e) {
-                ui.showError("Database error: " + e.getMessage());
+            if (currentTransactionId != -1) {
+                transactionWriter.submit(TransactionChange.changeQuantity(currentTransactionId, item));
             }
 
             // Recalculate discounts when quantity changes
             recalculateDiscount();
+            queueTotals();
+        }
+    }
 
-            refreshUI();
+    /**
+     * Feeds a basket change into the local discount session, if there is one.
+     */
+    private void trackDiscountDelta(Product product, int quantityDelta) {
+        if (discountSession != null) {
+            discountSession.apply(product.getUpc(), product.getPriceCents(), quantityDelta);
         }
     }
 
     /**
-     * Recalculates discounts for the current transaction.
+     * Recalculates discounts for the current transaction without blocking the command thread.
+     * With local rules the session already holds the answer. Otherwise only one API
+     * request is in flight at a time; scans that arrive while it is pending are
+     * collapsed into a single follow-up request for the newest basket.
      */
     private void recalculateDiscount() {
+        basketVersion++;
         if (currentTransaction.isEmpty()) {
             currentDiscount = null;
+            discountVersion = basketVersion;
+            updateTotals();
             return;
         }
 
-        currentDiscount = discountService.calculateDiscount(currentTransaction);
+        if (discountSession != null) {
+            applyDiscount(DiscountService.DiscountResult.local(discountSession.toResponse(subtotalCents)),
+                    basketVersion);
+            return;
+        }
+
+        // The last result was for a basket that no longer exists: until the new one
+        // arrives the totals carry no discount rather than one the basket may not qualify for
+        updateTotals();
+        if (!discountInFlight) {
+            requestDiscount();
+        }
+    }
+
+    private void requestDiscount() {
+        long version = basketVersion;
+        discountInFlight = true;
+        discountService.calculateDiscountAsync(currentTransaction)
+                .thenAccept(result -> submit(() -> onDiscountResult(version, result)));
+    }
+
+    /**
+     * Applies a discount result as a command, or discards it if the basket has changed since.
+     */
+    private void onDiscountResult(long version, DiscountService.DiscountResult result) {
+        discountInFlight = false;
+
+        if (version != basketVersion) {
+            // Stale: send one request for the basket as it is now
+            if (!currentTransaction.isEmpty()) {
+                requestDiscount();
+            }
+            return;
+        }
+
+        applyDiscount(result, version);
+        queueTotals();
+    }
+
+    private void applyDiscount(DiscountService.DiscountResult result, long version) {
+        currentDiscount = result;
+        discountVersion = version;
+        updateTotals();
 
         // Log discount status if there's an issue
         if (currentDiscount.isSuccessful() &&
@@ -144,257 +412,252 @@ public class RegisterController {
 
 
     public void voidTransaction() {
+        submit(this::doVoidTransaction);
+    }
+
+    private void doVoidTransaction() throws SQLException {
         if (!currentTransaction.isEmpty() || currentTransactionId != -1) {
-            try {
-                if (currentTransactionId == -1) {
-                    currentTransactionId = saveInitialTransaction();
-                }
+            if (currentTransactionId == -1) {
+                currentTransactionId = saveInitialTransaction();
+            }
 
-                journal.logVoidTransaction(currentTransactionId);
-                dbManager.voidTransaction(currentTransactionId, "Voided by cashier");
+            transactionWriter.flush(currentTransactionId);
+            journal.logVoidTransaction(currentTransactionId);
+            journal.flush();
+            dbManager.voidTransaction(currentTransactionId, "Voided by cashier");
+            journal.logCheckpoint();
 
-                clearCurrentTransaction();
-                refreshUI();
-            } catch (SQLException e) {
-                ui.showError("Database error: " + e.getMessage());
-            }
+            clearCurrentTransaction();
         } else {
-            ui.showError("No transaction to void");
+            showError("No transaction to void");
         }
     }
 
     public void suspendTransaction() {
+        submit(this::doSuspendTransaction);
+    }
+
+    private void doSuspendTransaction() throws SQLException {
         if (!currentTransaction.isEmpty()) {
-            try {
-                if (currentTransactionId == -1) {
-                    currentTransactionId = saveInitialTransaction();
-                    journal.logTransactionStart(currentTransactionId);
-                }
+            if (currentTransactionId == -1) {
+                currentTransactionId = saveInitialTransaction();
+                journal.logTransactionStart(currentTransactionId);
+                queueAllLines();
+            }
 
-                saveAllTransactionItems();
-                updateTransactionInDatabase();
-                journal.logSuspendTransaction(currentTransactionId);
-                dbManager.suspendTransaction(currentTransactionId);
+            // Suspended transactions must be fully on disk before they can be resumed
+            queueTotals();
+            transactionWriter.flush(currentTransactionId);
+            journal.logSuspendTransaction(currentTransactionId);
+            journal.flush();
+            dbManager.suspendTransaction(currentTransactionId);
+            journal.logCheckpoint();
 
-                clearCurrentTransaction();
-                refreshUI();
-            } catch (SQLException e) {
-                ui.showError("Database error: " + e.getMessage());
-            }
+            clearCurrentTransaction();
         } else {
-            ui.showError("No items to suspend");
+            showError("No items to suspend");
         }
     }
 
+    /**
+     * Loads the suspended transactions and asks the listener to let the cashier pick
+     * one; the choice comes back through resumeTransaction(int).
+     */
     public void resumeTransaction() {
-        try {
+        submit(() -> {
             List<Integer> suspendedIds = dbManager.getSuspendedTransactions();
 
             if (suspendedIds.isEmpty()) {
-                ui.showError("No suspended transactions available");
+                showError("No suspended transactions available");
                 return;
             }
 
-            if (!currentTransaction.isEmpty()) {
-                // Create styled confirmation panel
-                JPanel confirmPanel = new JPanel(new BorderLayout(10, 15));
-                confirmPanel.setBackground(Color.WHITE);
-                confirmPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
-
-                JLabel titleLabel = new JLabel("⚠️ Current Transaction Active", SwingConstants.CENTER);
-                titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
-                titleLabel.setForeground(new Color(251, 146, 60)); // ACCENT_ORANGE
-
-                JPanel infoPanel = getJPanel();
-
-                confirmPanel.add(titleLabel, BorderLayout.NORTH);
-                confirmPanel.add(infoPanel, BorderLayout.CENTER);
-
-                int confirm = JOptionPane.showConfirmDialog(
-                        ui,
-                        confirmPanel,
-                        "Save Current Transaction?",
-                        JOptionPane.YES_NO_CANCEL_OPTION,
-                        JOptionPane.PLAIN_MESSAGE
-                );
-
-                if (confirm == JOptionPane.YES_OPTION) {
-                    suspendTransaction();
-                } else if (confirm == JOptionPane.CANCEL_OPTION || confirm == JOptionPane.CLOSED_OPTION) {
-                    return;
-                }
+            List<String> descriptions = describeTransactions(suspendedIds);
+            if (listener != null) {
+                listener.onChooseSuspendedTransaction(descriptions, !currentTransaction.isEmpty());
             }
+        });
+    }
 
-            // Create custom selection dialog
-            JPanel selectionPanel = new JPanel(new BorderLayout(10, 15));
-            selectionPanel.setBackground(Color.WHITE);
-            selectionPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
-
-            JLabel titleLabel = new JLabel("▶️ Resume Transaction", SwingConstants.CENTER);
-            titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
-            titleLabel.setForeground(new Color(251, 146, 60)); // ACCENT_ORANGE
-
-            JLabel instructionLabel = new JLabel("Select a suspended transaction to resume:");
-            instructionLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-            instructionLabel.setForeground(new Color(107, 114, 128)); // TEXT_SECONDARY
-            instructionLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 10, 0));
-
-            // Create list of transactions with details
-            DefaultListModel<String> listModel = new DefaultListModel<>();
-            java.text.DecimalFormat df = new java.text.DecimalFormat("#,##0.00");
-            java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("MM/dd/yyyy HH:mm");
-
-            for (Integer id : suspendedIds) {
-                try {
-                    // Get transaction details for better display
-                    Map<String, Object> transData = dbManager.getTransactionById(id);
-                    if (transData != null) {
-                        double total = (Double) transData.get("total");
-                        java.util.Date date = (java.util.Date) transData.get("date");
-
-                        listModel.addElement(String.format("Transaction #%d - $%s - %s",
-                                id, df.format(total), dateFormat.format(date)));
-                    } else {
-                        listModel.addElement("Transaction #" + id);
-                    }
-                } catch (Exception e) {
-                    listModel.addElement("Transaction #" + id);
+    private List<String> describeTransactions(List<Integer> transactionIds) {
+        List<String> descriptions = new ArrayList<>(transactionIds.size());
+        java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("MM/dd/yyyy HH:mm");
+
+        for (Integer id : transactionIds) {
+            try {
+                // Get transaction details for better display
+                Map<String, Object> transData = dbManager.getTransactionById(id);
+                if (transData != null) {
+                    long totalCents = (Long) transData.get("total");
+                    java.util.Date date = (java.util.Date) transData.get("date");
+
+                    descriptions.add(String.format("Transaction #%d - $%s - %s",
+                            id, Money.format(totalCents), dateFormat.format(date)));
+                } else {
+                    descriptions.add("Transaction #" + id);
                 }
+            } catch (Exception e) {
+                descriptions.add("Transaction #" + id);
             }
+        }
+        return descriptions;
+    }
 
-            JList<String> transactionList = new JList<>(listModel);
-            transactionList.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-            transactionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-            transactionList.setSelectedIndex(0);
-            transactionList.setBorder(BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true));
-            transactionList.setFixedCellHeight(40);
-
-            JScrollPane scrollPane = new JScrollPane(transactionList);
-            scrollPane.setPreferredSize(new Dimension(400, 200));
-            scrollPane.setBorder(BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true));
+    /**
+     * Makes a suspended transaction the current one.
+     */
+    public void resumeTransaction(int transactionId) {
+        submit(() -> doResumeTransaction(transactionId));
+    }
 
-            JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
-            contentPanel.setBackground(Color.WHITE);
-            contentPanel.add(instructionLabel, BorderLayout.NORTH);
-            contentPanel.add(scrollPane, BorderLayout.CENTER);
+    private void doResumeTransaction(int transactionId) throws SQLException {
+        Map<String, Object> transData = dbManager.resumeTransaction(transactionId);
 
-            selectionPanel.add(titleLabel, BorderLayout.NORTH);
-            selectionPanel.add(contentPanel, BorderLayout.CENTER);
+        @SuppressWarnings("unchecked")
+        List<TransactionItem> items = (List<TransactionItem>) transData.get("items");
+        loadTransaction(transactionId, items);
 
-            int result = JOptionPane.showConfirmDialog(
-                    ui,
-                    selectionPanel,
-                    "Resume Transaction",
-                    JOptionPane.OK_CANCEL_OPTION,
-                    JOptionPane.PLAIN_MESSAGE
-            );
+        journal.logResumeTransaction(transactionId);
 
-            if (result == JOptionPane.OK_OPTION && transactionList.getSelectedValue() != null) {
-                String selected = transactionList.getSelectedValue();
-                // Extract transaction ID from the formatted string
-                int transactionId = Integer.parseInt(selected.replaceAll("Transaction #(\\d+).*", "$1"));
+        // Recalculate discounts for resumed transaction
+        recalculateDiscount();
+    }
 
-                Map<String, Object> transData = dbManager.resumeTransaction(transactionId);
+    /**
+     * Makes a transaction from the database the current one.
+     */
+    private void loadTransaction(int transactionId, List<TransactionItem> items) {
+        currentTransaction.clear();
+        currentTransaction.addAll(items);
 
-                currentTransaction.clear();
-                @SuppressWarnings("unchecked")
-                List<TransactionItem> items = (List<TransactionItem>) transData.get("items");
-                currentTransaction.addAll(items);
+        subtotalCents = 0;
+        for (TransactionItem item : items) {
+            subtotalCents = Math.addExact(subtotalCents, item.getTotalCents());
+        }
+        currentDiscount = null;
+        updateTotals();
 
-                currentTransactionId = transactionId;
-                isResumedTransaction = true;
+        if (discountSession != null) {
+            discountSession.reset();
+            for (TransactionItem item : items) {
+                trackDiscountDelta(item.getProduct(), item.getQuantity());
+            }
+        }
 
-                journal.logResumeTransaction(transactionId);
+        // New lines continue numbering after the highest line already on file
+        nextLineNumber = 1;
+        for (TransactionItem item : items) {
+            nextLineNumber = Math.max(nextLineNumber, item.getLineNumber() + 1);
+        }
 
-                // Recalculate discounts for resumed transaction
-                recalculateDiscount();
+        currentTransactionId = transactionId;
+        isResumedTransaction = true;
+    }
 
-                refreshUI();
-            }
-        } catch (SQLException e) {
-            ui.showError("Database error: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            ui.showError("Invalid transaction selection");
-        }
+    /**
+     * Replays the journal after an unclean shutdown. Transactions that were finished
+     * in the journal are finished in the database, and a basket that was still open
+     * is reconciled and put back on the register. Call once at startup, before any
+     * other command is submitted, so it runs before any new journal entries are written.
+     */
+    public void recoverFromJournal() {
+        submit(this::doRecoverFromJournal);
     }
 
-    private static JPanel getJPanel() {
-        JPanel infoPanel = new JPanel(new GridLayout(2, 1, 5, 8));
-        infoPanel.setBackground(Color.WHITE);
-        infoPanel.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true),
-                BorderFactory.createEmptyBorder(10, 10, 10, 10)
-        ));
+    private void doRecoverFromJournal() {
+        java.nio.file.Path journalDir = journal.getJournalDirectory();
+        try {
+            JournalRecovery.ScanResult scan = JournalRecovery.scan(journalDir);
+            if (scan.isEmpty()) {
+                return;
+            }
+            System.out.println("Journal recovery: replaying " + scan.getEventsReplayed() +
+                    " events for " + scan.getTransactions().size() + " transaction(s)");
 
-        JLabel info1 = new JLabel("You have items in the current transaction.");
-        info1.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        info1.setForeground(new Color(17, 24, 39));
+            JournalRecovery.RecoveredTransaction open = JournalRecovery.reconcile(scan, dbManager);
+            if (open == null || !open.isOpen()) {
+                journal.logCheckpoint();
+                return;
+            }
 
-        JLabel info2 = new JLabel("Would you like to suspend it before resuming another?");
-        info2.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        info2.setForeground(new Color(17, 24, 39));
+            // The database has every line by now, including those from before a resume
+            // that the journal doesn't mention, so the basket is rebuilt from there
+            int transactionId = open.getTransactionId();
+            loadTransaction(transactionId, dbManager.getTransactionItems(transactionId));
+            System.out.println("Journal recovery: restored open transaction #" + transactionId +
+                    " with " + currentTransaction.size() + " line(s)");
 
-        infoPanel.add(info1);
-        infoPanel.add(info2);
-        return infoPanel;
+            journal.logResumeTransaction(transactionId);
+            recalculateDiscount();
+            queueTotals();
+        } catch (IOException | SQLException e) {
+            System.err.println("Journal recovery failed: " + e.getMessage());
+        }
     }
 
     /**
      * Completes the transaction with the specified payment.
-     * Called from PaymentPanel.
+     * On success, onCompleted is called on the controller's thread with a snapshot
+     * of the sale as it was tendered, taken before the register is cleared.
      */
-    public void completeTransaction(String paymentType, double tendered) {
+    public void completeTransaction(String paymentType, long tenderedCents, Consumer<RegisterView> onCompleted) {
+        submit(() -> doCompleteTransaction(paymentType, tenderedCents, onCompleted));
+    }
+
+    private void doCompleteTransaction(String paymentType, long tenderedCents,
+                                       Consumer<RegisterView> onCompleted) throws SQLException {
         if (currentTransaction.isEmpty()) {
-            ui.showError("No items in transaction");
+            showError("No items in transaction");
             return;
         }
 
-        try {
-            // Ensure discounts are calculated
-            if (currentDiscount == null) {
-                recalculateDiscount();
-            }
-
-            double subtotal = getSubtotal();
-            double discountAmount = getDiscountAmount();
-            double discountedSubtotal = subtotal - discountAmount;
-            double tax = discountedSubtotal * TAX_RATE;
-            double total = discountedSubtotal + tax;
-            double change = tendered - total;
-
-            if (change < 0) {
-                ui.showError("Insufficient payment");
-                return;
-            }
-
-            if (currentTransactionId == -1) {
-                currentTransactionId = saveInitialTransaction();
-                journal.logTransactionStart(currentTransactionId);
-            }
+        // Tender must use a discount for the exact basket, so wait for it here if needed
+        if (currentDiscount == null || discountVersion != basketVersion) {
+            applyDiscount(discountService.calculateDiscount(currentTransaction), basketVersion);
+        } else if (currentDiscount.getStatus() == DiscountService.DiscountResult.Status.LOCAL) {
+            discountService.reconcile(currentTransaction, currentDiscount);
+        }
 
-            saveAllTransactionItems();
-            updateTransactionInDatabase();
+        Totals sold = totals;
+        long changeCents = tenderedCents - sold.getTotalCents();
 
-            // Log to journal
-            journal.logSubtotal(subtotal);
-            if (discountAmount > 0) {
-                journal.logDiscount(discountAmount, getAppliedDiscounts());
-            }
-            journal.logTax(tax);
-            journal.logTotal(total);
-            journal.logPayment(paymentType, tendered, change);
-            journal.logTransactionComplete(currentTransactionId);
+        if (changeCents < 0) {
+            showError("Insufficient payment");
+            return;
+        }
 
-            dbManager.updateTransactionPayment(currentTransactionId, paymentType, tendered, change);
+        if (currentTransactionId == -1) {
+            currentTransactionId = saveInitialTransaction();
+            journal.logTransactionStart(currentTransactionId);
+            queueAllLines();
+        }
 
-            // NOTE: Receipt display is now handled by PaymentPanel
-            // No longer showing payment complete dialog here
+        // Flush pending line writes before recording the payment
+        queueTotals();
+        transactionWriter.flush(currentTransactionId);
 
-            clearCurrentTransaction();
-            refreshUI();
-        } catch (SQLException e) {
-            ui.showError("Database error: " + e.getMessage());
+        // Log to journal
+        journal.logSubtotal(currentTransactionId, sold.getSubtotalCents());
+        if (sold.getDiscountCents() > 0) {
+            journal.logDiscount(currentTransactionId, sold.getDiscountCents(), appliedDiscounts());
         }
+        journal.logTax(currentTransactionId, sold.getTaxCents());
+        journal.logTotal(currentTransactionId, sold.getTotalCents());
+        journal.logPayment(currentTransactionId, paymentType, tenderedCents, changeCents);
+        journal.logTransactionComplete(currentTransactionId);
+        // The outcome must be on disk before the database has it, or a crash in between
+        // leaves a closed sale that recovery would put back on the register
+        journal.flush();
+
+        dbManager.updateTransactionPayment(currentTransactionId, paymentType, tenderedCents, changeCents);
+        journal.logCheckpoint();
+
+        // The receipt is shown by PaymentPanel from this snapshot
+        RegisterView sale = RegisterView.of(currentTransactionId, isResumedTransaction, currentTransaction,
+                sold, appliedDiscounts(), false);
+        onCompleted.accept(sale);
+
+        clearCurrentTransaction();
     }
 
     /**
@@ -403,110 +666,112 @@ public class RegisterController {
     private void clearCurrentTransaction() {
         currentTransaction.clear();
         currentTransactionId = -1;
+        nextLineNumber = 1;
         isResumedTransaction = false;
         currentDiscount = null;
+        subtotalCents = 0;
+        totals = Totals.ZERO;
+        // Invalidate any discount request still in flight for the old basket
+        basketVersion++;
+        discountVersion = -1;
+        if (discountSession != null) {
+            discountSession.reset();
+        }
     }
 
     private int saveInitialTransaction() throws SQLException {
-        double subtotal = getSubtotal();
-        double tax = getTax();
-        double total = getTotal();
-        return dbManager.saveTransaction(subtotal, tax, total);
+        return dbManager.saveTransaction(totals.getSubtotalCents(), totals.getTaxCents(), totals.getTotalCents());
     }
 
-    private void saveAllTransactionItems() throws SQLException {
-        if (currentTransactionId != -1) {
-            dbManager.clearTransactionItems(currentTransactionId);
-            for (TransactionItem item : currentTransaction) {
-                dbManager.saveTransactionItem(currentTransactionId, item);
-            }
+    /**
+     * Queues every line of a transaction that was created after its items were added.
+     */
+    private void queueAllLines() {
+        for (TransactionItem item : currentTransaction) {
+            transactionWriter.submit(TransactionChange.addLine(currentTransactionId, item));
         }
     }
 
-    private void updateTransactionInDatabase() throws SQLException {
+    private void queueTotals() {
         if (currentTransactionId != -1) {
-            saveAllTransactionItems();
-            double subtotal = getSubtotal();
-            double tax = getTax();
-            double total = getTotal();
-            dbManager.updateTransactionTotals(currentTransactionId, subtotal, tax, total);
+            transactionWriter.submit(TransactionChange.totals(currentTransactionId, totals));
         }
     }
 
-    public void showTransactionHistory() {
+    /**
+     * Runs the commands already queued, then writes any queued transaction changes
+     * and stops the background writer.
+     */
+    public void close() {
+        commands.shutdown();
         try {
-            List<Map<String, Object>> history = dbManager.getTransactionHistory(true, true);
-            ui.showTransactionHistory(history);
-        } catch (SQLException e) {
-            ui.showError("Database error: " + e.getMessage());
+            if (!commands.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Register commands still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        transactionWriter.close();
     }
 
-    private void refreshUI() {
-        ui.clearTable();
-        for (TransactionItem item : currentTransaction) {
-            ui.addItemToTable(
-                    item.getProduct().getUpc(),
-                    item.getProduct().getName(),
-                    item.getProduct().getPrice(),
-                    item.getQuantity(),
-                    item.getTotal()
-            );
-        }
-
-        // Update totals with discount info
-        ui.updateTotals(getSubtotal(), getDiscountAmount(), getTax(), getTotal());
+    public void showTransactionHistory() {
+        submit(() -> {
+            List<Map<String, Object>> history = dbManager.getTransactionHistory(true, true);
+            if (listener != null) {
+                listener.onTransactionHistory(history);
+            }
+        });
+    }
 
-        // Update discount status display
-        if (currentDiscount != null && currentDiscount.hasDiscount()) {
-            ui.setDiscountStatus(currentDiscount.getAppliedDiscounts());
-        } else {
-            ui.setDiscountStatus(null);
-        }
+    // ==================== Totals (command thread) ====================
 
-        if (currentTransactionId != -1) {
-            String status = isResumedTransaction ? " (Resumed)" : "";
-            ui.setTransactionStatus("Transaction #" + currentTransactionId + status);
-        } else {
-            ui.setTransactionStatus("");
-        }
+    /**
+     * Adds a line change to the running subtotal. Called for every add, void and
+     * quantity change, so the subtotal never needs the basket walked again.
+     */
+    private void adjustSubtotal(long deltaCents) {
+        subtotalCents = Math.addExact(subtotalCents, deltaCents);
+        updateTotals();
     }
 
-    private TransactionItem findItemByUPC(String upc) {
-        return currentTransaction.stream()
-                .filter(item -> item.getProduct().getUpc().equals(upc))
-                .findFirst()
-                .orElse(null);
+    /**
+     * Rebuilds the totals snapshot from the running subtotal and the discount, if the
+     * discount was calculated for the basket as it is now.
+     */
+    private void updateTotals() {
+        long discountCents = currentDiscount != null && isDiscountCurrent() ? currentDiscount.getDiscountCents() : 0;
+        totals = Totals.of(subtotalCents, discountCents, TAX_RATE_BASIS_POINTS);
     }
 
-    // ==================== Getter Methods ====================
-
-    public double getSubtotal() {
-        return currentTransaction.stream()
-                .mapToDouble(TransactionItem::getTotal)
-                .sum();
+    private boolean isDiscountCurrent() {
+        return discountVersion == basketVersion;
     }
 
-    public double getDiscountAmount() {
-        return currentDiscount != null ? currentDiscount.getDiscountAmount() : 0.0;
+    private List<String> appliedDiscounts() {
+        return currentDiscount != null ? currentDiscount.getAppliedDiscounts() : List.of();
     }
 
-    public List<String> getAppliedDiscounts() {
-        return currentDiscount != null ? currentDiscount.getAppliedDiscounts() : List.of();
+
+    // ==================== Getter Methods ====================
+    // These read the latest published snapshot and may be called from any thread.
+
+    /**
+     * Returns the most recently published view of the register.
+     */
+    public RegisterView getView() {
+        return view;
     }
 
-    public double getTax() {
-        double discountedSubtotal = getSubtotal() - getDiscountAmount();
-        return discountedSubtotal * TAX_RATE;
+    public Totals getTotals() {
+        return view.getTotals();
     }
 
-    public double getTotal() {
-        double discountedSubtotal = getSubtotal() - getDiscountAmount();
-        return discountedSubtotal + getTax();
+    public List<String> getAppliedDiscounts() {
+        return view.getAppliedDiscounts();
     }
 
     public List<TransactionItem> getCurrentTransaction() {
-        return new ArrayList<>(currentTransaction);
+        return view.getLines();
     }
 
     /**
@@ -514,6 +779,6 @@ public class RegisterController {
      * Returns -1 if no transaction is active.
      */
     public int getCurrentTransactionId() {
-        return currentTransactionId;
+        return view.getTransactionId();
     }
-}
\ No newline at end of file
+}
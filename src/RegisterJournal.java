@@ -0,0 +1,290 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One register's journal on the Virtual Journal server.
+ *
+ * <registerId>.journal holds the register's lines exactly as received ("seq|line"),
+ * in sequence order. Lines that arrive ahead of a gap (new lines overtaking a resent
+ * backlog) are held until the gap fills; duplicates are dropped. accept() is called
+ * by the server's selector thread and only writes to the page cache; commit() is
+ * called by the commit thread, forces everything accepted so far with one force()
+ * and returns the sequence number that may now be acknowledged.
+ *
+ * <registerId>.epoch holds the register's spool epoch, so the server can tell
+ * when a register's sequence numbers started over.
+ */
+public class RegisterJournal implements Closeable {
+
+    /**
+     * Receives each line as it is appended, in sequence order.
+     */
+    public interface LineListener {
+        void onLine(RegisterJournal journal, byte[] line, int offset, int length);
+    }
+
+    public enum AcceptResult {
+        APPENDED,
+        HELD,
+        DUPLICATE
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_HELD_LINES = 100_000;
+
+    private final String registerId;
+    private final byte[] registerIdBytes;
+    private final Path epochPath;
+    private final FileChannel channel;
+    private final LineListener listener;
+
+    // Selector thread
+    private long epoch;
+    private long receivedSeq;
+    private final TreeMap<Long, byte[]> held = new TreeMap<>();
+
+    // Guarded by this: lines accepted but not yet written to the channel
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private long bufferedSeq;
+    private boolean unforced;
+
+    private volatile long committedSeq;
+
+    /**
+     * Opens (or creates) the journal for a register and finds the last sequence
+     * number it holds. A partial last line left by a crash is cut off.
+     */
+    public RegisterJournal(Path directory, String registerId, LineListener listener) throws IOException {
+        this.registerId = registerId;
+        this.registerIdBytes = registerId.getBytes(StandardCharsets.UTF_8);
+        this.epochPath = directory.resolve(registerId + ".epoch");
+        this.listener = listener;
+
+        channel = FileChannel.open(directory.resolve(registerId + ".journal"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        receivedSeq = lastSeqInFile();
+        bufferedSeq = receivedSeq;
+        committedSeq = receivedSeq;
+
+        if (Files.exists(epochPath)) {
+            try {
+                epoch = Long.parseLong(Files.readString(epochPath, StandardCharsets.UTF_8).trim());
+            } catch (NumberFormatException e) {
+                epoch = 0;
+            }
+        }
+    }
+
+    /**
+     * Register ids become file names, so only letters, digits, '.', '_' and '-' are allowed.
+     */
+    public static boolean isValidRegisterId(String registerId) {
+        return !registerId.isEmpty() && registerId.length() <= 64
+                && registerId.matches("[A-Za-z0-9._-]+") && !registerId.startsWith(".");
+    }
+
+    private long lastSeqInFile() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+
+        int tailSize = (int) Math.min(size, 64 * 1024);
+        ByteBuffer tail = ByteBuffer.allocate(tailSize);
+        channel.read(tail, size - tailSize);
+        byte[] bytes = tail.array();
+
+        int lastNewline = tailSize - 1;
+        while (lastNewline >= 0 && bytes[lastNewline] != '\n') {
+            lastNewline--;
+        }
+        if (lastNewline < tailSize - 1) {
+            long validSize = size - tailSize + lastNewline + 1;
+            System.err.println("Journal " + registerId + ": discarding partial line at offset " + validSize);
+            channel.truncate(validSize);
+        }
+        if (lastNewline < 0) {
+            return 0;
+        }
+
+        int lineStart = lastNewline - 1;
+        while (lineStart >= 0 && bytes[lineStart] != '\n') {
+            lineStart--;
+        }
+        long seq = parseSeq(bytes, lineStart + 1, lastNewline);
+        return Math.max(seq, 0);
+    }
+
+    // ==================== Receiving (selector thread) ====================
+
+    /**
+     * Handles a register's HELLO. A new epoch means its sequence numbers started over;
+     * otherwise lines before firstSeq are ones the register no longer has, so the
+     * journal moves past them instead of waiting for them forever.
+     *
+     * @return the sequence number to acknowledge in reply
+     */
+    public long hello(long helloEpoch, long firstSeq) throws IOException {
+        if (helloEpoch != epoch) {
+            if (epoch != 0) {
+                System.out.println("Register " + registerId + " started a new sequence (epoch " + helloEpoch + ")");
+            }
+            epoch = helloEpoch;
+            Files.writeString(epochPath, helloEpoch + "\n", StandardCharsets.UTF_8);
+            held.clear();
+            receivedSeq = firstSeq - 1;
+            synchronized (this) {
+                bufferedSeq = receivedSeq;
+                if (writeBuffer.position() == 0 && !unforced) {
+                    committedSeq = receivedSeq;
+                }
+            }
+        } else if (firstSeq - 1 > receivedSeq) {
+            held.headMap(firstSeq).clear();
+            receivedSeq = firstSeq - 1;
+            drainHeld();
+        }
+        return Math.min(committedSeq, receivedSeq);
+    }
+
+    /**
+     * Accepts one line (without the newline), whose first field is its sequence number.
+     */
+    public AcceptResult accept(long seq, byte[] line, int offset, int length) throws IOException {
+        if (seq <= receivedSeq || held.containsKey(seq)) {
+            return AcceptResult.DUPLICATE;
+        }
+        if (seq != receivedSeq + 1) {
+            if (held.size() >= MAX_HELD_LINES) {
+                throw new IOException("too many out-of-order lines from " + registerId);
+            }
+            held.put(seq, Arrays.copyOfRange(line, offset, offset + length));
+            return AcceptResult.HELD;
+        }
+
+        append(seq, line, offset, length);
+        drainHeld();
+        return AcceptResult.APPENDED;
+    }
+
+    private void drainHeld() throws IOException {
+        while (!held.isEmpty() && held.firstKey() <= receivedSeq + 1) {
+            Map.Entry<Long, byte[]> next = held.pollFirstEntry();
+            if (next.getKey() == receivedSeq + 1) {
+                append(next.getKey(), next.getValue(), 0, next.getValue().length);
+            }
+        }
+    }
+
+    private void append(long seq, byte[] line, int offset, int length) throws IOException {
+        synchronized (this) {
+            if (writeBuffer.remaining() < length + 1) {
+                writeOut();
+            }
+            if (writeBuffer.remaining() < length + 1) {
+                // Longer than the whole buffer; write it directly
+                channel.write(ByteBuffer.wrap(line, offset, length));
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+                unforced = true;
+            } else {
+                writeBuffer.put(line, offset, length).put((byte) '\n');
+            }
+            bufferedSeq = seq;
+        }
+        receivedSeq = seq;
+        listener.onLine(this, line, offset, length);
+    }
+
+    // Caller holds the lock
+    private void writeOut() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+        unforced = true;
+    }
+
+    /**
+     * Returns true if lines have been accepted that aren't committed yet.
+     */
+    public synchronized boolean hasUncommitted() {
+        return writeBuffer.position() > 0 || unforced;
+    }
+
+    // ==================== Group commit (commit thread) ====================
+
+    /**
+     * Writes and forces everything accepted so far.
+     *
+     * @return the new committed sequence number, or -1 if there was nothing to commit
+     */
+    public long commit() throws IOException {
+        long seq;
+        synchronized (this) {
+            if (writeBuffer.position() == 0 && !unforced) {
+                return -1;
+            }
+            writeOut();
+            unforced = false;
+            seq = bufferedSeq;
+        }
+        // Outside the lock so the selector thread can keep accepting lines meanwhile
+        channel.force(false);
+        committedSeq = seq;
+        return seq;
+    }
+
+    // ==================== Status ====================
+
+    public String getRegisterId() {
+        return registerId;
+    }
+
+    public byte[] getRegisterIdBytes() {
+        return registerIdBytes;
+    }
+
+    public long getReceivedSeq() {
+        return receivedSeq;
+    }
+
+    public long getCommittedSeq() {
+        return committedSeq;
+    }
+
+    public int getHeldCount() {
+        return held.size();
+    }
+
+    /**
+     * Parses the sequence number at the start of a "seq|line" line, or -1 if there isn't one.
+     */
+    public static long parseSeq(byte[] line, int offset, int end) {
+        long seq = 0;
+        int i = offset;
+        while (i < end && line[i] >= '0' && line[i] <= '9' && i - offset < 19) {
+            seq = seq * 10 + (line[i] - '0');
+            i++;
+        }
+        if (i == offset || i >= end || line[i] != '|') {
+            return -1;
+        }
+        return seq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        commit();
+        channel.close();
+    }
+}
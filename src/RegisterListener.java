@@ -0,0 +1,28 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives what RegisterController has to show the cashier. Methods are called on the
+ * controller's command thread, one at a time and in order, so they must return quickly
+ * and must not block on the controller. A Swing implementation hands the work to the EDT.
+ */
+public interface RegisterListener {
+
+    /**
+     * Called after every command with a snapshot of the register.
+     */
+    void onView(RegisterView view);
+
+    void onError(String message);
+
+    /**
+     * Asks the cashier to pick a suspended transaction. The choice is passed back
+     * with RegisterController.resumeTransaction(int); basketActive means the current
+     * basket has lines that would be replaced.
+     */
+    default void onChooseSuspendedTransaction(List<String> descriptions, boolean basketActive) {
+    }
+
+    default void onTransactionHistory(List<Map<String, Object>> history) {
+    }
+}
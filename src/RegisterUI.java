@@ -3,12 +3,14 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main UI frame for the register application.
  * Uses CardLayout to switch between Transaction and Payment views.
+ * Listens to the controller and moves everything it reports onto the EDT.
  */
-public class RegisterUI extends JFrame {
+public class RegisterUI extends JFrame implements RegisterListener {
 
     // View identifiers
     private static final String TRANSACTION_VIEW = "TRANSACTION";
@@ -29,6 +31,10 @@ public class RegisterUI extends JFrame {
     private TransactionPanel transactionPanel;
     private PaymentPanel paymentPanel;
 
+    // Latest view from the controller, and whether an EDT update for it is already queued
+    private volatile RegisterView latestView = RegisterView.EMPTY;
+    private final AtomicBoolean viewUpdateQueued = new AtomicBoolean(false);
+
     public RegisterUI(RegisterController controller) {
         this.controller = controller;
         initializeUI();
@@ -103,24 +109,14 @@ public class RegisterUI extends JFrame {
 
     // ==================== Public Methods (delegated to panels) ====================
 
-    public void addItemToTable(String upc, String desc, double price, int qty, double total) {
-        transactionPanel.addItemToTable(upc, desc, price, qty, total);
-    }
-
-    public void clearTable() {
-        transactionPanel.clearTable();
-    }
-
-    public void updateTotals(double subtotal, double discount, double tax, double total) {
-        transactionPanel.updateTotals(subtotal, discount, tax, total);
-    }
-
-    public void setDiscountStatus(List<String> appliedDiscounts) {
-        transactionPanel.setDiscountStatus(appliedDiscounts);
-    }
-
-    public void setTransactionStatus(String status) {
-        transactionPanel.setTransactionStatus(status);
+    /**
+     * Renders a snapshot published by the controller. Called on the EDT.
+     */
+    public void showView(RegisterView view) {
+        transactionPanel.showView(view);
+        if (isPaymentViewVisible()) {
+            paymentPanel.refresh();
+        }
     }
 
     public void showError(String message) {
@@ -142,6 +138,150 @@ public class RegisterUI extends JFrame {
         dialog.setVisible(true);
     }
 
+    // ==================== RegisterListener (controller thread) ====================
+
+    /**
+     * Schedules one EDT update for the newest view. If commands finish faster than
+     * the EDT repaints, intermediate views are skipped and only the newest is rendered.
+     */
+    @Override
+    public void onView(RegisterView view) {
+        latestView = view;
+        if (viewUpdateQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                viewUpdateQueued.set(false);
+                showView(latestView);
+            });
+        }
+    }
+
+    @Override
+    public void onError(String message) {
+        SwingUtilities.invokeLater(() -> showError(message));
+    }
+
+    @Override
+    public void onChooseSuspendedTransaction(List<String> descriptions, boolean basketActive) {
+        SwingUtilities.invokeLater(() -> chooseSuspendedTransaction(descriptions, basketActive));
+    }
+
+    @Override
+    public void onTransactionHistory(List<Map<String, Object>> history) {
+        SwingUtilities.invokeLater(() -> showTransactionHistory(history));
+    }
+
+    // ==================== Resume Dialog ====================
+
+    // Runs on the EDT
+    private void chooseSuspendedTransaction(List<String> descriptions, boolean basketActive) {
+        if (basketActive) {
+            // Create styled confirmation panel
+            JPanel confirmPanel = new JPanel(new BorderLayout(10, 15));
+            confirmPanel.setBackground(Color.WHITE);
+            confirmPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+            JLabel titleLabel = new JLabel("⚠️ Current Transaction Active", SwingConstants.CENTER);
+            titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
+            titleLabel.setForeground(new Color(251, 146, 60)); // ACCENT_ORANGE
+
+            JPanel infoPanel = getJPanel();
+
+            confirmPanel.add(titleLabel, BorderLayout.NORTH);
+            confirmPanel.add(infoPanel, BorderLayout.CENTER);
+
+            int confirm = JOptionPane.showConfirmDialog(
+                    this,
+                    confirmPanel,
+                    "Save Current Transaction?",
+                    JOptionPane.YES_NO_CANCEL_OPTION,
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (confirm == JOptionPane.YES_OPTION) {
+                controller.suspendTransaction();
+            } else if (confirm == JOptionPane.CANCEL_OPTION || confirm == JOptionPane.CLOSED_OPTION) {
+                return;
+            }
+        }
+
+        // Create custom selection dialog
+        JPanel selectionPanel = new JPanel(new BorderLayout(10, 15));
+        selectionPanel.setBackground(Color.WHITE);
+        selectionPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JLabel titleLabel = new JLabel("▶️ Resume Transaction", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        titleLabel.setForeground(new Color(251, 146, 60)); // ACCENT_ORANGE
+
+        JLabel instructionLabel = new JLabel("Select a suspended transaction to resume:");
+        instructionLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        instructionLabel.setForeground(new Color(107, 114, 128)); // TEXT_SECONDARY
+        instructionLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 10, 0));
+
+        // Create list of transactions with details
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        descriptions.forEach(listModel::addElement);
+
+        JList<String> transactionList = new JList<>(listModel);
+        transactionList.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        transactionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        transactionList.setSelectedIndex(0);
+        transactionList.setBorder(BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true));
+        transactionList.setFixedCellHeight(40);
+
+        JScrollPane scrollPane = new JScrollPane(transactionList);
+        scrollPane.setPreferredSize(new Dimension(400, 200));
+        scrollPane.setBorder(BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true));
+
+        JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
+        contentPanel.setBackground(Color.WHITE);
+        contentPanel.add(instructionLabel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+
+        selectionPanel.add(titleLabel, BorderLayout.NORTH);
+        selectionPanel.add(contentPanel, BorderLayout.CENTER);
+
+        int result = JOptionPane.showConfirmDialog(
+                this,
+                selectionPanel,
+                "Resume Transaction",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE
+        );
+
+        if (result == JOptionPane.OK_OPTION && transactionList.getSelectedValue() != null) {
+            String selected = transactionList.getSelectedValue();
+            try {
+                // Extract transaction ID from the formatted string
+                int transactionId = Integer.parseInt(selected.replaceAll("Transaction #(\\d+).*", "$1"));
+                controller.resumeTransaction(transactionId);
+            } catch (NumberFormatException e) {
+                showError("Invalid transaction selection");
+            }
+        }
+    }
+
+    private static JPanel getJPanel() {
+        JPanel infoPanel = new JPanel(new GridLayout(2, 1, 5, 8));
+        infoPanel.setBackground(Color.WHITE);
+        infoPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(new Color(229, 231, 235), 1, true),
+                BorderFactory.createEmptyBorder(10, 10, 10, 10)
+        ));
+
+        JLabel info1 = new JLabel("You have items in the current transaction.");
+        info1.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        info1.setForeground(new Color(17, 24, 39));
+
+        JLabel info2 = new JLabel("Would you like to suspend it before resuming another?");
+        info2.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        info2.setForeground(new Color(17, 24, 39));
+
+        infoPanel.add(info1);
+        infoPanel.add(info2);
+        return infoPanel;
+    }
+
     // ==================== Helper Methods ====================
 
     /**
@@ -177,8 +317,9 @@ public class RegisterUI extends JFrame {
                 if (!scanBuffer.isEmpty()) {
                     String scannedUPC = scanBuffer.toString().trim();
                     scanBuffer.setLength(0);
+                    // Queued right away; the controller batches scans that arrive together
+                    controller.addItem(scannedUPC, 1);
                     SwingUtilities.invokeLater(() -> {
-                        controller.addItem(scannedUPC, 1);
                         transactionPanel.flashUpcField(scannedUPC);
                         transactionPanel.getQtyInput().setText("1");
                     });
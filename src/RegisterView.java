@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the register state, published by RegisterController after
+ * every command. The UI only reads snapshots, so it never touches controller state
+ * that the command thread may be changing.
+ */
+public final class RegisterView {
+
+    public static final RegisterView EMPTY = new RegisterView(-1, false, List.of(), Totals.ZERO, List.of(), false);
+
+    private final int transactionId;
+    private final boolean resumed;
+    private final List<TransactionItem> lines;
+    private final Totals totals;
+    private final List<String> appliedDiscounts;
+    private final boolean discountPending;
+
+    private RegisterView(int transactionId, boolean resumed, List<TransactionItem> lines, Totals totals,
+                         List<String> appliedDiscounts, boolean discountPending) {
+        this.transactionId = transactionId;
+        this.resumed = resumed;
+        this.lines = lines;
+        this.totals = totals;
+        this.appliedDiscounts = appliedDiscounts;
+        this.discountPending = discountPending;
+    }
+
+    /**
+     * Takes a snapshot, copying the lines so later changes to the basket don't show through.
+     */
+    public static RegisterView of(int transactionId, boolean resumed, List<TransactionItem> items, Totals totals,
+                                  List<String> appliedDiscounts, boolean discountPending) {
+        List<TransactionItem> copies = new ArrayList<>(items.size());
+        for (TransactionItem item : items) {
+            copies.add(new TransactionItem(item.getLineNumber(), item.getProduct(), item.getQuantity()));
+        }
+        return new RegisterView(transactionId, resumed, Collections.unmodifiableList(copies),
+                totals, appliedDiscounts != null ? List.copyOf(appliedDiscounts) : List.of(), discountPending);
+    }
+
+    /**
+     * Returns the transaction ID, or -1 if no transaction has been started.
+     */
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Returns the basket lines in display order. The list is read-only and the
+     * items are copies; modifying them has no effect on the register.
+     */
+    public List<TransactionItem> getLines() {
+        return lines;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public Totals getTotals() {
+        return totals;
+    }
+
+    public List<String> getAppliedDiscounts() {
+        return appliedDiscounts;
+    }
+
+    /**
+     * True while the discount for the basket as it is now hasn't come back yet.
+     * The totals then carry no discount rather than one for an earlier basket.
+     */
+    public boolean isDiscountPending() {
+        return discountPending;
+    }
+
+    /**
+     * Returns the status line text, e.g. "Transaction #12 (Resumed)", or "" when idle.
+     */
+    public String getStatusText() {
+        if (transactionId == -1) {
+            return "";
+        }
+        return "Transaction #" + transactionId + (resumed ? " (Resumed)" : "");
+    }
+}
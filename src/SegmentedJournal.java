@@ -0,0 +1,252 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary journal (see JournalCodec) stored as a sequence of fixed-size,
+ * memory-mapped segment files: journal-000001.seg, journal-000002.seg, ...
+ *
+ * Records are encoded straight into the mapped segment. Nothing reaches the disk
+ * until sync(), which forces only the bytes appended since the previous sync, so
+ * the caller can group-commit many records with one force(). When a segment is
+ * full the journal rolls to the next one and deletes closed segments older than
+ * the retention period.
+ *
+ * Not thread-safe; owned by the journal writer thread.
+ */
+public class SegmentedJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long segmentNumber;
+    // Bytes of the current segment already forced to disk
+    private int syncedPosition;
+
+    private long recordsWritten;
+    private long syncCount;
+
+    /**
+     * Opens the journal in the directory, continuing the newest segment if there is one.
+     *
+     * @param segmentSize     size of each segment file in bytes; a segment is mapped in one
+     *                        piece, so it must be under 2 GB
+     * @param retentionMillis how long closed segments are kept; 0 keeps them forever
+     */
+    public SegmentedJournal(Path directory, long segmentSize, long retentionMillis) throws IOException {
+        if (segmentSize < JournalCodec.FILE_HEADER_SIZE + JournalCodec.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size too large: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        this.retentionMillis = retentionMillis;
+
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openNewSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openExistingSegment(last, segmentNumber(last));
+        }
+        applyRetention();
+    }
+
+    /**
+     * Returns the segment files in the directory, oldest first.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // Zero-padded numbers sort in order
+        segments.sort(null);
+        return segments;
+    }
+
+    // ==================== Writing ====================
+
+    /**
+     * Encodes the event into the current segment, rolling to a new segment if it is full.
+     * The record is not durable until the next sync().
+     */
+    public void append(JournalEvent event) throws IOException {
+        if (mapped.remaining() < JournalCodec.MAX_RECORD_SIZE) {
+            roll();
+        }
+        JournalCodec.encode(event, mapped, crc);
+        recordsWritten++;
+    }
+
+    /**
+     * Group commit: forces everything appended since the last sync to disk.
+     */
+    public void sync() {
+        int position = mapped.position();
+        if (position > syncedPosition) {
+            mapped.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+            syncCount++;
+        }
+    }
+
+    /**
+     * Returns true if records have been appended since the last sync.
+     */
+    public boolean hasUnsyncedData() {
+        return mapped.position() > syncedPosition;
+    }
+
+    private void roll() throws IOException {
+        sync();
+        closeSegment();
+        openNewSegment(segmentNumber + 1);
+        applyRetention();
+    }
+
+    // ==================== Segments ====================
+
+    private void openNewSegment(long number) throws IOException {
+        Path path = segmentPath(number);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Mapping past the end grows the file to the full segment size
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentNumber = number;
+
+        JournalCodec.writeFileHeader(mapped);
+        mapped.force(0, JournalCodec.FILE_HEADER_SIZE);
+        syncedPosition = mapped.position();
+    }
+
+    private void openExistingSegment(Path path, long number) throws IOException {
+        // Find where the valid records end
+        long end;
+        JournalCodec.DecodeStatus status;
+        try (JournalReader reader = new JournalReader(path)) {
+            JournalEvent event = new JournalEvent();
+            while (reader.next(event)) {
+                // Skip to the end of valid data
+            }
+            end = reader.getPosition();
+            status = reader.getStatus();
+        } catch (IOException e) {
+            // Unreadable header - set it aside and start a fresh segment
+            Path damaged = path.resolveSibling(path.getFileName() + ".damaged");
+            Files.move(path, damaged);
+            System.err.println("Journal segment " + path + " is unreadable, moved to " + damaged);
+            openNewSegment(number + 1);
+            return;
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), segmentSize);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentNumber = number;
+
+        if (status == JournalCodec.DecodeStatus.CORRUPT || status == JournalCodec.DecodeStatus.TRUNCATED) {
+            System.err.println("Journal " + path + ": discarding damaged tail at offset " + end);
+            // Zero the tail so the damaged bytes can't be misread after new records
+            for (int i = (int) end; i < mapped.limit(); i++) {
+                mapped.put(i, (byte) 0);
+            }
+            mapped.force();
+        }
+
+        mapped.position((int) end);
+        syncedPosition = (int) end;
+        if (mapped.remaining() < JournalCodec.MAX_RECORD_SIZE) {
+            roll();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        mapped = null;
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Deletes closed segments whose last write is older than the retention period.
+     */
+    private void applyRetention() {
+        if (retentionMillis <= 0) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        try {
+            for (Path segment : listSegments(directory)) {
+                if (segmentNumber(segment) >= segmentNumber) {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(segment).toMillis() < cutoff) {
+                    Files.delete(segment);
+                    System.out.println("Deleted expired journal segment " + segment.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error applying journal retention: " + e.getMessage());
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // ==================== Status ====================
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            sync();
+            closeSegment();
+        }
+    }
+}
@@ -7,6 +7,8 @@ import java.util.Properties;
 /**
  * Configuration for the Virtual Journal socket client.
  * Allows easy configuration of server IP and port.
+ * Also holds the local journal settings (vj.journal.*) and the
+ * store-and-forward spool settings (vj.spool.*).
  */
 public class SocketClientConfig {
 
@@ -17,6 +19,15 @@ public class SocketClientConfig {
     private static final int DEFAULT_READ_TIMEOUT = 300000;
     private static final int DEFAULT_RETRY_ATTEMPTS = 3;
     private static final int DEFAULT_RETRY_DELAY = 2000;
+    private static final String DEFAULT_JOURNAL_DIR = "journal";
+    private static final int DEFAULT_JOURNAL_SEGMENT_MB = 16;
+    // A segment is memory-mapped in one piece, which Java limits to just under 2 GB
+    private static final int MAX_JOURNAL_SEGMENT_MB = 2047;
+    private static final int DEFAULT_JOURNAL_RETENTION_DAYS = 30;
+    private static final int DEFAULT_JOURNAL_SYNC_INTERVAL = 1000;
+    private static final String DEFAULT_SPOOL_DIR = "spool";
+    private static final int DEFAULT_SPOOL_MAX_MB = 256;
+    private static final int DEFAULT_SPOOL_DRAIN_RATE = 1024;
 
     private String serverHost;
     private int serverPort;
@@ -26,6 +37,14 @@ public class SocketClientConfig {
     private int retryDelay;
     private boolean enabled;
     private String registerId;
+    private String journalDir;
+    private int journalSegmentMb;
+    private int journalRetentionDays;
+    private int journalSyncInterval;
+    private boolean journalConsole;
+    private String spoolDir;
+    private int spoolMaxMb;
+    private int spoolDrainRate;
 
     public SocketClientConfig() {
         loadConfiguration();
@@ -48,8 +67,17 @@ public class SocketClientConfig {
             retryDelay = Integer.parseInt(props.getProperty("vj.retry.delay", String.valueOf(DEFAULT_RETRY_DELAY)));
             enabled = Boolean.parseBoolean(props.getProperty("vj.enabled", "true"));
             registerId = props.getProperty("vj.register.id", "REG-001");
+            journalDir = props.getProperty("vj.journal.dir", DEFAULT_JOURNAL_DIR);
+            journalSegmentMb = Integer.parseInt(props.getProperty("vj.journal.segment.mb", String.valueOf(DEFAULT_JOURNAL_SEGMENT_MB)));
+            journalRetentionDays = Integer.parseInt(props.getProperty("vj.journal.retention.days", String.valueOf(DEFAULT_JOURNAL_RETENTION_DAYS)));
+            journalSyncInterval = Integer.parseInt(props.getProperty("vj.journal.sync.interval", String.valueOf(DEFAULT_JOURNAL_SYNC_INTERVAL)));
+            journalConsole = Boolean.parseBoolean(props.getProperty("vj.journal.console", "true"));
+            spoolDir = props.getProperty("vj.spool.dir", DEFAULT_SPOOL_DIR);
+            spoolMaxMb = Integer.parseInt(props.getProperty("vj.spool.max.mb", String.valueOf(DEFAULT_SPOOL_MAX_MB)));
+            spoolDrainRate = Integer.parseInt(props.getProperty("vj.spool.drain.rate", String.valueOf(DEFAULT_SPOOL_DRAIN_RATE)));
 
             System.out.println("Loaded configuration from " + CONFIG_FILE);
+            validate();
 
         } catch (IOException e) {
             System.out.println("Configuration file not found, creating default: " + CONFIG_FILE);
@@ -61,6 +89,17 @@ public class SocketClientConfig {
         }
     }
 
+    /**
+     * Rejects settings the register cannot run with. Unlike a malformed number these
+     * aren't replaced with defaults: without a usable journal the register must not start.
+     */
+    private void validate() {
+        if (journalSegmentMb < 1 || journalSegmentMb > MAX_JOURNAL_SEGMENT_MB) {
+            throw new IllegalArgumentException("vj.journal.segment.mb must be between 1 and "
+                    + MAX_JOURNAL_SEGMENT_MB + ", got " + journalSegmentMb);
+        }
+    }
+
     /**
      * Sets default configuration values.
      */
@@ -73,6 +112,14 @@ public class SocketClientConfig {
         retryDelay = DEFAULT_RETRY_DELAY;
         enabled = true;
         registerId = "REG-001";
+        journalDir = DEFAULT_JOURNAL_DIR;
+        journalSegmentMb = DEFAULT_JOURNAL_SEGMENT_MB;
+        journalRetentionDays = DEFAULT_JOURNAL_RETENTION_DAYS;
+        journalSyncInterval = DEFAULT_JOURNAL_SYNC_INTERVAL;
+        journalConsole = true;
+        spoolDir = DEFAULT_SPOOL_DIR;
+        spoolMaxMb = DEFAULT_SPOOL_MAX_MB;
+        spoolDrainRate = DEFAULT_SPOOL_DRAIN_RATE;
     }
 
     /**
@@ -88,6 +135,14 @@ public class SocketClientConfig {
         props.setProperty("vj.retry.delay", String.valueOf(retryDelay));
         props.setProperty("vj.enabled", String.valueOf(enabled));
         props.setProperty("vj.register.id", registerId);
+        props.setProperty("vj.journal.dir", journalDir);
+        props.setProperty("vj.journal.segment.mb", String.valueOf(journalSegmentMb));
+        props.setProperty("vj.journal.retention.days", String.valueOf(journalRetentionDays));
+        props.setProperty("vj.journal.sync.interval", String.valueOf(journalSyncInterval));
+        props.setProperty("vj.journal.console", String.valueOf(journalConsole));
+        props.setProperty("vj.spool.dir", spoolDir);
+        props.setProperty("vj.spool.max.mb", String.valueOf(spoolMaxMb));
+        props.setProperty("vj.spool.drain.rate", String.valueOf(spoolDrainRate));
 
         try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
             props.store(fos, "Virtual Journal Client Configuration");
@@ -126,6 +181,69 @@ public class SocketClientConfig {
         return enabled;
     }
 
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getRegisterId() {
+        return registerId;
+    }
+
+    public void setRegisterId(String registerId) {
+        this.registerId = registerId;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public int getJournalSegmentMb() {
+        return journalSegmentMb;
+    }
+
+    public long getJournalSegmentBytes() {
+        return journalSegmentMb * 1024L * 1024L;
+    }
+
+    public int getJournalRetentionDays() {
+        return journalRetentionDays;
+    }
+
+    public int getJournalSyncInterval() {
+        return journalSyncInterval;
+    }
+
+    /**
+     * Whether journal lines are also echoed to standard output.
+     */
+    public boolean isJournalConsole() {
+        return journalConsole;
+    }
+
+    public void setJournalConsole(boolean journalConsole) {
+        this.journalConsole = journalConsole;
+    }
+
+    public String getSpoolDir() {
+        return spoolDir;
+    }
+
+    public void setSpoolDir(String spoolDir) {
+        this.spoolDir = spoolDir;
+    }
+
+    public int getSpoolMaxMb() {
+        return spoolMaxMb;
+    }
+
+    public int getSpoolDrainRate() {
+        return spoolDrainRate;
+    }
+
     @Override
     public String toString() {
         return "SocketClientConfig{" +
@@ -137,6 +255,14 @@ public class SocketClientConfig {
                 ", retryDelay=" + retryDelay +
                 ", enabled=" + enabled +
                 ", registerId='" + registerId + '\'' +
+                ", journalDir='" + journalDir + '\'' +
+                ", journalSegmentMb=" + journalSegmentMb +
+                ", journalRetentionDays=" + journalRetentionDays +
+                ", journalSyncInterval=" + journalSyncInterval +
+                ", journalConsole=" + journalConsole +
+                ", spoolDir='" + spoolDir + '\'' +
+                ", spoolMaxMb=" + spoolMaxMb +
+                ", spoolDrainRate=" + spoolDrainRate +
                 '}';
     }
 }
\ No newline at end of file
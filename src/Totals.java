@@ -0,0 +1,57 @@
+/**
+ * Immutable subtotal, discount, tax and total of a basket, in cents.
+ * RegisterController keeps one of these up to date as lines change, so the UI,
+ * the journal and the database all read the same figures instead of recomputing them.
+ */
+public final class Totals {
+
+    public static final Totals ZERO = new Totals(0, 0, 0, 0);
+
+    private final long subtotalCents;
+    private final long discountCents;
+    private final long taxCents;
+    private final long totalCents;
+
+    private Totals(long subtotalCents, long discountCents, long taxCents, long totalCents) {
+        this.subtotalCents = subtotalCents;
+        this.discountCents = discountCents;
+        this.taxCents = taxCents;
+        this.totalCents = totalCents;
+    }
+
+    /**
+     * Computes tax on the discounted subtotal, rounded once to the cent, and the total.
+     */
+    public static Totals of(long subtotalCents, long discountCents, long taxRateBasisPoints) {
+        if (subtotalCents == 0 && discountCents == 0) {
+            return ZERO;
+        }
+        long taxableCents = subtotalCents - discountCents;
+        long taxCents = Money.applyRate(taxableCents, taxRateBasisPoints);
+        return new Totals(subtotalCents, discountCents, taxCents, taxableCents + taxCents);
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    public long getTaxCents() {
+        return taxCents;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    @Override
+    public String toString() {
+        return "Totals{subtotal=" + Money.toPlainString(subtotalCents) +
+                ", discount=" + Money.toPlainString(discountCents) +
+                ", tax=" + Money.toPlainString(taxCents) +
+                ", total=" + Money.toPlainString(totalCents) + '}';
+    }
+}
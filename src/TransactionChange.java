@@ -0,0 +1,129 @@
+/**
+ * A single change to a transaction that still has to be written to the database.
+ * Captures the values at the time of the change so it can be applied on another thread.
+ */
+public class TransactionChange {
+
+    public enum Type {
+        ADD_LINE,         // New line item inserted
+        CHANGE_QUANTITY,  // Quantity of an existing line changed
+        VOID_LINE,        // Line flagged as voided (row is kept for history)
+        UPDATE_TOTALS     // Transaction subtotal/tax/total changed
+    }
+
+    private final Type type;
+    private final int transactionId;
+    private final int lineNumber;
+    private final String upc;
+    private final String name;
+    // Amounts in cents
+    private final long priceCents;
+    private final int quantity;
+    private final long subtotalCents;
+    private final long taxCents;
+    private final long totalCents;
+
+    private TransactionChange(Type type, int transactionId, int lineNumber, String upc, String name,
+                              long priceCents, int quantity, long subtotalCents, long taxCents, long totalCents) {
+        this.type = type;
+        this.transactionId = transactionId;
+        this.lineNumber = lineNumber;
+        this.upc = upc;
+        this.name = name;
+        this.priceCents = priceCents;
+        this.quantity = quantity;
+        this.subtotalCents = subtotalCents;
+        this.taxCents = taxCents;
+        this.totalCents = totalCents;
+    }
+
+    public static TransactionChange addLine(int transactionId, TransactionItem item) {
+        Product product = item.getProduct();
+        return new TransactionChange(Type.ADD_LINE, transactionId, item.getLineNumber(), product.getUpc(),
+                product.getName(), product.getPriceCents(), item.getQuantity(), 0, 0, 0);
+    }
+
+    public static TransactionChange changeQuantity(int transactionId, TransactionItem item) {
+        Product product = item.getProduct();
+        return new TransactionChange(Type.CHANGE_QUANTITY, transactionId, item.getLineNumber(), product.getUpc(),
+                product.getName(), product.getPriceCents(), item.getQuantity(), 0, 0, 0);
+    }
+
+    public static TransactionChange voidLine(int transactionId, TransactionItem item) {
+        Product product = item.getProduct();
+        return new TransactionChange(Type.VOID_LINE, transactionId, item.getLineNumber(), product.getUpc(),
+                product.getName(), product.getPriceCents(), item.getQuantity(), 0, 0, 0);
+    }
+
+    public static TransactionChange totals(int transactionId, long subtotalCents, long taxCents, long totalCents) {
+        return new TransactionChange(Type.UPDATE_TOTALS, transactionId, 0, null, null, 0, 0,
+                subtotalCents, taxCents, totalCents);
+    }
+
+    public static TransactionChange totals(int transactionId, Totals totals) {
+        return totals(transactionId, totals.getSubtotalCents(), totals.getTaxCents(), totals.getTotalCents());
+    }
+
+    /**
+     * Returns the same line change with a different type, keeping the captured values.
+     */
+    public TransactionChange withType(Type newType) {
+        return new TransactionChange(newType, transactionId, lineNumber, upc, name, priceCents, quantity,
+                subtotalCents, taxCents, totalCents);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getUpc() {
+        return upc;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getLineTotalCents() {
+        return Money.times(priceCents, quantity);
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getTaxCents() {
+        return taxCents;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionChange{" +
+                "type=" + type +
+                ", transactionId=" + transactionId +
+                ", lineNumber=" + lineNumber +
+                ", upc='" + upc + '\'' +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
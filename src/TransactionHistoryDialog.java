@@ -5,7 +5,6 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +26,6 @@ public class TransactionHistoryDialog extends JDialog {
     private static final Color BORDER_COLOR = new Color(229, 231, 235);
     private static final Color TABLE_HEADER = new Color(243, 244, 246);
 
-    private final DecimalFormat df = new DecimalFormat("#,##0.00");
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm");
 
     private DefaultTableModel tableModel;
@@ -102,7 +100,7 @@ public class TransactionHistoryDialog extends JDialog {
             Object[] row = new Object[5];
             row[0] = "#" + trans.get("id");
             row[1] = dateFormat.format(trans.get("date"));
-            row[2] = "$" + df.format(trans.get("total"));
+            row[2] = "$" + Money.format((Long) trans.get("total"));
             row[3] = trans.get("payment_type") != null ? trans.get("payment_type") : "-";
 
             // Status with styling info
@@ -1,8 +1,15 @@
 public class TransactionItem {
+    private int lineNumber;
     private Product product;
     private int quantity;
 
     public TransactionItem(Product product, int quantity) {
+        this(0, product, quantity);
+    }
+
+    // Line number is stable for the life of the transaction and identifies the persisted row
+    public TransactionItem(int lineNumber, Product product, int quantity) {
+        this.lineNumber = lineNumber;
         this.product = product;
         this.quantity = quantity;
     }
@@ -15,6 +22,10 @@ public class TransactionItem {
         this.quantity = quantity;
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
     public Product getProduct() {
         return product;
     }
@@ -23,7 +34,10 @@ public class TransactionItem {
         return quantity;
     }
 
-    public double getTotal() {
-        return product.getPrice() * quantity;
+    /**
+     * Returns the line total in cents.
+     */
+    public long getTotalCents() {
+        return Money.times(product.getPriceCents(), quantity);
     }
 }
\ No newline at end of file
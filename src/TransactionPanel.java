@@ -1,9 +1,7 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.text.DecimalFormat;
 import java.util.List;
 
 /**
@@ -29,8 +27,7 @@ public class TransactionPanel extends JPanel {
     // Components
     private final RegisterController controller;
     private final Runnable onPaymentRequested;
-    private final DefaultTableModel tableModel;
-    private final DecimalFormat df = new DecimalFormat("#,##0.00");
+    private final BasketTableModel tableModel;
 
     // UI Elements
     private JLabel subtotalLabel;
@@ -47,7 +44,7 @@ public class TransactionPanel extends JPanel {
     public TransactionPanel(RegisterController controller, Runnable onPaymentRequested) {
         this.controller = controller;
         this.onPaymentRequested = onPaymentRequested;
-        this.tableModel = createTableModel();
+        this.tableModel = new BasketTableModel();
 
         setLayout(new BorderLayout(15, 15));
         setBackground(PRIMARY_BG);
@@ -242,16 +239,6 @@ public class TransactionPanel extends JPanel {
         return table;
     }
 
-    private DefaultTableModel createTableModel() {
-        String[] columns = {"UPC", "Description", "Price", "Qty", "Total"};
-        return new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-    }
-
     private JPanel createActionsSection() {
         JPanel container = new JPanel();
         container.setLayout(new BoxLayout(container, BoxLayout.Y_AXIS));
@@ -336,14 +323,14 @@ public class TransactionPanel extends JPanel {
         JPanel gridPanel = new JPanel(new GridLayout(4, 2, 8, 8));
         gridPanel.setBackground(CARD_BG);
 
-        addQuickKey(gridPanel, "Polar Pop 42oz", "041594904794", 8.91);
-        addQuickKey(gridPanel, "Hot Dog", "999999955678", 2.69);
-        addQuickKey(gridPanel, "Large Coffee", "999991218948", 2.19);
-        addQuickKey(gridPanel, "Medium Polar", "999999937551", 0.89);
-        addQuickKey(gridPanel, "Marlboro Gold", "028200003843", 8.47);
-        addQuickKey(gridPanel, "Monster Energy", "070847811169", 3.29);
-        addQuickKey(gridPanel, "Mt Dew 20oz", "012000001314", 9.96);
-        addQuickKey(gridPanel, "Donut", "049000000443", 2.49);
+        addQuickKey(gridPanel, "Polar Pop 42oz", "041594904794", 891);
+        addQuickKey(gridPanel, "Hot Dog", "999999955678", 269);
+        addQuickKey(gridPanel, "Large Coffee", "999991218948", 219);
+        addQuickKey(gridPanel, "Medium Polar", "999999937551", 89);
+        addQuickKey(gridPanel, "Marlboro Gold", "028200003843", 847);
+        addQuickKey(gridPanel, "Monster Energy", "070847811169", 329);
+        addQuickKey(gridPanel, "Mt Dew 20oz", "012000001314", 996);
+        addQuickKey(gridPanel, "Donut", "049000000443", 249);
 
         container.add(headerLabel, BorderLayout.NORTH);
         container.add(gridPanel, BorderLayout.CENTER);
@@ -351,10 +338,10 @@ public class TransactionPanel extends JPanel {
         return container;
     }
 
-    private void addQuickKey(JPanel panel, String name, String upc, double price) {
+    private void addQuickKey(JPanel panel, String name, String upc, long priceCents) {
         JButton btn = new JButton("<html><div style='text-align: center;'><b>" +
                 truncate(name, 12) + "</b><br><span style='color: #10b981;'>$" +
-                df.format(price) + "</span></div></html>");
+                Money.format(priceCents) + "</span></div></html>");
         btn.setFont(new Font("Segoe UI", Font.PLAIN, 11));
         btn.setBackground(CARD_BG);
         btn.setForeground(TEXT_PRIMARY);
@@ -512,7 +499,7 @@ public class TransactionPanel extends JPanel {
                 JOptionPane.WARNING_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            controller.voidItem(selectedRow);
+            controller.voidLine(tableModel.getLineNumber(selectedRow));
             showToast("Item voided successfully", ACCENT_GREEN);
         }
     }
@@ -641,7 +628,7 @@ public class TransactionPanel extends JPanel {
                     int newQty = Integer.parseInt(input);
                     if (newQty > 0) {
                         int oldQty = Integer.parseInt(currentQty);
-                        controller.changeQuantity(selectedRow, newQty);
+                        controller.changeLineQuantity(tableModel.getLineNumber(selectedRow), newQty);
 
                         // Show success toast with quantity change info
                         String message = "Quantity changed: " + oldQty + " → " + newQty;
@@ -673,11 +660,12 @@ public class TransactionPanel extends JPanel {
 
         // Transaction summary with proper row count
         int itemCount = controller.getCurrentTransaction().size();
-        double subtotal = controller.getSubtotal();
-        double discount = controller.getDiscountAmount();
-        double total = controller.getTotal();
+        Totals totals = controller.getTotals();
+        long subtotalCents = totals.getSubtotalCents();
+        long discountCents = totals.getDiscountCents();
+        long totalCents = totals.getTotalCents();
 
-        int rowCount = discount > 0 ? 4 : 3;
+        int rowCount = discountCents > 0 ? 4 : 3;
         JPanel summaryPanel = new JPanel(new GridLayout(rowCount, 1, 5, 8));
         summaryPanel.setBackground(Color.WHITE);
         summaryPanel.setBorder(BorderFactory.createCompoundBorder(
@@ -686,13 +674,13 @@ public class TransactionPanel extends JPanel {
         ));
 
         summaryPanel.add(createDetailLabel("Items in transaction: " + itemCount));
-        summaryPanel.add(createDetailLabel("Subtotal: $" + df.format(subtotal)));
-        if (discount > 0) {
-            JLabel discountLabel = createDetailLabel("Discount: -$" + df.format(discount));
+        summaryPanel.add(createDetailLabel("Subtotal: $" + Money.format(subtotalCents)));
+        if (discountCents > 0) {
+            JLabel discountLabel = createDetailLabel("Discount: -$" + Money.format(discountCents));
             discountLabel.setForeground(DISCOUNT_GREEN);
             summaryPanel.add(discountLabel);
         }
-        summaryPanel.add(createDetailLabel("Total amount: $" + df.format(total)));
+        summaryPanel.add(createDetailLabel("Total amount: $" + Money.format(totalCents)));
 
         // Warning message
         JPanel warningPanel = new JPanel(new BorderLayout());
@@ -756,10 +744,10 @@ public class TransactionPanel extends JPanel {
         ));
 
         int itemCount = controller.getCurrentTransaction().size();
-        double total = controller.getTotal();
+        long totalCents = controller.getTotals().getTotalCents();
 
         summaryPanel.add(createDetailLabel("Items in transaction: " + itemCount));
-        summaryPanel.add(createDetailLabel("Total amount: $" + df.format(total)));
+        summaryPanel.add(createDetailLabel("Total amount: $" + Money.format(totalCents)));
         summaryPanel.add(createDetailLabel("Status: Transaction will be saved and can be resumed later"));
 
         JLabel questionLabel = new JLabel("Do you want to suspend this transaction?");
@@ -802,23 +790,29 @@ public class TransactionPanel extends JPanel {
 
     // ==================== Public UI Update Methods ====================
 
-    public void addItemToTable(String upc, String desc, double price, int qty, double total) {
-        Object[] row = {upc, truncate(desc, 45), "$" + df.format(price),
-                String.valueOf(qty), "$" + df.format(total)};
-        tableModel.addRow(row);
-    }
+    /**
+     * Shows a snapshot published by the controller. The table model only repaints
+     * the rows that changed since the previous snapshot.
+     */
+    public void showView(RegisterView view) {
+        tableModel.setView(view);
 
-    public void clearTable() {
-        tableModel.setRowCount(0);
+        updateTotals(view.getTotals());
+        if (view.isDiscountPending()) {
+            showDiscountPending();
+        } else {
+            setDiscountStatus(view.getAppliedDiscounts());
+        }
+        setTransactionStatus(view.getStatusText());
     }
 
-    public void updateTotals(double subtotal, double discount, double tax, double total) {
-        subtotalLabel.setText("$" + df.format(subtotal));
-        taxLabel.setText("$" + df.format(tax));
-        totalLabel.setText("$" + df.format(total));
+    public void updateTotals(Totals totals) {
+        subtotalLabel.setText("$" + Money.format(totals.getSubtotalCents()));
+        taxLabel.setText("$" + Money.format(totals.getTaxCents()));
+        totalLabel.setText("$" + Money.format(totals.getTotalCents()));
 
-        if (discount > 0) {
-            discountAmountLabel.setText("-$" + df.format(discount));
+        if (totals.getDiscountCents() > 0) {
+            discountAmountLabel.setText("-$" + Money.format(totals.getDiscountCents()));
             discountCard.setVisible(true);
         } else {
             discountCard.setVisible(false);
@@ -847,6 +841,23 @@ public class TransactionPanel extends JPanel {
         discountBadge.repaint();
     }
 
+    /**
+     * Shows that discounts are being recalculated for the changed basket.
+     */
+    public void showDiscountPending() {
+        discountBadge.removeAll();
+
+        JLabel badge = new JLabel("Checking discounts...");
+        badge.setFont(new Font("Segoe UI", Font.BOLD, 11));
+        badge.setForeground(TEXT_SECONDARY);
+        badge.setBorder(BorderFactory.createEmptyBorder(4, 10, 4, 10));
+        discountBadge.add(badge);
+        discountBadge.setVisible(true);
+
+        discountBadge.revalidate();
+        discountBadge.repaint();
+    }
+
     public void setTransactionStatus(String status) {
         transactionStatusLabel.setText(status);
     }
@@ -0,0 +1,314 @@
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind stage for transaction persistence.
+ * The controller queues line-level changes and returns immediately; a background
+ * thread coalesces whatever has queued up and writes it to H2 in one database
+ * transaction. Call flush() wherever the data must be durable (tender, suspend, void).
+ *
+ * In deferred mode nothing is written until flush(): the journal is the write-ahead
+ * log for open baskets (see JournalRecovery), so scans don't touch the database at all.
+ *
+ * When a batch fails, each transaction in it is written on its own so one bad
+ * transaction doesn't hold up the others. A transaction that still fails is kept and
+ * tried again with the next write if the failure looks transient (lost connection,
+ * lock timeout), up to MAX_ATTEMPTS times; otherwise its changes are dropped and
+ * logged - the journal still has them. Either way flush(transactionId) throws for that
+ * transaction, so it isn't suspended or tendered with lines silently missing.
+ */
+public class TransactionWriter {
+
+    private static final int MAX_BATCH = 500;
+    // Deferred changes are written anyway once this many have piled up
+    private static final int MAX_DEFERRED = 10_000;
+    // Writes of one transaction's changes before they are dropped
+    private static final int MAX_ATTEMPTS = 5;
+    // How often a waiting flush() checks that the writer thread is still alive
+    private static final long FLUSH_POLL_MS = 1000;
+
+    private final DatabaseManager dbManager;
+    private final boolean deferred;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Set once the writer thread has left its loop, for whatever reason
+    private volatile boolean stopped;
+
+    // Transaction id -> last failure of changes still kept for retry; cleared once written
+    private final Map<Integer, SQLException> retrying = new HashMap<>();
+    // Transaction id -> failure that got changes dropped; cleared once flush() reports it
+    private final Map<Integer, SQLException> dropped = new HashMap<>();
+    // Only touched by the writer thread
+    private final Map<Integer, Integer> attempts = new HashMap<>();
+
+    public TransactionWriter(DatabaseManager dbManager) {
+        this(dbManager, false);
+    }
+
+    /**
+     * @param deferred hold changes until flush() instead of writing them as they arrive
+     */
+    public TransactionWriter(DatabaseManager dbManager, boolean deferred) {
+        this.dbManager = dbManager;
+        this.deferred = deferred;
+        this.writerThread = new Thread(this::run, "transaction-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a change to be written in the background.
+     */
+    public void submit(TransactionChange change) {
+        queue.add(change);
+    }
+
+    /**
+     * Blocks until every change submitted before this call has been written.
+     *
+     * @throws SQLException if changes of any transaction are still waiting for a retry
+     */
+    public void flush() throws SQLException {
+        awaitWrites();
+        synchronized (this) {
+            if (!retrying.isEmpty()) {
+                Map.Entry<Integer, SQLException> first = retrying.entrySet().iterator().next();
+                throw notWritten(first.getKey(), first.getValue());
+            }
+        }
+    }
+
+    /**
+     * Blocks until every change submitted before this call has been written, and reports
+     * a failure only if it concerns the given transaction. A failure that got the
+     * transaction's changes dropped is reported once.
+     *
+     * @throws SQLException if changes of this transaction are waiting for a retry or were dropped
+     */
+    public void flush(int transactionId) throws SQLException {
+        awaitWrites();
+        synchronized (this) {
+            SQLException error = retrying.get(transactionId);
+            if (error == null) {
+                error = dropped.remove(transactionId);
+            }
+            if (error != null) {
+                throw notWritten(transactionId, error);
+            }
+        }
+    }
+
+    private void awaitWrites() throws SQLException {
+        if (stopped) {
+            throw new SQLException("Transaction writer is not running");
+        }
+
+        CountDownLatch barrier = new CountDownLatch(1);
+        queue.add(barrier);
+        try {
+            while (!barrier.await(FLUSH_POLL_MS, TimeUnit.MILLISECONDS)) {
+                // The barrier may have been queued after the writer thread died
+                if (!writerThread.isAlive()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while flushing transaction writes", e);
+        }
+        if (stopped) {
+            throw new SQLException("Transaction writer stopped before writing everything");
+        }
+    }
+
+    private static SQLException notWritten(int transactionId, SQLException cause) {
+        return new SQLException("Changes to transaction #" + transactionId + " not written: " +
+                cause.getMessage(), cause.getSQLState(), cause);
+    }
+
+    /**
+     * Writes everything still queued and stops the writer thread.
+     */
+    public void close() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Error flushing transaction writes: " + e.getMessage());
+        }
+        running = false;
+        writerThread.interrupt();
+    }
+
+    private void run() {
+        List<Object> drained = new ArrayList<>();
+        List<TransactionChange> batch = new ArrayList<>();
+
+        try {
+            while (running) {
+                try {
+                    drained.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(drained, MAX_BATCH);
+
+                for (Object entry : drained) {
+                    if (entry instanceof CountDownLatch) {
+                        // Everything queued before the barrier must be written before releasing it
+                        write(batch);
+                        ((CountDownLatch) entry).countDown();
+                    } else {
+                        batch.add((TransactionChange) entry);
+                    }
+                }
+                if (!deferred || batch.size() >= MAX_DEFERRED) {
+                    write(batch);
+                }
+                drained.clear();
+            }
+        } finally {
+            // Don't leave anyone waiting on a barrier this thread will never reach
+            stopped = true;
+            drained.addAll(queue);
+            for (Object entry : drained) {
+                if (entry instanceof CountDownLatch) {
+                    ((CountDownLatch) entry).countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the batch in one database transaction. On failure nothing was applied, so
+     * each transaction's changes are written again on their own; those that still fail
+     * are either left in the batch (coalesced) for the next attempt or dropped.
+     */
+    private void write(List<TransactionChange> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<TransactionChange> changes = coalesce(batch);
+        batch.clear();
+
+        Map<Integer, List<TransactionChange>> byTransaction = new LinkedHashMap<>();
+        for (TransactionChange change : changes) {
+            byTransaction.computeIfAbsent(change.getTransactionId(), k -> new ArrayList<>()).add(change);
+        }
+
+        if (byTransaction.size() > 1 && apply(changes) == null) {
+            for (Integer transactionId : byTransaction.keySet()) {
+                written(transactionId);
+            }
+            return;
+        }
+
+        for (Map.Entry<Integer, List<TransactionChange>> entry : byTransaction.entrySet()) {
+            int transactionId = entry.getKey();
+            List<TransactionChange> own = entry.getValue();
+            Exception error = apply(own);
+            if (error == null) {
+                written(transactionId);
+            } else {
+                failed(transactionId, own, error, batch);
+            }
+        }
+    }
+
+    // The failure, or null once the changes are committed
+    private Exception apply(List<TransactionChange> changes) {
+        try {
+            dbManager.applyTransactionChanges(changes);
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            return e;
+        }
+    }
+
+    private void written(int transactionId) {
+        attempts.remove(transactionId);
+        synchronized (this) {
+            retrying.remove(transactionId);
+        }
+    }
+
+    private void failed(int transactionId, List<TransactionChange> changes, Exception error,
+                        List<TransactionChange> batch) {
+        SQLException sqlError = error instanceof SQLException ? (SQLException) error
+                : new SQLException(error.toString(), error);
+        int attempt = attempts.merge(transactionId, 1, Integer::sum);
+
+        // A RuntimeException is a bug or bad data, never worth retrying
+        if (error instanceof SQLException && isTransient(sqlError) && attempt < MAX_ATTEMPTS) {
+            System.err.println("Error writing transaction #" + transactionId + ", keeping " + changes.size() +
+                    " change(s) for retry (attempt " + attempt + " of " + MAX_ATTEMPTS + "): " + error.getMessage());
+            batch.addAll(changes);
+            synchronized (this) {
+                retrying.put(transactionId, sqlError);
+            }
+            return;
+        }
+
+        System.err.println("Error writing transaction #" + transactionId + ", dropping " + changes.size() +
+                " change(s) after " + attempt + " attempt(s): " + error.getMessage());
+        for (TransactionChange change : changes) {
+            System.err.println("  dropped " + change);
+        }
+        attempts.remove(transactionId);
+        synchronized (this) {
+            retrying.remove(transactionId);
+            dropped.put(transactionId, sqlError);
+        }
+    }
+
+    /**
+     * Lost connections, rollbacks and deadlocks (SQL state classes 08 and 40), lock
+     * timeouts and the pool's own timeouts (no SQL state) may succeed on a later try;
+     * constraint violations, bad data and programming errors won't.
+     */
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("40") || state.equals("HYT00");
+    }
+
+    /**
+     * Collapses changes so each line and each transaction's totals are written at most once.
+     * Voids are kept separately so a line added and voided in the same batch is still
+     * inserted and then flagged, preserving the voided-line history.
+     */
+    static List<TransactionChange> coalesce(List<TransactionChange> changes) {
+        Map<String, TransactionChange> merged = new LinkedHashMap<>();
+
+        for (TransactionChange change : changes) {
+            String lineKey = change.getTransactionId() + "|" + change.getLineNumber();
+            switch (change.getType()) {
+                case UPDATE_TOTALS:
+                    merged.put("T" + change.getTransactionId(), change);
+                    break;
+                case VOID_LINE:
+                    merged.put("V" + lineKey, change);
+                    break;
+                default:
+                    TransactionChange previous = merged.get(lineKey);
+                    if (previous != null && previous.getType() == TransactionChange.Type.ADD_LINE) {
+                        // Line not written yet: insert it with the latest quantity
+                        merged.put(lineKey, change.withType(TransactionChange.Type.ADD_LINE));
+                    } else {
+                        merged.put(lineKey, change);
+                    }
+                    break;
+            }
+        }
+
+        return new ArrayList<>(merged.values());
+    }
+}
@@ -1,241 +1,430 @@
 // src/VirtualJournal.java
-import java.io.*;
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Virtual Journal that logs transactions both locally and to a remote server.
  * Sends formatted strings directly to the server - no parsing required.
+ * The local journal is binary (see JournalCodec), kept in memory-mapped segment
+ * files (see SegmentedJournal); JournalRenderer turns the events into the text
+ * layout for the console and the server.
+ *
+ * The journal is the register's write-ahead log: basket lines only reach the database
+ * when a transaction is suspended, voided or tendered (see JournalRecovery). So no
+ * event is ever dropped - a log call waits for ring buffer space instead - and any
+ * batch holding a basket change or a transaction boundary is forced to disk when it
+ * is written, one force per batch rather than per line. Other records are forced
+ * after the configured sync interval at the latest.
+ *
+ * In async mode (the default) the log methods only fill a preallocated event in a
+ * ring buffer; a background writer thread encodes and renders the events and writes
+ * the journal, console and socket once per batch. The log methods must be called from a single
+ * thread (the register controller's). In sync mode everything happens on the caller's thread.
  */
 public class VirtualJournal {
-    private static final String JOURNAL_FILE = "register_journal.txt";
-    private static final DecimalFormat df = new DecimalFormat("#,##0.00");
-    private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final int RING_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    // After waking up, let a burst of events accumulate so it is written as one batch
+    private static final long BATCH_LINGER_NANOS = 1_000_000L;
+    private static final long FLUSH_TIMEOUT_NANOS = 5_000_000_000L;
 
-    private BufferedWriter writer;
+    private final SegmentedJournal writer;
     private VirtualJournalSocketClient socketClient;
     private SocketClientConfig socketConfig;
 
+    private final boolean async;
+    private final JournalRingBuffer ring;
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    // Event reused by every log call in sync mode
+    private final JournalEvent syncEvent = new JournalEvent();
+
+    // Used by whichever thread does the writing
+    private final JournalRenderer renderer = new JournalRenderer();
+    private final List<String> batchLines = new ArrayList<>();
+    private final StringBuilder consoleBuffer = new StringBuilder();
+    private boolean syncPending;
+    private long syncIntervalNanos;
+    private long lastSyncNanos;
+    private volatile long eventsWritten;
+
     public VirtualJournal() {
+        this(true);
+    }
+
+    public VirtualJournal(boolean async) {
+        this(new SocketClientConfig(), async);
+    }
+
+    /**
+     * Opens a journal with the given settings instead of register-config.properties,
+     * e.g. one journal and spool directory per simulated register.
+     */
+    public VirtualJournal(SocketClientConfig socketConfig, boolean async) {
+        this.socketConfig = socketConfig;
+
+        // The journal is the register's write-ahead log, so there is no running without it
         try {
-            writer = new BufferedWriter(new FileWriter(JOURNAL_FILE, true));
-        } catch (IOException e) {
-            System.err.println("Error opening journal file: " + e.getMessage());
+            writer = new SegmentedJournal(Paths.get(socketConfig.getJournalDir()),
+                    socketConfig.getJournalSegmentBytes(),
+                    socketConfig.getJournalRetentionDays() * 24L * 60 * 60 * 1000);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Error opening journal in " + socketConfig.getJournalDir()
+                    + ": " + e.getMessage(), e);
         }
+        syncIntervalNanos = socketConfig.getJournalSyncInterval() * 1_000_000L;
+        lastSyncNanos = System.nanoTime();
 
         // Initialize socket client
-        socketConfig = new SocketClientConfig();
         socketClient = new VirtualJournalSocketClient(socketConfig);
 
-        // Attempt to connect to remote server
+        // Connects (and reconnects) in the background; lines are queued meanwhile
         if (socketConfig.isEnabled()) {
-            boolean connected = socketClient.connect();
-            if (!connected) {
-                System.err.println("Failed to connect to Virtual Journal server, will log locally only");
-            }
+            socketClient.connect();
         }
-    }
 
-    /**
-     * Sends a line to the remote server if connected.
-     */
-    private void sendToRemoteServer(String line) {
-        if (socketClient.isConnected()) {
-            socketClient.sendJournalLine(line);
+        this.async = async;
+        if (async) {
+            // Dropping an event would lose it from the write-ahead log, so log calls wait for space
+            ring = new JournalRingBuffer(RING_CAPACITY, JournalRingBuffer.WAIT_FOREVER);
+            running = true;
+            writerThread = new Thread(this::runWriter, "journal-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            ring = null;
+            writerThread = null;
         }
     }
 
+    // ==================== Logging ====================
+
     public void logTransactionStart(int transactionId) {
-        String line1 = "=".repeat(60);
-        String line2 = "TRANSACTION #" + transactionId + " - " + dateFormat.format(new Date());
-        String line3 = "=".repeat(60);
+        JournalEvent event = begin(JournalEvent.Type.TRANSACTION_START);
+        event.transactionId = transactionId;
+        commit();
+    }
 
-        writeLine(line1);
-        writeLine(line2);
-        writeLine(line3);
+    /**
+     * Logs a scan. lineQuantity is the line's quantity after the scan, so replaying
+     * the journal can rebuild the basket.
+     */
+    public void logItem(int transactionId, int lineNumber, String upc, String name, long priceCents, int lineQuantity) {
+        JournalEvent event = begin(JournalEvent.Type.ITEM);
+        event.transactionId = transactionId;
+        event.lineNumber = lineNumber;
+        event.quantity = lineQuantity;
+        event.upc = upc;
+        event.name = name;
+        event.amountCents = priceCents;
+        commit();
+    }
 
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
-        sendToRemoteServer(line3);
+    public void logVoidItem(int transactionId, int lineNumber, String upc, String name, int qty) {
+        JournalEvent event = begin(JournalEvent.Type.VOID_ITEM);
+        event.transactionId = transactionId;
+        event.lineNumber = lineNumber;
+        event.upc = upc;
+        event.name = name;
+        event.quantity = qty;
+        commit();
     }
 
-    public void logItem(String upc, String name, double price) {
-        String line = String.format("%-20s %-30s $%-8s",
-                upc, truncate(name), df.format(price));
-        writeLine(line);
-        sendToRemoteServer(line);
+    public void logQuantityChange(int transactionId, int lineNumber, String upc, String name, int oldQty, int newQty) {
+        JournalEvent event = begin(JournalEvent.Type.QUANTITY_CHANGE);
+        event.transactionId = transactionId;
+        event.lineNumber = lineNumber;
+        event.upc = upc;
+        event.name = name;
+        event.quantity = oldQty;
+        event.secondaryQuantity = newQty;
+        commit();
     }
 
-    public void logVoidItem(String upc, String name, int qty) {
-        String line = "*** VOID ITEM: " + upc + " " + name + " QTY: " + qty + " ***";
-        writeLine(line);
-        sendToRemoteServer(line);
+    public void logSubtotal(int transactionId, long subtotalCents) {
+        logAmount(JournalEvent.Type.SUBTOTAL, transactionId, subtotalCents);
     }
 
-    public void logQuantityChange(String upc, String name, int oldQty, int newQty) {
-        String line = "*** QTY CHANGE: " + upc + " " + name + " FROM " + oldQty + " TO " + newQty + " ***";
-        writeLine(line);
-        sendToRemoteServer(line);
+    public void logDiscount(int transactionId, long discountCents, List<String> appliedDiscounts) {
+        if (discountCents > 0) {
+            JournalEvent event = begin(JournalEvent.Type.DISCOUNT);
+            event.transactionId = transactionId;
+            event.amountCents = discountCents;
+            // Copied because the writer reads it later on another thread
+            event.details = List.copyOf(appliedDiscounts);
+            commit();
+        }
     }
 
-    public void logSubtotal(double subtotal) {
-        writeLine("");
-        String line = String.format("%50s $%s", "SUBTOTAL:", df.format(subtotal));
-        writeLine(line);
+    public void logTax(int transactionId, long taxCents) {
+        logAmount(JournalEvent.Type.TAX, transactionId, taxCents);
+    }
 
-        sendToRemoteServer("");
-        sendToRemoteServer(line);
+    public void logTotal(int transactionId, long totalCents) {
+        logAmount(JournalEvent.Type.TOTAL, transactionId, totalCents);
     }
 
-    public void logDiscount(double discountAmount, List<String> appliedDiscounts) {
-        if (discountAmount > 0) {
-            String line1 = String.format("%50s -$%s", "DISCOUNT:", df.format(discountAmount));
-            writeLine(line1);
-            sendToRemoteServer(line1);
+    public void logPayment(int transactionId, String paymentType, long tenderedCents, long changeCents) {
+        JournalEvent event = begin(JournalEvent.Type.PAYMENT);
+        event.transactionId = transactionId;
+        event.paymentType = paymentType;
+        event.amountCents = tenderedCents;
+        event.secondaryAmountCents = changeCents;
+        commit();
+    }
 
-            for (String discount : appliedDiscounts) {
-                String line = String.format("%50s   %s", "", discount);
-                writeLine(line);
-                sendToRemoteServer(line);
-            }
-        }
+    public void logVoidTransaction(int transactionId) {
+        logTransactionEvent(JournalEvent.Type.VOID_TRANSACTION, transactionId);
     }
 
-    public void logTax(double tax) {
-        String line = String.format("%50s $%s", "TAX (7%):", df.format(tax));
-        writeLine(line);
-        sendToRemoteServer(line);
+    public void logSuspendTransaction(int transactionId) {
+        logTransactionEvent(JournalEvent.Type.SUSPEND_TRANSACTION, transactionId);
     }
 
-    public void logTotal(double total) {
-        String line1 = String.format("%50s $%s", "TOTAL:", df.format(total));
-        String line2 = "-".repeat(60);
+    public void logResumeTransaction(int transactionId) {
+        logTransactionEvent(JournalEvent.Type.RESUME_TRANSACTION, transactionId);
+    }
 
-        writeLine(line1);
-        writeLine(line2);
+    public void logTransactionComplete(int transactionId) {
+        logTransactionEvent(JournalEvent.Type.TRANSACTION_COMPLETE, transactionId);
+    }
 
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
+    /**
+     * Records that no transaction is in flight and the database holds everything
+     * logged so far. Crash recovery replays the journal from the last checkpoint.
+     */
+    public void logCheckpoint() {
+        begin(JournalEvent.Type.CHECKPOINT);
+        commit();
     }
 
-    public void logPayment(String paymentType, double tendered, double change) {
-        writeLine("");
-        String line1 = "PAYMENT TYPE: " + paymentType;
-        String line2 = String.format("%50s $%s", "AMOUNT TENDERED:", df.format(tendered));
+    private void logAmount(JournalEvent.Type type, int transactionId, long amountCents) {
+        JournalEvent event = begin(type);
+        event.transactionId = transactionId;
+        event.amountCents = amountCents;
+        commit();
+    }
 
-        writeLine(line1);
-        writeLine(line2);
+    private void logTransactionEvent(JournalEvent.Type type, int transactionId) {
+        JournalEvent event = begin(type);
+        event.transactionId = transactionId;
+        commit();
+    }
 
-        sendToRemoteServer("");
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
+    /**
+     * Returns an event to fill in. In async mode this waits for ring buffer space
+     * if the writer thread has fallen behind.
+     */
+    private JournalEvent begin(JournalEvent.Type type) {
+        JournalEvent event;
+        if (async) {
+            event = ring.claim();
+        } else {
+            event = syncEvent;
+            event.clear();
+        }
+        event.type = type;
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
 
-        if (change > 0) {
-            String line3 = String.format("%50s $%s", "CHANGE:", df.format(change));
-            writeLine(line3);
-            sendToRemoteServer(line3);
+    private void commit() {
+        if (async) {
+            ring.publish();
+        } else {
+            handleEvent(syncEvent, true);
         }
     }
 
-    public void logVoidTransaction(int transactionId) {
-        writeLine("");
-        String line1 = "*** TRANSACTION #" + transactionId + " VOIDED ***";
-        String line2 = "*** VOIDED AT: " + dateFormat.format(new Date()) + " ***";
-        String line3 = "=".repeat(60);
-        writeLine(line1);
-        writeLine(line2);
-        writeLine(line3);
-        writeLine("");
-
-        sendToRemoteServer("");
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
-        sendToRemoteServer(line3);
-        sendToRemoteServer("");
+    // ==================== Writer ====================
+
+    private void runWriter() {
+        JournalRingBuffer.EventHandler handler = this::handleEvent;
+        while (true) {
+            if (ring.drain(handler) == 0) {
+                if (!running) {
+                    // Everything published before close() is written; make it durable
+                    syncWriter();
+                    break;
+                }
+                if (ring.awaitEvents(IDLE_PARK_NANOS)) {
+                    LockSupport.parkNanos(BATCH_LINGER_NANOS);
+                } else {
+                    // Idle: don't leave a half-written basket unsynced forever
+                    syncIfDue();
+                }
+            }
+        }
     }
 
-    public void logSuspendTransaction(int transactionId) {
-        writeLine("");
-        String line1 = "*** TRANSACTION #" + transactionId + " SUSPENDED ***";
-        String line2 = "*** SUSPENDED AT: " + dateFormat.format(new Date()) + " ***";
-        String line3 = "=".repeat(60);
-        writeLine(line1);
-        writeLine(line2);
-        writeLine(line3);
-        writeLine("");
-
-        sendToRemoteServer("");
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
-        sendToRemoteServer(line3);
-        sendToRemoteServer("");
+    private void handleEvent(JournalEvent event, boolean endOfBatch) {
+        try {
+            if (mustSync(event.type)) {
+                syncPending = true;
+            }
+            if (event.type != JournalEvent.Type.FLUSH) {
+                writer.append(event);
+                renderer.render(event, batchLines);
+                eventsWritten++;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing journal event " + event.type + ": " + e.getMessage());
+        }
+
+        if (endOfBatch) {
+            writeBatch();
+        }
     }
 
-    public void logResumeTransaction(int transactionId) {
-        writeLine("");
-        String line1 = "*** TRANSACTION #" + transactionId + " RESUMED ***";
-        String line2 = "*** RESUMED AT: " + dateFormat.format(new Date()) + " ***";
-        String line3 = "=".repeat(60);
-        writeLine(line1);
-        writeLine(line2);
-        writeLine(line3);
+    /**
+     * Records the write-ahead log can't afford to lose: basket changes the database
+     * doesn't have yet, and the start and end of transactions.
+     */
+    private static boolean mustSync(JournalEvent.Type type) {
+        switch (type) {
+            case TRANSACTION_START:
+            case RESUME_TRANSACTION:
+            case ITEM:
+            case VOID_ITEM:
+            case QUANTITY_CHANGE:
+            case TRANSACTION_COMPLETE:
+            case VOID_TRANSACTION:
+            case SUSPEND_TRANSACTION:
+            case FLUSH:
+            case CHECKPOINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sends the rendered lines to the console and server in one go, then group-commits
+     * the journal if the batch holds a record that must be synced or the sync interval has passed.
+     */
+    private void writeBatch() {
+        if (!batchLines.isEmpty()) {
+            if (socketConfig.isJournalConsole()) {
+                consoleBuffer.setLength(0);
+                for (String line : batchLines) {
+                    consoleBuffer.append(line).append(System.lineSeparator());
+                }
+                System.out.print(consoleBuffer); // Also print to console
+            }
 
-        sendToRemoteServer("");
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
-        sendToRemoteServer(line3);
+            // Only queues the lines; the client's I/O thread does the sending
+            socketClient.sendJournalLines(batchLines);
+            batchLines.clear();
+        }
+
+        if (syncPending) {
+            syncPending = false;
+            syncWriter();
+        } else {
+            syncIfDue();
+        }
     }
 
-    public void logTransactionComplete(int transactionId) {
-        writeLine("");
-        String line1 = "TRANSACTION #" + transactionId + " COMPLETED";
-        String line2 = "COMPLETED AT: " + dateFormat.format(new Date());
-        String line3 = "=".repeat(60);
-        writeLine(line1);
-        writeLine(line2);
-        writeLine(line3);
-        writeLine("");
-        flush();
-
-        sendToRemoteServer("");
-        sendToRemoteServer(line1);
-        sendToRemoteServer(line2);
-        sendToRemoteServer(line3);
-        sendToRemoteServer("");
-    }
-
-    private void writeLine(String text) {
-        try {
-            writer.write(text);
-            writer.newLine();
-            System.out.println(text); // Also print to console
-        } catch (IOException e) {
-            System.err.println("Error writing to journal: " + e.getMessage());
+    private void syncIfDue() {
+        if (System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+            syncWriter();
         }
     }
 
-    private String truncate(String text) {
-        if (text.length() <= 30) {
-            return text;
+    private void syncWriter() {
+        lastSyncNanos = System.nanoTime();
+        try {
+            writer.sync();
+        } catch (RuntimeException e) {
+            // MappedByteBuffer.force reports I/O failures as UncheckedIOException
+            System.err.println("Error syncing journal: " + e.getMessage());
         }
-        return text.substring(0, 30 - 3) + "...";
     }
 
+    /**
+     * Writes out and syncs everything logged so far. In async mode this waits for
+     * the writer thread to catch up (bounded by a timeout). It logs a FLUSH record, so
+     * like the log methods it must be called from the producer thread.
+     */
     public void flush() {
-        try {
-            writer.flush();
-        } catch (IOException e) {
-            System.err.println("Error flushing journal: " + e.getMessage());
+        if (!async) {
+            syncWriter();
+            return;
+        }
+
+        begin(JournalEvent.Type.FLUSH);
+        commit();
+
+        long target = ring.getPublishedSequence();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        while (ring.getConsumedSequence() < target && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        if (ring.getConsumedSequence() < target) {
+            System.err.println("Timed out waiting for journal writer to flush");
         }
     }
 
+    /**
+     * Directory holding the journal segments.
+     */
+    public Path getJournalDirectory() {
+        return writer.getDirectory();
+    }
+
+    // ==================== Metrics ====================
+
+    public long getEventsWritten() {
+        return eventsWritten;
+    }
+
+    /**
+     * Log calls that found the ring buffer full and had to wait.
+     */
+    public long getBackpressureWaits() {
+        return async ? ring.getBackpressureWaits() : 0;
+    }
+
+    /**
+     * Number of group commits (forces) of the local journal.
+     */
+    public long getSyncCount() {
+        return writer.getSyncCount();
+    }
+
+    /**
+     * Stops the journal once the producer is done logging (close the controller first).
+     * Nothing is published from here: the writer thread drains what is left in the ring,
+     * syncs it and exits, and only then are the segments closed.
+     */
     public void close() {
-        try {
-            if (writer != null) {
-                writer.close();
+        if (async) {
+            running = false;
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            if (writerThread.isAlive()) {
+                // Unmapping the segments under the writer would crash it; the OS flushes them at exit
+                System.err.println("Journal writer still running, leaving the journal open");
+                return;
+            }
+
+            if (ring.getBackpressureWaits() > 0) {
+                System.err.println("Journal: " + eventsWritten + " events written, " +
+                        ring.getBackpressureWaits() + " backpressure waits");
+            }
+        }
+
+        try {
+            writer.close();
         } catch (IOException e) {
             System.err.println("Error closing journal: " + e.getMessage());
         }
@@ -245,4 +434,4 @@ public class VirtualJournal {
             socketClient.disconnect();
         }
     }
-}
\ No newline at end of file
+}
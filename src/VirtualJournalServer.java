@@ -0,0 +1,564 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual Journal server: collects the journals of many registers.
+ *
+ * One selector thread accepts connections and reads lines from every register (see
+ * VirtualJournalSocketClient for the protocol). Lines go into per-register journals
+ * (see RegisterJournal) in the page cache; a commit thread forces them to disk every
+ * vj.server.commit.interval ms and the selector thread then acknowledges them, so one
+ * force() covers everything a register sent during the interval.
+ *
+ * The tail port streams lines to monitoring clients as they arrive:
+ * <pre>
+ * TAIL|REG-001   lines from one register, as "registerId|line"
+ * TAIL|*         lines from every register
+ * STATS          one status line, then the connection is closed
+ * </pre>
+ * A tail client that can't keep up is disconnected rather than slowing registers down.
+ *
+ * Run: java VirtualJournalServer
+ */
+public class VirtualJournalServer {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int TAIL_BUFFER_SIZE = 256 * 1024;
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final VirtualJournalServerConfig config;
+    private final Path journalDir;
+    private Selector selector;
+    private ServerSocketChannel registerServer;
+    private ServerSocketChannel tailServer;
+    private Thread commitThread;
+    private volatile boolean running;
+
+    // Selector thread only
+    private final Map<String, RegisterJournal> journals = new HashMap<>();
+    private final Map<String, RegisterConnection> connections = new HashMap<>();
+    private final List<TailConnection> tails = new ArrayList<>();
+    private final Set<TailConnection> dirtyTails = new LinkedHashSet<>();
+
+    // Shared with the commit thread
+    private final Map<String, RegisterJournal> committable = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<RegisterJournal> committed = new ConcurrentLinkedQueue<>();
+
+    // Metrics
+    private final AtomicLong linesReceived = new AtomicLong();
+    private final AtomicLong linesAppended = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commitRounds = new AtomicLong();
+    private final AtomicLong tailsDropped = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    public VirtualJournalServer(VirtualJournalServerConfig config) {
+        this.config = config;
+        this.journalDir = Paths.get(config.getJournalDir());
+    }
+
+    /**
+     * Binds both ports and starts the commit thread. Call run() afterwards.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(journalDir);
+        selector = Selector.open();
+
+        registerServer = ServerSocketChannel.open();
+        registerServer.bind(new InetSocketAddress(config.getPort()), 1024);
+        registerServer.configureBlocking(false);
+        registerServer.register(selector, SelectionKey.OP_ACCEPT);
+
+        tailServer = ServerSocketChannel.open();
+        tailServer.bind(new InetSocketAddress(config.getTailPort()));
+        tailServer.configureBlocking(false);
+        tailServer.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        commitThread = new Thread(this::runCommits, "vj-commit");
+        commitThread.setDaemon(true);
+        commitThread.start();
+
+        System.out.println("Virtual Journal server listening on port " + config.getPort() +
+                ", tail on port " + config.getTailPort() + ", journals in " + journalDir.toAbsolutePath());
+    }
+
+    // ==================== Selector Thread ====================
+
+    /**
+     * Runs the selector loop until stop() is called.
+     */
+    public void run() {
+        while (running) {
+            try {
+                selector.select(1000);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).close(e.getMessage());
+                        }
+                    }
+                }
+
+                sendAcks();
+                flushTails();
+            } catch (IOException e) {
+                System.err.println("Virtual Journal server error: " + e.getMessage());
+            }
+        }
+        shutdown();
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(server == registerServer ? new RegisterConnection(channel, key) : new TailConnection(channel, key));
+    }
+
+    private void sendAcks() {
+        RegisterJournal journal;
+        while ((journal = committed.poll()) != null) {
+            RegisterConnection connection = connections.get(journal.getRegisterId());
+            if (connection != null) {
+                connection.sendAck(journal.getCommittedSeq());
+            }
+        }
+    }
+
+    // Lines for tails are buffered during a selector round and written once at the end of it
+    private void flushTails() {
+        for (TailConnection tail : dirtyTails) {
+            try {
+                tail.flush();
+            } catch (IOException e) {
+                tail.close(e.getMessage());
+            }
+        }
+        dirtyTails.clear();
+    }
+
+    private RegisterJournal journalFor(String registerId) throws IOException {
+        RegisterJournal journal = journals.get(registerId);
+        if (journal == null) {
+            journal = new RegisterJournal(journalDir, registerId, this::publish);
+            journals.put(registerId, journal);
+            committable.put(registerId, journal);
+        }
+        return journal;
+    }
+
+    /**
+     * Called for every line appended to a journal, in order; copies it to every
+     * tail following that register.
+     */
+    private void publish(RegisterJournal journal, byte[] line, int offset, int length) {
+        linesAppended.incrementAndGet();
+        if (tails.isEmpty()) {
+            return;
+        }
+        // Tails see "registerId|line" without the sequence number
+        int bar = offset;
+        while (line[bar] != '|') {
+            bar++;
+        }
+        // Backwards, since a tail that can't keep up removes itself
+        for (int i = tails.size() - 1; i >= 0; i--) {
+            TailConnection tail = tails.get(i);
+            if (tail.follows(journal.getRegisterId())) {
+                tail.send(journal.getRegisterIdBytes(), line, bar, offset + length - bar);
+                dirtyTails.add(tail);
+            }
+        }
+    }
+
+    // ==================== Commit Thread ====================
+
+    private void runCommits() {
+        while (running) {
+            long roundStart = System.currentTimeMillis();
+            boolean any = false;
+            for (RegisterJournal journal : committable.values()) {
+                try {
+                    if (journal.commit() >= 0) {
+                        commits.incrementAndGet();
+                        committed.add(journal);
+                        any = true;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error committing journal " + journal.getRegisterId() + ": " + e.getMessage());
+                }
+            }
+            if (any) {
+                commitRounds.incrementAndGet();
+                selector.wakeup();
+            }
+
+            long sleep = config.getCommitInterval() - (System.currentTimeMillis() - roundStart);
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // ==================== Connections ====================
+
+    /**
+     * A client connection, reading newline-terminated lines.
+     */
+    private abstract class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        boolean closed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close(null);
+                return;
+            }
+
+            byte[] bytes = in.array();
+            int end = in.position();
+            int lineStart = 0;
+            for (int i = 0; i < end && !closed; i++) {
+                if (bytes[i] == '\n') {
+                    onLine(bytes, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (closed) {
+                return;
+            }
+            if (lineStart == 0 && end == in.capacity()) {
+                throw new IOException("line too long");
+            }
+            // Keep the partial last line for the next read
+            in.limit(end).position(lineStart);
+            in.compact();
+            afterLines();
+        }
+
+        abstract void onLine(byte[] bytes, int start, int end) throws IOException;
+
+        void afterLines() throws IOException {
+        }
+
+        abstract void flush() throws IOException;
+
+        void close(String reason) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing connection: " + e.getMessage());
+            }
+            onClose(reason);
+        }
+
+        abstract void onClose(String reason);
+    }
+
+    /**
+     * A register sending its journal.
+     */
+    private class RegisterConnection extends Connection {
+        private RegisterJournal journal;
+        private final ByteBuffer out = ByteBuffer.allocate(64);
+        private long pendingAck = -1;
+        private boolean receivedLines;
+
+        RegisterConnection(SocketChannel channel, SelectionKey key) {
+            super(channel, key);
+            out.flip();
+        }
+
+        @Override
+        void onLine(byte[] bytes, int start, int end) throws IOException {
+            if (journal == null) {
+                hello(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                return;
+            }
+
+            linesReceived.incrementAndGet();
+            receivedLines = true;
+            long seq = RegisterJournal.parseSeq(bytes, start, end);
+            if (seq <= 0) {
+                throw new IOException("malformed line from " + journal.getRegisterId());
+            }
+            if (journal.accept(seq, bytes, start, end - start) == RegisterJournal.AcceptResult.DUPLICATE) {
+                duplicates.incrementAndGet();
+            }
+        }
+
+        // HELLO|registerId|epoch|firstSeq
+        private void hello(String line) throws IOException {
+            String[] fields = line.split("\\|");
+            if (fields.length != 4 || !fields[0].equals("HELLO") || !RegisterJournal.isValidRegisterId(fields[1])) {
+                throw new IOException("bad handshake");
+            }
+            String registerId = fields[1];
+            long epoch;
+            long firstSeq;
+            try {
+                epoch = Long.parseLong(fields[2]);
+                firstSeq = Long.parseLong(fields[3]);
+            } catch (NumberFormatException e) {
+                throw new IOException("bad handshake");
+            }
+
+            RegisterConnection previous = connections.get(registerId);
+            if (previous != null) {
+                previous.close("replaced by a new connection");
+            } else if (connections.size() >= config.getMaxRegisters()) {
+                throw new IOException("too many registers");
+            }
+
+            journal = journalFor(registerId);
+            connections.put(registerId, this);
+            sendAck(journal.hello(epoch, firstSeq));
+            System.out.println("Register " + registerId + " connected from " + channel.getRemoteAddress() +
+                    " (last stored line " + journal.getCommittedSeq() + ")");
+        }
+
+        @Override
+        void afterLines() {
+            // Nothing new to commit (e.g. only resent duplicates): acknowledge right away
+            if (receivedLines && journal != null && !journal.hasUncommitted()) {
+                sendAck(journal.getCommittedSeq());
+            }
+            receivedLines = false;
+        }
+
+        void sendAck(long seq) {
+            if (closed) {
+                return;
+            }
+            // Acknowledgements are cumulative, so only the latest one matters
+            pendingAck = Math.max(pendingAck, seq);
+            try {
+                flush();
+            } catch (IOException e) {
+                close(e.getMessage());
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (!out.hasRemaining() && pendingAck >= 0) {
+                out.clear();
+                out.put(("ACK|" + pendingAck + "\n").getBytes(StandardCharsets.US_ASCII));
+                out.flip();
+                pendingAck = -1;
+            }
+            channel.write(out);
+            key.interestOps(out.hasRemaining() || pendingAck >= 0
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        @Override
+        void onClose(String reason) {
+            if (journal != null && connections.get(journal.getRegisterId()) == this) {
+                connections.remove(journal.getRegisterId());
+                System.out.println("Register " + journal.getRegisterId() + " disconnected" +
+                        (reason != null ? ": " + reason : ""));
+            }
+        }
+    }
+
+    /**
+     * A monitoring client following one register or all of them.
+     */
+    private class TailConnection extends Connection {
+        private String registerId;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(TAIL_BUFFER_SIZE);
+
+        TailConnection(SocketChannel channel, SelectionKey key) {
+            super(channel, key);
+        }
+
+        boolean follows(String id) {
+            return registerId != null && (registerId.equals("*") || registerId.equals(id));
+        }
+
+        @Override
+        void onLine(byte[] bytes, int start, int end) throws IOException {
+            String command = new String(bytes, start, end - start, StandardCharsets.UTF_8).trim();
+            if (command.equals("STATS")) {
+                out.put((getStats() + "\n").getBytes(StandardCharsets.UTF_8));
+                flush();
+                close(null);
+            } else if (command.startsWith("TAIL|") && registerId == null) {
+                String id = command.substring(5);
+                if (!id.equals("*") && !RegisterJournal.isValidRegisterId(id)) {
+                    throw new IOException("bad register id");
+                }
+                registerId = id;
+                tails.add(this);
+            } else {
+                throw new IOException("unknown command");
+            }
+        }
+
+        void send(byte[] id, byte[] line, int offset, int length) {
+            if (closed) {
+                return;
+            }
+            int needed = id.length + length + 1;
+            if (out.remaining() < needed) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    close(e.getMessage());
+                    return;
+                }
+                if (out.remaining() < needed) {
+                    tailsDropped.incrementAndGet();
+                    close("too slow");
+                    return;
+                }
+            }
+            out.put(id).put(line, offset, length).put(NEWLINE);
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        @Override
+        void onClose(String reason) {
+            tails.remove(this);
+        }
+    }
+
+    // ==================== Lifecycle ====================
+
+    public String getStats() {
+        long uptime = Math.max(1, (System.currentTimeMillis() - startedAt) / 1000);
+        return "registers=" + connections.size() +
+                ", journals=" + journals.size() +
+                ", tails=" + tails.size() +
+                ", linesReceived=" + linesReceived.get() +
+                ", linesAppended=" + linesAppended.get() +
+                ", duplicates=" + duplicates.get() +
+                ", commits=" + commits.get() +
+                ", commitRounds=" + commitRounds.get() +
+                ", tailsDropped=" + tailsDropped.get() +
+                ", linesPerSecond=" + linesAppended.get() / uptime;
+    }
+
+    /**
+     * Stops the selector loop; run() commits and closes everything before returning.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void shutdown() {
+        try {
+            commitThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (RegisterJournal journal : journals.values()) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal " + journal.getRegisterId() + ": " + e.getMessage());
+            }
+        }
+        try {
+            registerServer.close();
+            tailServer.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server: " + e.getMessage());
+        }
+        System.out.println("Virtual Journal server stopped (" + getStats() + ")");
+    }
+
+    public static void main(String[] args) {
+        VirtualJournalServerConfig config = new VirtualJournalServerConfig();
+        VirtualJournalServer server = new VirtualJournalServer(config);
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Error starting Virtual Journal server: " + e.getMessage());
+            System.exit(1);
+        }
+
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                mainThread.join(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        server.run();
+    }
+}
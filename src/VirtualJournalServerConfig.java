@@ -0,0 +1,117 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Configuration for the Virtual Journal server, read from vj-server.properties.
+ * The server port uses the same key as the register side (vj.server.port).
+ */
+public class VirtualJournalServerConfig {
+
+    private static final String CONFIG_FILE = "vj-server.properties";
+    private static final int DEFAULT_PORT = 9090;
+    private static final int DEFAULT_TAIL_PORT = 9091;
+    private static final String DEFAULT_JOURNAL_DIR = "vj-journals";
+    private static final int DEFAULT_COMMIT_INTERVAL = 20;
+    private static final int DEFAULT_MAX_REGISTERS = 1000;
+
+    private int port;
+    private int tailPort;
+    private String journalDir;
+    private int commitInterval;
+    private int maxRegisters;
+
+    public VirtualJournalServerConfig() {
+        loadConfiguration();
+    }
+
+    /**
+     * Loads configuration from properties file or creates default.
+     */
+    private void loadConfiguration() {
+        Properties props = new Properties();
+
+        try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
+            props.load(fis);
+
+            port = Integer.parseInt(props.getProperty("vj.server.port", String.valueOf(DEFAULT_PORT)));
+            tailPort = Integer.parseInt(props.getProperty("vj.server.tail.port", String.valueOf(DEFAULT_TAIL_PORT)));
+            journalDir = props.getProperty("vj.server.journal.dir", DEFAULT_JOURNAL_DIR);
+            commitInterval = Integer.parseInt(props.getProperty("vj.server.commit.interval", String.valueOf(DEFAULT_COMMIT_INTERVAL)));
+            maxRegisters = Integer.parseInt(props.getProperty("vj.server.max.registers", String.valueOf(DEFAULT_MAX_REGISTERS)));
+
+            System.out.println("Loaded configuration from " + CONFIG_FILE);
+
+        } catch (IOException e) {
+            System.out.println("Configuration file not found, creating default: " + CONFIG_FILE);
+            setDefaults();
+            saveConfiguration();
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number format in configuration, using defaults");
+            setDefaults();
+        }
+    }
+
+    /**
+     * Sets default configuration values.
+     */
+    private void setDefaults() {
+        port = DEFAULT_PORT;
+        tailPort = DEFAULT_TAIL_PORT;
+        journalDir = DEFAULT_JOURNAL_DIR;
+        commitInterval = DEFAULT_COMMIT_INTERVAL;
+        maxRegisters = DEFAULT_MAX_REGISTERS;
+    }
+
+    /**
+     * Saves current configuration to properties file.
+     */
+    public void saveConfiguration() {
+        Properties props = new Properties();
+        props.setProperty("vj.server.port", String.valueOf(port));
+        props.setProperty("vj.server.tail.port", String.valueOf(tailPort));
+        props.setProperty("vj.server.journal.dir", journalDir);
+        props.setProperty("vj.server.commit.interval", String.valueOf(commitInterval));
+        props.setProperty("vj.server.max.registers", String.valueOf(maxRegisters));
+
+        try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
+            props.store(fos, "Virtual Journal Server Configuration");
+            System.out.println("Configuration saved to " + CONFIG_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to save configuration: " + e.getMessage());
+        }
+    }
+
+    // Getters
+    public int getPort() {
+        return port;
+    }
+
+    public int getTailPort() {
+        return tailPort;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    public int getMaxRegisters() {
+        return maxRegisters;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualJournalServerConfig{" +
+                "port=" + port +
+                ", tailPort=" + tailPort +
+                ", journalDir='" + journalDir + '\'' +
+                ", commitInterval=" + commitInterval +
+                ", maxRegisters=" + maxRegisters +
+                '}';
+    }
+}
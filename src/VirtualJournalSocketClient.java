@@ -1,149 +1,661 @@
 // src/VirtualJournalSocketClient.java
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simplified socket client for connecting to the Virtual Journal server.
- * Uses fire-and-forget messaging - no ACK/PONG responses needed.
+ * Non-blocking, store-and-forward socket client for the Virtual Journal server.
+ *
+ * Callers only encode lines into a direct buffer and return; they never touch the
+ * disk or the network. A background I/O thread appends those lines to a local spool
+ * (see JournalSpool), sends them from the spool, and drops them from it once the
+ * server acknowledges them. While the server is unreachable lines simply collect in
+ * the spool, and the thread reconnects with exponential backoff.
+ *
+ * Protocol (UTF-8 text, one message per line):
+ * <pre>
+ * client: HELLO|registerId|epoch|firstSeq   after connecting
+ * client: seq|journal line                   seq increases by one per line
+ * server: ACK|seq                            every line up to seq is stored
+ * </pre>
+ * The server answers HELLO with an ACK of what it already has for the register.
+ * The client then resends the unacknowledged backlog, rate limited to
+ * vj.spool.drain.rate, while new lines go out ahead of it at full speed. Lines can
+ * therefore arrive out of order and more than once; the server orders them by seq
+ * and ignores duplicates.
  */
 public class VirtualJournalSocketClient {
 
+    public enum State {
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED,
+        CLOSED
+    }
+
+    private static final int QUEUE_BUFFER_SIZE = 256 * 1024;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final long CLOSE_DRAIN_MS = 1000;
+    private static final long IDLE_SELECT_MS = 1000;
+    private static final int MAX_SERVER_LINE = 128;
+
     private final SocketClientConfig config;
-    private Socket socket;
-    private PrintWriter out;
-    private volatile boolean connected = false;
+
+    // Producer side: lines are encoded into pending while holding queueLock
+    private final Object queueLock = new Object();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final byte[] digits = new byte[20];
+    private ByteBuffer pending = ByteBuffer.allocateDirect(QUEUE_BUFFER_SIZE);
+    private long nextSeq;
+    private long pendingLastSeq;
+
+    // I/O thread side
+    private JournalSpool spool;
+    private ByteBuffer spooling = ByteBuffer.allocateDirect(QUEUE_BUFFER_SIZE);
+    private long spoolingLastSeq;
+    private boolean spoolFullReported;
+    private final ByteBuffer control = ByteBuffer.allocate(512);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+    private final StringBuilder serverLine = new StringBuilder();
+
+    private Selector selector;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private Thread ioThread;
+    private volatile boolean running;
+    private volatile long closeDeadline;
+    private volatile State state = State.DISCONNECTED;
+
+    // Reconnect state
+    private long backoffMs;
+    private long nextAttemptAt;
+    private long connectDeadline;
+    private int consecutiveFailures;
+
+    // Send state, valid once the server has answered HELLO. Offsets are into the spool:
+    // the backlog is [backlogPos, backlogEnd), new lines are [livePos, spool end).
+    private boolean handshakePending;
+    private long backlogPos;
+    private long backlogTarget;
+    private long backlogEnd;
+    private long livePos;
+    private long lastAckAt;
+    private long sentSinceAck;
+
+    // Backlog rate limit (token bucket, bytes)
+    private double drainTokens;
+    private long lastRefillAt;
+
+    // Metrics
+    private final AtomicLong connectAttempts = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong linesQueued = new AtomicLong();
+    private final AtomicLong linesDropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong writeCalls = new AtomicLong();
+    private final AtomicLong acksReceived = new AtomicLong();
+    private volatile long ackedSeq;
+    private volatile long unackedBytes;
 
     public VirtualJournalSocketClient(SocketClientConfig config) {
         this.config = config;
+        this.spooling.flip();
+        this.control.flip();
     }
 
     /**
-     * Connects to the Virtual Journal server.
+     * Opens the spool and starts the I/O thread, which connects to the Virtual Journal
+     * server and keeps reconnecting for as long as the client is open. Returns immediately.
      */
     public boolean connect() {
         if (!config.isEnabled()) {
             System.out.println("Virtual Journal client is disabled in configuration");
             return false;
         }
+        if (ioThread != null) {
+            return true;
+        }
 
-        int attempts = 0;
-        while (attempts < config.getRetryAttempts() && !connected) {
-            attempts++;
-            try {
-                System.out.println("Attempting to connect to Virtual Journal server: " +
-                        config.getServerHost() + ":" + config.getServerPort() +
-                        " (Attempt " + attempts + "/" + config.getRetryAttempts() + ")");
+        try {
+            spool = new JournalSpool(Paths.get(config.getSpoolDir()), config.getSpoolMaxMb() * 1024L * 1024L);
+            selector = Selector.open();
+        } catch (IOException e) {
+            System.err.println("Error starting Virtual Journal client: " + e.getMessage());
+            return false;
+        }
 
-                socket = new Socket();
-                socket.connect(
-                        new java.net.InetSocketAddress(config.getServerHost(), config.getServerPort()),
-                        config.getConnectTimeout()
-                );
-                socket.setSoTimeout(config.getReadTimeout());
+        nextSeq = spool.getLastSeq() + 1;
+        ackedSeq = spool.getAckedSeq();
+        unackedBytes = spool.getUnackedBytes();
+        backoffMs = Math.max(1, config.getRetryDelay());
+        running = true;
+        ioThread = new Thread(this::run, "vj-socket");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        return true;
+    }
 
-                out = new PrintWriter(socket.getOutputStream(), true);
+    // ==================== Sending ====================
 
-                connected = true;
-                System.out.println("Successfully connected to Virtual Journal server");
-                return true;
+    /**
+     * Queues a journal line for the server.
+     */
+    public boolean sendJournalLine(String line) {
+        return sendJournalLines(List.of(line));
+    }
 
-            } catch (SocketTimeoutException e) {
-                System.err.println("Connection timeout (attempt " + attempts + ")");
-            } catch (IOException e) {
-                System.err.println("Connection failed (attempt " + attempts + "): " + e.getMessage());
-            }
+    /**
+     * Queues several journal lines; they are normally spooled and sent in one write.
+     *
+     * @return false if any line was dropped because the queue is full
+     */
+    public boolean sendJournalLines(List<String> lines) {
+        if (ioThread == null || state == State.CLOSED) {
+            return false;
+        }
 
-            if (attempts < config.getRetryAttempts()) {
-                try {
-                    Thread.sleep(config.getRetryDelay());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+        int dropped = 0;
+        synchronized (queueLock) {
+            for (String line : lines) {
+                if (!encode(line)) {
+                    dropped++;
                 }
             }
         }
 
-        System.err.println("Failed to connect to Virtual Journal server after " + attempts + " attempts");
-        return false;
+        linesQueued.addAndGet(lines.size() - dropped);
+        if (dropped > 0) {
+            linesDropped.addAndGet(dropped);
+        }
+        selector.wakeup();
+        return dropped == 0;
     }
 
-    /**
-     * Sends a journal line to the server.
-     * Format: registerId|content
-     * Fire-and-forget - no response expected.
-     */
-    public boolean sendJournalLine(String line) {
-        if (!isConnected()) {
+    // Appends "seq|line\n" to the pending buffer; caller holds queueLock
+    private boolean encode(String line) {
+        int start = pending.position();
+        if (!putDecimal(pending, nextSeq) || !pending.hasRemaining()) {
+            pending.position(start);
             return false;
         }
+        pending.put((byte) '|');
 
-        try {
-            out.println(line);
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(line), pending, true);
+        if (!result.isOverflow()) {
+            result = encoder.flush(pending);
+        }
+        if (result.isOverflow() || !pending.hasRemaining()) {
+            pending.position(start);
+            return false;
+        }
+        pending.put((byte) '\n');
+        pendingLastSeq = nextSeq++;
+        return true;
+    }
 
-            // Check if the output stream is still valid
-            if (out.checkError()) {
-                System.err.println("Error sending journal line - connection may be lost");
-                handleDisconnection();
-                return false;
+    private boolean putDecimal(ByteBuffer buffer, long value) {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        if (buffer.remaining() < count) {
+            return false;
+        }
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        return true;
+    }
+
+    // ==================== I/O Thread ====================
+
+    private void run() {
+        while (running || drainingOnClose()) {
+            try {
+                spoolQueued();
+                spool.persistAckIfDue();
+                long now = System.currentTimeMillis();
+
+                if (channel == null) {
+                    if (!running) {
+                        break;
+                    }
+                    if (now < nextAttemptAt) {
+                        selector.select(Math.min(nextAttemptAt - now, IDLE_SELECT_MS));
+                        selector.selectedKeys().clear();
+                        continue;
+                    }
+                    startConnect();
+                    continue;
+                }
+
+                selector.select(selectTimeout(now));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey selected = keys.next();
+                    keys.remove();
+                    if (selected.isValid() && selected.isConnectable()) {
+                        finishConnect();
+                    }
+                    if (selected.isValid() && selected.isReadable()) {
+                        readServerLines();
+                    }
+                }
+
+                now = System.currentTimeMillis();
+                if (state == State.CONNECTING && now >= connectDeadline) {
+                    connectionFailed("connection timeout");
+                } else if (state == State.CONNECTED) {
+                    if ((handshakePending || sentSinceAck > 0) && now - lastAckAt >= config.getReadTimeout()) {
+                        connectionFailed("no acknowledgement from server");
+                    } else {
+                        spoolQueued();
+                        sendSpooled(now);
+                    }
+                }
+            } catch (IOException e) {
+                connectionFailed(e.getMessage());
             }
+            updateSpoolMetrics();
+        }
 
-            return true;
+        closeChannel();
+        state = State.CLOSED;
+        try {
+            spoolQueued();
+            spool.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing Virtual Journal client: " + e.getMessage());
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error sending journal line: " + e.getMessage());
-            handleDisconnection();
+    private boolean drainingOnClose() {
+        if (state != State.CONNECTED || System.currentTimeMillis() >= closeDeadline) {
             return false;
         }
+        if (handshakePending || spooling.hasRemaining() || spool.getUnackedBytes() > 0) {
+            return true;
+        }
+        synchronized (queueLock) {
+            return pending.position() > 0;
+        }
+    }
+
+    private long selectTimeout(long now) {
+        long timeout = IDLE_SELECT_MS;
+        if (state == State.CONNECTING) {
+            timeout = connectDeadline - now;
+        } else if (!running) {
+            timeout = closeDeadline - now;
+        } else if (backlogPos < backlogEnd && isDrainLimited() && drainTokens <= 0) {
+            // Wake up when the bucket has refilled enough to continue the backlog
+            timeout = (long) Math.ceil(-drainTokens / drainBytesPerMs()) + 1;
+        }
+        return Math.max(1, Math.min(timeout, IDLE_SELECT_MS));
     }
 
     /**
-     * Handles unexpected disconnection.
+     * Moves queued lines into the spool. If the spool is full they stay queued, and
+     * once the queue is full too, new lines are dropped.
      */
-    private void handleDisconnection() {
-        connected = false;
-        System.err.println("Connection to Virtual Journal server lost");
-        closeResources();
+    private void spoolQueued() throws IOException {
+        if (!spooling.hasRemaining()) {
+            synchronized (queueLock) {
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer spooled = spooling;
+                spooling = pending;
+                spooling.flip();
+                spooled.clear();
+                pending = spooled;
+                spoolingLastSeq = pendingLastSeq;
+            }
+        }
+
+        if (spool.append(spooling, spoolingLastSeq)) {
+            spoolFullReported = false;
+        } else if (!spoolFullReported) {
+            spoolFullReported = true;
+            System.err.println("Virtual Journal spool is full (" + config.getSpoolMaxMb() +
+                    " MB), holding new lines until the server catches up");
+        }
+    }
+
+    // ==================== Connection ====================
+
+    private void startConnect() throws IOException {
+        connectAttempts.incrementAndGet();
+        state = State.CONNECTING;
+        if (consecutiveFailures < config.getRetryAttempts()) {
+            System.out.println("Attempting to connect to Virtual Journal server: " +
+                    config.getServerHost() + ":" + config.getServerPort() +
+                    " (Attempt " + (consecutiveFailures + 1) + ")");
+        }
+
+        connectDeadline = System.currentTimeMillis() + config.getConnectTimeout();
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        if (channel.connect(new InetSocketAddress(config.getServerHost(), config.getServerPort()))) {
+            key = channel.register(selector, SelectionKey.OP_READ);
+            connected();
+        } else {
+            key = channel.register(selector, SelectionKey.OP_CONNECT);
+        }
+    }
+
+    private void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            key.interestOps(SelectionKey.OP_READ);
+            connected();
+        }
+    }
+
+    private void connected() {
+        state = State.CONNECTED;
+        connects.incrementAndGet();
+        consecutiveFailures = 0;
+        backoffMs = Math.max(1, config.getRetryDelay());
+        System.out.println("Successfully connected to Virtual Journal server");
+
+        // Nothing is sent from the spool until the server says what it already has
+        handshakePending = true;
+        lastAckAt = System.currentTimeMillis();
+        sentSinceAck = 0;
+        control.clear();
+        control.put(("HELLO|" + config.getRegisterId() + "|" + spool.getEpoch() + "|" +
+                (spool.getAckedSeq() + 1) + "\n").getBytes(StandardCharsets.UTF_8));
+        control.flip();
     }
 
     /**
-     * Disconnects from the server.
+     * Closes the channel and schedules the next attempt, doubling the delay each
+     * time up to MAX_BACKOFF_MS. Only the first few failures of an outage are logged.
      */
-    public void disconnect() {
-        if (!connected) {
+    private void connectionFailed(String reason) {
+        boolean wasConnected = state == State.CONNECTED;
+        closeChannel();
+        state = State.DISCONNECTED;
+        handshakePending = false;
+        backlogPos = backlogTarget = backlogEnd = livePos = 0;
+
+        if (wasConnected) {
+            disconnects.incrementAndGet();
+            System.err.println("Connection to Virtual Journal server lost: " + reason + ", spooling and reconnecting");
+        } else {
+            consecutiveFailures++;
+            if (consecutiveFailures <= config.getRetryAttempts()) {
+                System.err.println("Connection failed (attempt " + consecutiveFailures + "): " + reason);
+            }
+            if (consecutiveFailures == config.getRetryAttempts()) {
+                System.err.println("Virtual Journal server unreachable, spooling lines and retrying in the background");
+            }
+        }
+
+        nextAttemptAt = System.currentTimeMillis() + backoffMs;
+        backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            key.cancel();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing socket: " + e.getMessage());
+        }
+        channel = null;
+        key = null;
+        serverLine.setLength(0);
+    }
+
+    // ==================== Acknowledgements ====================
+
+    private void readServerLines() throws IOException {
+        readBuffer.clear();
+        if (channel.read(readBuffer) < 0) {
+            throw new IOException("closed by server");
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            byte b = readBuffer.get();
+            if (b == '\n') {
+                handleServerLine(serverLine.toString());
+                serverLine.setLength(0);
+            } else if (serverLine.length() < MAX_SERVER_LINE) {
+                serverLine.append((char) b);
+            }
+        }
+    }
+
+    private void handleServerLine(String line) throws IOException {
+        if (!line.startsWith("ACK|")) {
             return;
         }
-        out.flush();
-        closeResources();
-        System.out.println("Disconnected from Virtual Journal server");
+        long seq;
+        try {
+            seq = Long.parseLong(line.substring(4).trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+
+        acksReceived.incrementAndGet();
+        lastAckAt = System.currentTimeMillis();
+        sentSinceAck = 0;
+        spool.acknowledge(seq);
+
+        if (handshakePending) {
+            handshakePending = false;
+            backlogPos = backlogTarget = spool.getAckedOffset();
+            backlogEnd = livePos = spool.getEnd();
+            drainTokens = 0;
+            lastRefillAt = lastAckAt;
+            if (backlogEnd > backlogPos) {
+                System.out.println("Resending " + (backlogEnd - backlogPos) +
+                        " spooled bytes to the Virtual Journal server");
+            }
+        } else if (livePos == spool.getEnd() && backlogPos >= backlogEnd && spool.compactIfAcknowledged()) {
+            backlogPos = backlogTarget = backlogEnd = livePos = 0;
+        }
     }
 
+    // ==================== Writing ====================
+
     /**
-     * Closes all resources.
+     * Writes what the server hasn't been sent yet: first the rest of a backlog range
+     * that was cut off mid-line, then all new lines, then as much backlog as the rate
+     * limit allows. Ranges always end on a line boundary, so the two streams never
+     * interleave inside a line. Waits for OP_WRITE if the socket buffer is full.
      */
-    private void closeResources() {
-        connected = false;
+    private void sendSpooled(long now) throws IOException {
+        boolean blocked = false;
 
-        try {
-            if (out != null) out.close();
-        } catch (Exception e) {
-            System.err.println("Error closing output stream: " + e.getMessage());
+        if (control.hasRemaining()) {
+            write(control);
+            blocked = control.hasRemaining();
         }
 
-        try {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+        if (!blocked && !handshakePending) {
+            blocked = !sendBacklogRange();
+
+            while (!blocked && livePos < spool.getEnd()) {
+                long sent = transfer(livePos, spool.getEnd() - livePos);
+                livePos += sent;
+                blocked = sent == 0;
+            }
+
+            if (!blocked && backlogPos < backlogEnd && !isDrainLimited()) {
+                // Unlimited: the whole backlog is due at once
+                backlogTarget = backlogEnd;
+                blocked = !sendBacklogRange();
+            } else if (!blocked && backlogPos < backlogEnd) {
+                refillDrainTokens(now);
+                if (drainTokens > 0) {
+                    long limit = Math.min(backlogEnd, backlogPos + (long) drainTokens);
+                    backlogTarget = Math.min(backlogEnd, spool.lineBoundaryAtOrAfter(limit));
+                    drainTokens -= backlogTarget - backlogPos;
+                    blocked = !sendBacklogRange();
+                }
             }
-        } catch (IOException e) {
-            System.err.println("Error closing socket: " + e.getMessage());
         }
+
+        key.interestOps(blocked ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    // Sends [backlogPos, backlogTarget); false if the socket filled up first
+    private boolean sendBacklogRange() throws IOException {
+        while (backlogPos < backlogTarget) {
+            long sent = transfer(backlogPos, backlogTarget - backlogPos);
+            if (sent == 0) {
+                return false;
+            }
+            backlogPos += sent;
+        }
+        return true;
+    }
+
+    private long transfer(long position, long count) throws IOException {
+        long sent = spool.transferTo(position, count, channel);
+        writeCalls.incrementAndGet();
+        bytesSent.addAndGet(sent);
+        sentSinceAck += sent;
+        return sent;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        int sent = channel.write(buffer);
+        writeCalls.incrementAndGet();
+        bytesSent.addAndGet(sent);
+    }
+
+    // vj.spool.drain.rate of 0 or less resends the backlog as fast as the socket takes it
+    private boolean isDrainLimited() {
+        return config.getSpoolDrainRate() > 0;
+    }
+
+    private void refillDrainTokens(long now) {
+        double rate = drainBytesPerMs();
+        // At most one second's worth of burst
+        drainTokens = Math.min(drainTokens + (now - lastRefillAt) * rate, rate * 1000);
+        lastRefillAt = now;
+    }
+
+    private double drainBytesPerMs() {
+        return Math.max(1, config.getSpoolDrainRate()) * 1024 / 1000.0;
+    }
+
+    private void updateSpoolMetrics() {
+        ackedSeq = spool.getAckedSeq();
+        unackedBytes = spool.getUnackedBytes();
+    }
+
+    // ==================== Lifecycle ====================
+
+    /**
+     * Disconnects from the server, giving queued lines a moment to be sent and
+     * acknowledged first. Anything still unacknowledged stays in the spool.
+     */
+    public void disconnect() {
+        if (ioThread == null || state == State.CLOSED) {
+            return;
+        }
+
+        closeDeadline = System.currentTimeMillis() + CLOSE_DRAIN_MS;
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(CLOSE_DRAIN_MS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Disconnected from Virtual Journal server (" + getMetricsSummary() + ")");
     }
 
     /**
      * Returns whether the client is currently connected.
      */
     public boolean isConnected() {
-        return connected && socket != null && !socket.isClosed();
+        return state == State.CONNECTED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // ==================== Metrics ====================
+
+    public long getConnectAttempts() {
+        return connectAttempts.get();
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    public long getLinesQueued() {
+        return linesQueued.get();
+    }
+
+    public long getLinesDropped() {
+        return linesDropped.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getWriteCalls() {
+        return writeCalls.get();
+    }
+
+    public long getAcksReceived() {
+        return acksReceived.get();
+    }
+
+    public long getAckedSeq() {
+        return ackedSeq;
+    }
+
+    public long getUnackedBytes() {
+        return unackedBytes;
+    }
+
+    public String getMetricsSummary() {
+        return "state=" + state +
+                ", connects=" + connects.get() +
+                ", disconnects=" + disconnects.get() +
+                ", attempts=" + connectAttempts.get() +
+                ", linesQueued=" + linesQueued.get() +
+                ", linesDropped=" + linesDropped.get() +
+                ", bytesSent=" + bytesSent.get() +
+                ", writes=" + writeCalls.get() +
+                ", ackedSeq=" + ackedSeq +
+                ", unackedBytes=" + unackedBytes;
     }
-}
\ No newline at end of file
+}